@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.AcquisitionStrategy;
+import com.tp.tools.concurrent.lock.LockExecution;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Contended short critical sections executed with different {@link AcquisitionStrategy}
+ * implementations. Sample time mode reports latency percentiles, where parking and unparking
+ * threads shows the most. Spinning strategies pay off only with more cores than threads.</p>
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AcquisitionStrategyBenchmark {
+
+  @Param({"blocking", "spinning", "adaptive"})
+  private String strategy;
+
+  @Param({"10", "1000"})
+  private int criticalSectionTokens;
+
+  private LockExecution<Long> execution;
+  private long value;
+
+  @Setup
+  public void setUp() {
+    execution = LockExecution.<Long>withLock(new ReentrantLock(), acquisition())
+        .execute(() -> {
+          Blackhole.consumeCPU(criticalSectionTokens);
+          return ++value;
+        });
+  }
+
+  @Benchmark
+  public Try<Long> execute() {
+    return execution.execute();
+  }
+
+  private AcquisitionStrategy acquisition() {
+    switch (strategy) {
+      case "spinning":
+        return AcquisitionStrategy.spinning(100);
+      case "adaptive":
+        return AcquisitionStrategy.adaptive();
+      default:
+        return AcquisitionStrategy.blocking();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.BatchResult;
+import com.tp.tools.concurrent.lock.CompiledLockExecution;
+import com.tp.tools.concurrent.lock.LockExecution;
+import io.vavr.control.Try;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Cost of executing a {@link CompiledLockExecution} for each element of a batch one by one
+ * compared to {@link CompiledLockExecution#executeAll(Iterable, int)} acquiring the lock once
+ * (or once per chunk).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchExecutionBenchmark {
+
+  @Param({"1000"})
+  int batchSize;
+
+  private final Lock lock = new ReentrantLock();
+
+  private long value;
+
+  private List<Long> inputs;
+
+  private CompiledLockExecution<Long, Long> add;
+
+  @Setup
+  public void setUp() {
+    value = 0L;
+    inputs = LongStream.range(0, batchSize).boxed().collect(Collectors.toList());
+    add = LockExecution.<Long>withLock(lock)
+        .compile((Long input) -> value += input)
+        .filter(current -> current >= 0L);
+  }
+
+  @Benchmark
+  public void executeEach(final Blackhole blackhole) {
+    for (final Long input : inputs) {
+      final Try<Long> result = add.execute(input);
+      blackhole.consume(result);
+    }
+  }
+
+  @Benchmark
+  public BatchResult<Long> executeAll() {
+    return add.executeAll(inputs);
+  }
+
+  @Benchmark
+  public BatchResult<Long> executeAllChunked() {
+    return add.executeAll(inputs, 64);
+  }
+}
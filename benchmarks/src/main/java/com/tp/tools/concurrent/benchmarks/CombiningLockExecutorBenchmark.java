@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.CombiningLockExecutor;
+import com.tp.tools.concurrent.lock.ReadWriteLock;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Write throughput of tiny chains executed by many threads, each chain acquiring the write lock
+ * ({@link ReadWriteLock#write(java.util.function.Supplier)}) vs chains combined by
+ * {@link CombiningLockExecutor}. Meaningful only with at least as many cores as threads.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CombiningLockExecutorBenchmark {
+
+  private final ReadWriteLock lock = ReadWriteLock.newInstance();
+  private final CombiningLockExecutor combining = CombiningLockExecutor.newInstance();
+  private long value;
+
+  @Benchmark
+  public Try<Long> writeLock() {
+    return lock.write(() -> ++value).execute();
+  }
+
+  @Benchmark
+  public Try<Long> combining() {
+    return combining.execute(() -> ++value).execute();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.FastLock;
+import com.tp.tools.concurrent.lock.LockExecution;
+import com.tp.tools.concurrent.lock.ReadWriteLock;
+import com.tp.tools.concurrent.lock.ReaderBiasedReadWriteLock;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Uncontended latency of {@link FastLock} compared to {@link ReentrantLock} and read
+ * throughput of {@link ReaderBiasedReadWriteLock} compared to {@link ReentrantReadWriteLock},
+ * both raw and through {@link LockExecution} / {@link ReadWriteLock}.</p>
+ * <p>Read benchmarks use the thread count given with JMH <code>-t</code> option (e.g.
+ * <code>-t 1</code>, <code>-t max</code>).</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastLockBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Locks {
+
+    final ReentrantLock reentrantLock = new ReentrantLock();
+    final FastLock fastLock = new FastLock();
+    final ReentrantReadWriteLock rawReadWriteLock = new ReentrantReadWriteLock();
+    final ReaderBiasedReadWriteLock rawReaderBiasedLock = new ReaderBiasedReadWriteLock();
+    final ReadWriteLock readWriteLock = new ReadWriteLock(rawReadWriteLock);
+    final ReadWriteLock readerBiasedLock = new ReadWriteLock(rawReaderBiasedLock);
+    long value;
+  }
+
+  //region exclusive
+  @Benchmark
+  public long rawReentrantLock(final Locks locks) {
+    return rawIncrement(locks, locks.reentrantLock);
+  }
+
+  @Benchmark
+  public long rawFastLock(final Locks locks) {
+    return rawIncrement(locks, locks.fastLock);
+  }
+
+  @Benchmark
+  public Try<Long> reentrantLock(final Locks locks) {
+    return LockExecution.<Long>withLock(locks.reentrantLock).execute(() -> ++locks.value)
+        .execute();
+  }
+
+  @Benchmark
+  public Try<Long> fastLock(final Locks locks) {
+    return LockExecution.<Long>withLock(locks.fastLock).execute(() -> ++locks.value).execute();
+  }
+  //endregion
+
+  //region read
+  @Benchmark
+  public long rawReentrantRead(final Locks locks) {
+    return rawRead(locks, locks.rawReadWriteLock.readLock());
+  }
+
+  @Benchmark
+  public long rawReaderBiasedRead(final Locks locks) {
+    return rawRead(locks, locks.rawReaderBiasedLock.readLock());
+  }
+
+  @Benchmark
+  public Try<Long> reentrantRead(final Locks locks) {
+    return locks.readWriteLock.read(() -> locks.value).execute();
+  }
+
+  @Benchmark
+  public Try<Long> readerBiasedRead(final Locks locks) {
+    return locks.readerBiasedLock.read(() -> locks.value).execute();
+  }
+  //endregion
+
+  private static long rawIncrement(final Locks locks, final Lock lock) {
+    lock.lock();
+    try {
+      return ++locks.value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static long rawRead(final Locks locks, final Lock lock) {
+    lock.lock();
+    try {
+      return locks.value;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.CompiledLockExecution;
+import com.tp.tools.concurrent.lock.LockExecution;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>Single-threaded cost of {@link LockExecution} chains of fixed length: filtered chains and
+ * chains capturing per-call arguments compared to compiled templates.</p>
+ * <p>Chains of {@link LockExecutionBenchmark#chainLength} steps are benchmarked by
+ * {@link LockExecutionBenchmark}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterAndTemplateBenchmark {
+
+  private static final long UPSTREAM_WORK_TOKENS = 100L;
+
+  private final Lock lock = new ReentrantLock();
+
+  private long value;
+
+  private CompiledLockExecution<Long, Long> template;
+
+  // per-call argument
+  private long delta = 2L;
+
+  @Setup
+  public void setUp() {
+    value = 0L;
+    template = template();
+  }
+
+  @Benchmark
+  public Try<Long> filterAndExecute() {
+    return LockExecution.<Long>withLock(lock)
+        .execute(() -> value)
+        .filter(current -> current >= 0L)
+        .map(FilterAndTemplateBenchmark::increment)
+        .execute();
+  }
+
+  /**
+   * Chain capturing per-call argument in its steps (like <code>updateIfExists(event)</code>),
+   * built on every call.
+   */
+  @Benchmark
+  public Try<Long> buildCapturingAndExecute() {
+    final long argument = delta;
+    return LockExecution.<Long>withLock(lock)
+        .execute(() -> value)
+        .filter(current -> current >= -argument)
+        .map(current -> current + argument)
+        .map(current -> current * argument)
+        .execute();
+  }
+
+  /**
+   * The same chain as {@link #buildCapturingAndExecute()}, compiled once and executed with
+   * the per-call argument as its input.
+   */
+  @Benchmark
+  public Try<Long> executeTemplate() {
+    return template.execute(delta);
+  }
+
+  /**
+   * Filtered chain with expensive first step, which shows how long the lock is held, when the
+   * filter passes.
+   */
+  @Benchmark
+  public Try<Long> filterExpensiveUpstream() {
+    return LockExecution.<Long>withLock(lock)
+        .execute(() -> {
+          Blackhole.consumeCPU(UPSTREAM_WORK_TOKENS);
+          return value;
+        })
+        .filter(current -> current >= 0L)
+        .map(FilterAndTemplateBenchmark::increment)
+        .execute();
+  }
+
+  @Benchmark
+  public long rawExpensiveUpstream() {
+    lock.lock();
+    try {
+      Blackhole.consumeCPU(UPSTREAM_WORK_TOKENS);
+      return value >= 0L ? increment(value) : value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private CompiledLockExecution<Long, Long> template() {
+    return LockExecution.<Long>withLock(lock)
+        .compile((Long argument) -> value)
+        .filter((argument, current) -> current >= -argument)
+        .map((argument, current) -> current + argument)
+        .map((argument, current) -> current * argument);
+  }
+
+  private static long increment(final long current) {
+    return current + 1L;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.CompiledLockExecution;
+import com.tp.tools.concurrent.lock.LockExecution;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Single-threaded cost of {@link LockExecution} chains compared to a plain
+ * <code>lock(); try {} finally { unlock(); }</code> block.</p>
+ * <p>Each chain step increments the value, so raw and chained benchmarks perform the same
+ * amount of work for the same {@link #chainLength}. Chains of fixed length are benchmarked by
+ * {@link FilterAndTemplateBenchmark}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockExecutionBenchmark {
+
+  @Param({"1", "5", "20"})
+  int chainLength;
+
+  private final Lock lock = new ReentrantLock();
+
+  private long value;
+
+  private LockExecution<Long> prebuilt;
+
+  private CompiledLockExecution<Long, Long> compiled;
+
+  @Setup
+  public void setUp() {
+    value = 0L;
+    prebuilt = chain();
+    compiled = compiledChain();
+  }
+
+  @Benchmark
+  public long rawLock() {
+    lock.lock();
+    try {
+      long result = value;
+      for (int i = 0; i < chainLength; i++) {
+        result = increment(result);
+      }
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Benchmark
+  public Try<Long> buildAndExecute() {
+    return chain().execute();
+  }
+
+  @Benchmark
+  public Try<Long> executePrebuilt() {
+    return prebuilt.execute();
+  }
+
+  @Benchmark
+  public Try<Long> executeCompiled() {
+    return compiled.execute(value);
+  }
+
+  private LockExecution<Long> chain() {
+    LockExecution<Long> execution = LockExecution.<Long>withLock(lock)
+        .execute(() -> increment(value));
+    for (int i = 1; i < chainLength; i++) {
+      execution = execution.map(LockExecutionBenchmark::increment);
+    }
+    return execution;
+  }
+
+  private CompiledLockExecution<Long, Long> compiledChain() {
+    CompiledLockExecution<Long, Long> execution = LockExecution.<Long>withLock(lock)
+        .compile(LockExecutionBenchmark::increment);
+    for (int i = 1; i < chainLength; i++) {
+      execution = execution.map(LockExecutionBenchmark::increment);
+    }
+    return execution;
+  }
+
+  private static long increment(final long current) {
+    return current + 1L;
+  }
+}
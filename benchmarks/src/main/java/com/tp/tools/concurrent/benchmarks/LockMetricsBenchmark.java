@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.CompiledLockExecution;
+import com.tp.tools.concurrent.lock.LockExecution;
+import com.tp.tools.concurrent.lock.LockMetrics;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Overhead of {@link LockMetrics} instrumentation. Not instrumented executions should be as
+ * fast as before instrumentation has been introduced (compare with {@link #rawLock()}), while
+ * instrumented ones pay for a few {@link System#nanoTime()} calls and counter updates, but
+ * should not allocate anything apart from the returned {@link Try}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockMetricsBenchmark {
+
+  private final Lock lock = new ReentrantLock();
+  private CompiledLockExecution<Void, Long> notInstrumented;
+  private CompiledLockExecution<Void, Long> instrumented;
+  private long value;
+
+  @Setup
+  public void setUp() {
+    notInstrumented = LockExecution.<Long>withLock(lock)
+        .execute(() -> ++value)
+        .compile();
+    instrumented = LockExecution.<Long>withLock(lock)
+        .instrumented(LockMetrics.newInstance())
+        .execute(() -> ++value)
+        .compile();
+  }
+
+  @Benchmark
+  public long rawLock() {
+    lock.lock();
+    try {
+      return ++value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Benchmark
+  public Try<Long> notInstrumented() {
+    return notInstrumented.execute();
+  }
+
+  @Benchmark
+  public Try<Long> instrumented() {
+    return instrumented.execute();
+  }
+}
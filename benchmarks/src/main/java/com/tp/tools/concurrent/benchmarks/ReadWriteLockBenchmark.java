@@ -0,0 +1,202 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.ReadWriteLock;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Throughput of {@link ReadWriteLock#read} and {@link ReadWriteLock#write} compared to the
+ * underlying {@link ReentrantReadWriteLock}.</p>
+ * <p>Non-grouped benchmarks use the thread count given with JMH <code>-t</code> option (e.g.
+ * <code>-t 1</code>, <code>-t 4</code>, <code>-t max</code>). Grouped benchmarks use fixed
+ * read/write ratios: <code>readMostly</code> (7:1) and <code>balanced</code> (1:1).</p>
+ * <p><code>optimistic*</code> benchmarks use {@link ReadWriteLock#newOptimistic()}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteLockBenchmark {
+
+  public abstract static class Locks {
+
+    final ReentrantReadWriteLock rawLock = new ReentrantReadWriteLock();
+    final ReadWriteLock lock = ReadWriteLock.newInstance();
+    final ReadWriteLock optimisticLock = ReadWriteLock.newOptimistic();
+    long value;
+  }
+
+  @State(Scope.Benchmark)
+  public static class SharedLocks extends Locks {
+
+  }
+
+  @State(Scope.Group)
+  public static class GroupLocks extends Locks {
+
+  }
+
+  //region read only / write only
+  @Benchmark
+  public long rawRead(final SharedLocks locks) {
+    return rawReadValue(locks);
+  }
+
+  @Benchmark
+  public Try<Long> read(final SharedLocks locks) {
+    return readValue(locks);
+  }
+
+  @Benchmark
+  public Try<Long> optimisticRead(final SharedLocks locks) {
+    return optimisticReadValue(locks);
+  }
+
+  @Benchmark
+  public long rawWrite(final SharedLocks locks) {
+    return rawWriteValue(locks);
+  }
+
+  @Benchmark
+  public Try<Long> write(final SharedLocks locks) {
+    return writeValue(locks);
+  }
+  //endregion
+
+  //region read mostly
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(7)
+  public Try<Long> readMostlyReader(final GroupLocks locks) {
+    return readValue(locks);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public Try<Long> readMostlyWriter(final GroupLocks locks) {
+    return writeValue(locks);
+  }
+
+  @Benchmark
+  @Group("rawReadMostly")
+  @GroupThreads(7)
+  public long rawReadMostlyReader(final GroupLocks locks) {
+    return rawReadValue(locks);
+  }
+
+  @Benchmark
+  @Group("rawReadMostly")
+  @GroupThreads(1)
+  public long rawReadMostlyWriter(final GroupLocks locks) {
+    return rawWriteValue(locks);
+  }
+
+  @Benchmark
+  @Group("optimisticReadMostly")
+  @GroupThreads(7)
+  public Try<Long> optimisticReadMostlyReader(final GroupLocks locks) {
+    return optimisticReadValue(locks);
+  }
+
+  @Benchmark
+  @Group("optimisticReadMostly")
+  @GroupThreads(1)
+  public Try<Long> optimisticReadMostlyWriter(final GroupLocks locks) {
+    return optimisticWriteValue(locks);
+  }
+  //endregion
+
+  //region balanced
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(1)
+  public Try<Long> balancedReader(final GroupLocks locks) {
+    return readValue(locks);
+  }
+
+  @Benchmark
+  @Group("balanced")
+  @GroupThreads(1)
+  public Try<Long> balancedWriter(final GroupLocks locks) {
+    return writeValue(locks);
+  }
+
+  @Benchmark
+  @Group("rawBalanced")
+  @GroupThreads(1)
+  public long rawBalancedReader(final GroupLocks locks) {
+    return rawReadValue(locks);
+  }
+
+  @Benchmark
+  @Group("rawBalanced")
+  @GroupThreads(1)
+  public long rawBalancedWriter(final GroupLocks locks) {
+    return rawWriteValue(locks);
+  }
+  //endregion
+
+  private static long rawReadValue(final Locks locks) {
+    locks.rawLock.readLock().lock();
+    try {
+      return locks.value;
+    } finally {
+      locks.rawLock.readLock().unlock();
+    }
+  }
+
+  private static Try<Long> readValue(final Locks locks) {
+    return locks.lock.read(() -> locks.value).execute();
+  }
+
+  private static Try<Long> optimisticReadValue(final Locks locks) {
+    return locks.optimisticLock.read(() -> locks.value).execute();
+  }
+
+  private static Try<Long> optimisticWriteValue(final Locks locks) {
+    return locks.optimisticLock.write(() -> ++locks.value).execute();
+  }
+
+  private static long rawWriteValue(final Locks locks) {
+    locks.rawLock.writeLock().lock();
+    try {
+      return ++locks.value;
+    } finally {
+      locks.rawLock.writeLock().unlock();
+    }
+  }
+
+  private static Try<Long> writeValue(final Locks locks) {
+    return locks.lock.write(() -> ++locks.value).execute();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.ReadWriteLock;
+import com.tp.tools.concurrent.lock.SeqLockExecution;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Read throughput of {@link SeqLockExecution} compared to {@link ReentrantReadWriteLock}
+ * (raw and wrapped by {@link ReadWriteLock}), reading a price and size pair.</p>
+ * <p>Non-grouped benchmarks use the thread count given with JMH <code>-t</code> option (e.g.
+ * <code>-t 1</code>, <code>-t 8</code>, <code>-t 64</code>). Grouped <code>*ReadMostly</code>
+ * benchmarks use fixed 7:1 read/write ratio.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeqLockExecutionBenchmark {
+
+  public abstract static class Locks {
+
+    final ReentrantReadWriteLock rawLock = new ReentrantReadWriteLock();
+    final ReadWriteLock lock = ReadWriteLock.newInstance();
+    final ReadWriteLock seqLock = ReadWriteLock.newSeqLock();
+    long price;
+    long size;
+  }
+
+  @State(Scope.Benchmark)
+  public static class SharedLocks extends Locks {
+
+  }
+
+  @State(Scope.Group)
+  public static class GroupLocks extends Locks {
+
+  }
+
+  //region read only
+  @Benchmark
+  public long rawRead(final SharedLocks locks) {
+    return rawReadValue(locks);
+  }
+
+  @Benchmark
+  public Try<Long> read(final SharedLocks locks) {
+    return readValue(locks, locks.lock);
+  }
+
+  @Benchmark
+  public Try<Long> seqLockRead(final SharedLocks locks) {
+    return readValue(locks, locks.seqLock);
+  }
+  //endregion
+
+  //region read mostly
+  @Benchmark
+  @Group("rawReadMostly")
+  @GroupThreads(7)
+  public long rawReadMostlyReader(final GroupLocks locks) {
+    return rawReadValue(locks);
+  }
+
+  @Benchmark
+  @Group("rawReadMostly")
+  @GroupThreads(1)
+  public long rawReadMostlyWriter(final GroupLocks locks) {
+    locks.rawLock.writeLock().lock();
+    try {
+      return writeValue(locks);
+    } finally {
+      locks.rawLock.writeLock().unlock();
+    }
+  }
+
+  @Benchmark
+  @Group("seqLockReadMostly")
+  @GroupThreads(7)
+  public Try<Long> seqLockReadMostlyReader(final GroupLocks locks) {
+    return readValue(locks, locks.seqLock);
+  }
+
+  @Benchmark
+  @Group("seqLockReadMostly")
+  @GroupThreads(1)
+  public Try<Long> seqLockReadMostlyWriter(final GroupLocks locks) {
+    return locks.seqLock.write(() -> writeValue(locks)).execute();
+  }
+  //endregion
+
+  private static long rawReadValue(final Locks locks) {
+    locks.rawLock.readLock().lock();
+    try {
+      return locks.price * locks.size;
+    } finally {
+      locks.rawLock.readLock().unlock();
+    }
+  }
+
+  private static Try<Long> readValue(final Locks locks, final ReadWriteLock lock) {
+    return lock.read(() -> locks.price * locks.size).execute();
+  }
+
+  private static long writeValue(final Locks locks) {
+    locks.size++;
+    return ++locks.price;
+  }
+}
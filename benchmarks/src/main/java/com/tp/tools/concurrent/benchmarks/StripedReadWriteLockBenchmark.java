@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.ReadWriteLock;
+import com.tp.tools.concurrent.lock.StripedReadWriteLock;
+import io.vavr.control.Try;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Write throughput of updates to random keys, guarded by a single {@link ReadWriteLock} and by
+ * {@link StripedReadWriteLock}. Run with JMH <code>-t</code> option to compare scaling with
+ * the number of threads.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedReadWriteLockBenchmark {
+
+  private static final int KEYS = 1024;
+
+  @Param({"64"})
+  int stripes;
+
+  private final ReadWriteLock lock = ReadWriteLock.newInstance();
+  private StripedReadWriteLock<Integer> stripedLock;
+  private final AtomicLongArray values = new AtomicLongArray(KEYS);
+
+  @Setup
+  public void setUp() {
+    stripedLock = StripedReadWriteLock.newInstance(stripes);
+  }
+
+  @Benchmark
+  public Try<Long> singleLockWrite() {
+    final int key = ThreadLocalRandom.current().nextInt(KEYS);
+    return lock.write(() -> values.incrementAndGet(key)).execute();
+  }
+
+  @Benchmark
+  public Try<Long> stripedWrite() {
+    final int key = ThreadLocalRandom.current().nextInt(KEYS);
+    return stripedLock.write(key, () -> values.incrementAndGet(key)).execute();
+  }
+}
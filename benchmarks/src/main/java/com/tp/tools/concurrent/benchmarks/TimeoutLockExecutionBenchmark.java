@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.benchmarks;
+
+import com.tp.tools.concurrent.lock.LockExecution;
+import com.tp.tools.concurrent.lock.TimeoutLockExecution;
+import io.vavr.control.Try;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Cost of {@link TimeoutLockExecution#execute()} when the lock is free and when it is held by
+ * another thread, so that every call times out.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeoutLockExecutionBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class FreeLock {
+
+    final Lock lock = new ReentrantLock();
+    long value;
+  }
+
+  @State(Scope.Benchmark)
+  public static class HeldLock {
+
+    final ReentrantLock lock = new ReentrantLock();
+    private Thread holder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+      final CountDownLatch locked = new CountDownLatch(1);
+      holder = new Thread(() -> {
+        lock.lock();
+        try {
+          locked.countDown();
+          while (!Thread.currentThread().isInterrupted()) {
+            Thread.onSpinWait();
+          }
+        } finally {
+          lock.unlock();
+        }
+      }, "lock-holder");
+      holder.setDaemon(true);
+      holder.start();
+      locked.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+      holder.interrupt();
+      holder.join();
+    }
+  }
+
+  @Benchmark
+  public Try<Long> rawTryLock(final FreeLock state) throws InterruptedException {
+    if (state.lock.tryLock(1L, TimeUnit.SECONDS)) {
+      try {
+        return Try.success(++state.value);
+      } finally {
+        state.lock.unlock();
+      }
+    }
+    return Try.failure(new IllegalStateException());
+  }
+
+  @Benchmark
+  public Try<Long> uncontended(final FreeLock state) {
+    return LockExecution.<Long>withLock(state.lock)
+        .execute(() -> ++state.value)
+        .withLockTimeout()
+        .seconds(1L)
+        .execute();
+  }
+
+  @Benchmark
+  public Try<Long> timedOut(final HeldLock state) {
+    return LockExecution.<Long>withLock(state.lock)
+        .execute(() -> 1L)
+        .withLockTimeout()
+        .nanos(0L)
+        .execute();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent;
+
+import com.tp.tools.concurrent.lock.LockExecution;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>Read-copy-update container of an immutable state (e.g. Vavr persistent collection).</p>
+ * <p>Reads are plain volatile loads of the current snapshot and do not acquire any lock, so they
+ * never block and do not write any shared memory. Writers are serialized by the write lock using
+ * {@link LockExecution} chain: each writer builds the next version of the state from the current
+ * one and publishes it. Readers see either the previous or the next version, never a partially
+ * updated one.</p>
+ * <p>State must be effectively immutable. Updating the published snapshot in place breaks
+ * readers.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final CopyOnWriteState<Map<RouteId, Route>> routes =
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;CopyOnWriteState.newInstance(HashMap.empty());
+ * <br/>
+ * <br/>Option<Route> route(RouteId routeId) {
+ * <br/>&nbsp;&nbsp;return routes.get().get(routeId);
+ * <br/>}
+ * <br/>
+ * <br/>Try<Map<RouteId, Route>> add(Route route) {
+ * <br/>&nbsp;&nbsp;return routes.update(current -> current.put(route.getRouteId(), route))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.execute();
+ * <br/>}
+ * </code>
+ * </p>
+ *
+ * @param <T> state type.
+ */
+public final class CopyOnWriteState<T> {
+
+  private final Lock writeLock;
+  private volatile T snapshot;
+
+  public CopyOnWriteState(final T initial, final Lock writeLock) {
+    this.writeLock = writeLock;
+    this.snapshot = initial;
+  }
+
+  public static <T> CopyOnWriteState<T> newInstance(final T initial) {
+    return new CopyOnWriteState<>(initial, new ReentrantLock());
+  }
+
+  /**
+   * @return current snapshot of the state.
+   */
+  public T get() {
+    return snapshot;
+  }
+
+  /**
+   * Reads the state using a single snapshot, so that all the values read by the reader are
+   * consistent, even if the state is updated in the meantime.
+   *
+   * @param reader function reading the state.
+   * @param <K> read result type.
+   * @return read result.
+   */
+  public <K> K read(final Function<T, K> reader) {
+    return reader.apply(snapshot);
+  }
+
+  /**
+   * Creates execution, which builds the next version of the state from the current one holding
+   * the write lock and publishes it. Next version is not published, if the updater returns
+   * the current snapshot. Stages chained to the returned execution are executed holding the write
+   * lock after the publication.
+   *
+   * @param updater function creating the next version of the state.
+   * @return execution resulting in the published (or current) snapshot.
+   */
+  public LockExecution<T> update(final UnaryOperator<T> updater) {
+    return LockExecution.<T>withLock(writeLock)
+        .execute(this::get)
+        .map(current -> publish(current, updater.apply(current)));
+  }
+
+  private T publish(final T current, final T next) {
+    if (next != current) {
+      snapshot = next;
+    }
+    return next;
+  }
+}
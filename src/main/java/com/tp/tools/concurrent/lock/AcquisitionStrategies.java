@@ -0,0 +1,235 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * {@link AcquisitionStrategy} implementations.
+ */
+final class AcquisitionStrategies {
+
+  static final AcquisitionStrategy BLOCKING = lock -> {
+    lock.lock();
+    return true;
+  };
+
+  private static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+
+  private AcquisitionStrategies() {
+  }
+
+  static AcquisitionStrategy timeout(final LockTimeout timeout) {
+    final long time = timeout.getTimeout();
+    final TimeUnit unit = timeout.getUnit();
+    return timed((lock, base) -> base.tryAcquire(lock, time, unit));
+  }
+
+  /**
+   * @param acquisition timed acquisition.
+   * @return strategy acquiring the lock with given timed acquisition, which uses
+   * {@link AcquisitionStrategy#tryAcquire(Lock, long, TimeUnit)} of the strategy it is combined
+   * with (see {@link Timed#of(AcquisitionStrategy)}).
+   */
+  static AcquisitionStrategy timed(final TimedAcquisition acquisition) {
+    return new Timed(acquisition, BLOCKING);
+  }
+
+  /**
+   * Tries to acquire the lock at most <code>maxSpins + 1</code> times, without blocking.
+   *
+   * @param lock lock to acquire.
+   * @param maxSpins max number of spins between acquisition attempts.
+   * @return <code>true</code> if lock has been acquired, <code>false</code> otherwise.
+   */
+  static boolean spin(final Lock lock, final int maxSpins) {
+    for (int i = 0; i < maxSpins; i++) {
+      if (lock.tryLock()) {
+        return true;
+      }
+      Thread.onSpinWait();
+    }
+    return lock.tryLock();
+  }
+
+  /**
+   * Acquires the lock within a time limit using given strategy.
+   */
+  @FunctionalInterface
+  interface TimedAcquisition {
+
+    boolean acquire(final Lock lock, final AcquisitionStrategy base) throws InterruptedException;
+  }
+
+  /**
+   * <p>Acquires the lock within a time limit (e.g. lock timeout or deadline).</p>
+   * <p>Timed strategy does not replace the strategy the guard already uses, but is combined with
+   * it, so that e.g. {@link PriorityLock} is acquired with the requested priority and hold times
+   * are still reported to the adaptive strategy.</p>
+   */
+  static final class Timed implements AcquisitionStrategy {
+
+    private final TimedAcquisition acquisition;
+    private final AcquisitionStrategy base;
+
+    private Timed(final TimedAcquisition acquisition, final AcquisitionStrategy base) {
+      this.acquisition = acquisition;
+      this.base = base;
+    }
+
+    /**
+     * @param base strategy used so far.
+     * @return this timed strategy acquiring the lock with the timed variant of given strategy.
+     */
+    Timed of(final AcquisitionStrategy base) {
+      return new Timed(acquisition, base instanceof Timed ? ((Timed) base).base : base);
+    }
+
+    @Override
+    public boolean acquire(final Lock lock) throws InterruptedException {
+      return acquisition.acquire(lock, base);
+    }
+
+    @Override
+    public boolean measuresHoldTime() {
+      return base.measuresHoldTime();
+    }
+
+    @Override
+    public void released(final long holdTimeNanos) {
+      base.released(holdTimeNanos);
+    }
+  }
+
+  static final class Priority implements AcquisitionStrategy {
+
+    private final LockPriority priority;
+
+    Priority(final LockPriority priority) {
+      this.priority = priority;
+    }
+
+    @Override
+    public boolean acquire(final Lock lock) {
+      if (lock instanceof PriorityLock) {
+        ((PriorityLock) lock).lock(priority);
+      } else {
+        lock.lock();
+      }
+      return true;
+    }
+
+    @Override
+    public boolean tryAcquire(final Lock lock, final long time, final TimeUnit unit)
+        throws InterruptedException {
+      return lock instanceof PriorityLock
+          ? ((PriorityLock) lock).tryLock(priority, time, unit)
+          : lock.tryLock(time, unit);
+    }
+  }
+
+  static final class Spinning implements AcquisitionStrategy {
+
+    private final int maxSpins;
+
+    Spinning(final int maxSpins) {
+      this.maxSpins = maxSpins;
+    }
+
+    @Override
+    public boolean acquire(final Lock lock) {
+      if (!spin(lock, maxSpins)) {
+        lock.lock();
+      }
+      return true;
+    }
+  }
+
+  static final class Adaptive implements AcquisitionStrategy {
+
+    static final long DEFAULT_MAX_SPIN_NANOS = 20_000L;
+    // moving average weight of the most recent hold time: 1 / 2^AVERAGE_SHIFT
+    private static final int AVERAGE_SHIFT = 3;
+
+    private final long maxSpinNanos;
+    // updated without synchronization, lost updates only make the average slightly less accurate
+    private volatile long averageHoldNanos;
+
+    Adaptive(final long maxSpinNanos) {
+      this.maxSpinNanos = maxSpinNanos;
+    }
+
+    @Override
+    public boolean acquire(final Lock lock) {
+      if (!spin(lock, Long.MAX_VALUE)) {
+        lock.lock();
+      }
+      return true;
+    }
+
+    /**
+     * Spins as {@link #acquire(Lock)} does, but not longer than given time, then waits for the
+     * lock for the time remaining.
+     */
+    @Override
+    public boolean tryAcquire(final Lock lock, final long time, final TimeUnit unit)
+        throws InterruptedException {
+      final long start = System.nanoTime();
+      final long timeoutNanos = unit.toNanos(time);
+      return spin(lock, timeoutNanos)
+          || lock.tryLock(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param lock lock to acquire.
+     * @param maxNanos max spin time, regardless of the average hold time.
+     * @return <code>true</code> if lock has been acquired, <code>false</code> otherwise.
+     */
+    private boolean spin(final Lock lock, final long maxNanos) {
+      if (lock.tryLock()) {
+        return true;
+      }
+      final long average = averageHoldNanos;
+      if (MULTI_CORE && average <= maxSpinNanos) {
+        final long deadline = System.nanoTime()
+            + Math.min(Math.min(average << 1, maxSpinNanos), maxNanos);
+        do {
+          Thread.onSpinWait();
+          if (lock.tryLock()) {
+            return true;
+          }
+        } while (System.nanoTime() - deadline < 0);
+      }
+      return false;
+    }
+
+    @Override
+    public boolean measuresHoldTime() {
+      return true;
+    }
+
+    @Override
+    public void released(final long holdTimeNanos) {
+      final long average = averageHoldNanos;
+      averageHoldNanos = average + ((holdTimeNanos - average) >> AVERAGE_SHIFT);
+    }
+
+    long averageHoldNanos() {
+      return averageHoldNanos;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>Defines how a {@link Lock} is acquired before executing a {@link LockExecution} chain.</p>
+ * <p>Available strategies:</p>
+ * <ul>
+ *   <li>{@link #blocking()} - {@link Lock#lock()} (default),</li>
+ *   <li>{@link #spinning(int)} - bounded number of {@link Lock#tryLock()} attempts with
+ *   {@link Thread#onSpinWait()} in between, then {@link Lock#lock()},</li>
+ *   <li>{@link #adaptive()} - spins only as long as the lock is usually held (based on recently
+ *   measured hold times), then {@link Lock#lock()},</li>
+ *   <li>{@link #priority(LockPriority)} - {@link PriorityLock#lock(LockPriority)}.</li>
+ * </ul>
+ * <p>Executions with lock timeout or deadline acquire the lock with
+ * {@link #tryAcquire(Lock, long, TimeUnit)} of the strategy, so that e.g. the priority is kept.</p>
+ * <p>Spinning avoids parking and unparking threads (and context switches it requires) when
+ * critical sections are very short, but wastes CPU when they are not. It does not pay off on
+ * single core machines.</p>
+ */
+public interface AcquisitionStrategy {
+
+  /**
+   * Acquires given lock.
+   *
+   * @param lock lock to acquire.
+   * @return <code>true</code> if lock has been acquired and has to be released by the caller,
+   * <code>false</code> otherwise.
+   * @throws InterruptedException if thread has been interrupted while acquiring the lock.
+   */
+  boolean acquire(final Lock lock) throws InterruptedException;
+
+  /**
+   * Acquires given lock, waiting at most given time. By default, {@link Lock#tryLock(long,
+   * TimeUnit)} is used.
+   *
+   * @param lock lock to acquire.
+   * @param time max time to wait for the lock.
+   * @param unit time unit.
+   * @return <code>true</code> if lock has been acquired and has to be released by the caller,
+   * <code>false</code> otherwise.
+   * @throws InterruptedException if thread has been interrupted while acquiring the lock.
+   */
+  default boolean tryAcquire(final Lock lock, final long time, final TimeUnit unit)
+      throws InterruptedException {
+    return lock.tryLock(time, unit);
+  }
+
+  /**
+   * @return <code>true</code> if {@link #released(long)} should be called with lock hold times,
+   * <code>false</code> otherwise (hold times are not measured at all).
+   */
+  default boolean measuresHoldTime() {
+    return false;
+  }
+
+  /**
+   * Called after the lock acquired with this strategy has been released, only if
+   * {@link #measuresHoldTime()} is <code>true</code>.
+   *
+   * @param holdTimeNanos time the lock has been held for in nanoseconds.
+   */
+  default void released(final long holdTimeNanos) {
+  }
+
+  /**
+   * @return strategy blocking until the lock is acquired.
+   */
+  static AcquisitionStrategy blocking() {
+    return AcquisitionStrategies.BLOCKING;
+  }
+
+  /**
+   * @param maxSpins max number of {@link Lock#tryLock()} attempts before blocking.
+   * @return strategy spinning before blocking until the lock is acquired.
+   */
+  static AcquisitionStrategy spinning(final int maxSpins) {
+    if (maxSpins < 0) {
+      throw new IllegalArgumentException("Max spins must not be negative: " + maxSpins);
+    }
+    return new AcquisitionStrategies.Spinning(maxSpins);
+  }
+
+  /**
+   * <p>Creates adaptive strategy spinning at most 20 microseconds.</p>
+   * <p>Strategy is stateful - it keeps track of hold times of the lock it is used with, hence
+   * a new instance should be created for each lock.</p>
+   *
+   * @return adaptive spin-then-block strategy.
+   * @see #adaptive(long, TimeUnit)
+   */
+  static AcquisitionStrategy adaptive() {
+    return new AcquisitionStrategies.Adaptive(
+        AcquisitionStrategies.Adaptive.DEFAULT_MAX_SPIN_NANOS);
+  }
+
+  /**
+   * <p>Creates adaptive strategy, which measures lock hold times and keeps their moving average.
+   * If the lock is not free, the strategy spins for (twice) the average hold time and then blocks.
+   * If the average hold time exceeds given max spin time, it blocks immediately.</p>
+   * <p>Strategy is stateful - it keeps track of hold times of the lock it is used with, hence
+   * a new instance should be created for each lock. On single core machines it never spins.</p>
+   *
+   * @param maxSpinTime max spin time.
+   * @param unit max spin time unit.
+   * @return adaptive spin-then-block strategy.
+   */
+  static AcquisitionStrategy adaptive(final long maxSpinTime, final TimeUnit unit) {
+    if (maxSpinTime < 0) {
+      throw new IllegalArgumentException("Max spin time must not be negative: " + maxSpinTime);
+    }
+    return new AcquisitionStrategies.Adaptive(unit.toNanos(maxSpinTime));
+  }
+
+  /**
+   * @param priority acquisition priority.
+   * @return strategy blocking until {@link PriorityLock} is granted with given priority (or
+   * waiting at most given time with {@link PriorityLock#tryLock(LockPriority, long, TimeUnit)}).
+   * Other locks are acquired with {@link Lock#lock()}.
+   */
+  static AcquisitionStrategy priority(final LockPriority priority) {
+    return new AcquisitionStrategies.Priority(priority);
+  }
+}
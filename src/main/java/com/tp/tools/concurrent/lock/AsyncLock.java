@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>Fair (FIFO), non-reentrant mutual exclusion lock, which might be acquired asynchronously.</p>
+ * <p>Waiting for the lock with {@link #acquireAsync()} does not use any thread. Waiters are kept
+ * in a FIFO queue and the thread releasing the lock hands it over to the first waiter by
+ * completing its future. Therefore thousands of waiters cost only memory.</p>
+ * <p>{@link LockExecution#executeAsync} acquires this lock asynchronously. Blocking
+ * {@link Lock} methods are supported as well and share the same FIFO queue.</p>
+ * <p>The lock is not owned by any thread, so it might be released by a different thread than
+ * the one, which acquired it.</p>
+ */
+public final class AsyncLock implements Lock {
+
+  /**
+   * Number of lock holders (0 or 1) and waiters.
+   */
+  private final AtomicInteger count = new AtomicInteger();
+  private final ConcurrentLinkedQueue<CompletableFuture<Void>> waiters =
+      new ConcurrentLinkedQueue<>();
+
+  /**
+   * <p>Acquires the lock asynchronously.</p>
+   * <p>Returned future is completed by the thread releasing the lock (or by the calling thread if
+   * the lock is free). Dependent actions should therefore be short or executed asynchronously.</p>
+   * <p>Once the future is completed, the lock is held and has to be released with
+   * {@link #unlock()}. Cancelling the future before its completion abandons the acquisition.</p>
+   *
+   * @return future completed once the lock is acquired.
+   */
+  public CompletableFuture<Void> acquireAsync() {
+    if (tryLock()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return enqueue();
+  }
+
+  @Override
+  public void lock() {
+    if (!tryLock()) {
+      enqueue().join();
+    }
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (tryLock()) {
+      return;
+    }
+    final CompletableFuture<Void> waiter = enqueue();
+    try {
+      waiter.get();
+    } catch (final InterruptedException e) {
+      if (!abandon(waiter)) {
+        unlock();
+      }
+      throw e;
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public boolean tryLock() {
+    return count.compareAndSet(0, 1);
+  }
+
+  @Override
+  public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (tryLock()) {
+      return true;
+    }
+    final CompletableFuture<Void> waiter = enqueue();
+    try {
+      waiter.get(time, unit);
+      return true;
+    } catch (final TimeoutException e) {
+      return !abandon(waiter);
+    } catch (final InterruptedException e) {
+      if (!abandon(waiter)) {
+        unlock();
+      }
+      throw e;
+    } catch (final ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public void unlock() {
+    int current;
+    do {
+      current = count.get();
+      if (current == 0) {
+        throw new IllegalMonitorStateException("Lock is not held");
+      }
+    } while (!count.compareAndSet(current, current - 1));
+    if (current > 1) {
+      handOver();
+    }
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException("Conditions are not supported by async lock");
+  }
+
+  /**
+   * @return <code>true</code> if the lock is held.
+   */
+  public boolean isLocked() {
+    return count.get() > 0;
+  }
+
+  /**
+   * Waiter is added to the queue before it is counted, so whenever the count indicates waiters,
+   * the queue is not empty.
+   */
+  private CompletableFuture<Void> enqueue() {
+    final CompletableFuture<Void> waiter = new CompletableFuture<>();
+    waiters.add(waiter);
+    if (count.getAndIncrement() == 0) {
+      handOver();
+    }
+    return waiter;
+  }
+
+  /**
+   * Hands the lock over to the first waiter. Abandoned waiters are skipped and the lock is
+   * released on their behalf.
+   */
+  private void handOver() {
+    while (!waiters.poll().complete(null)) {
+      if (count.decrementAndGet() == 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return <code>true</code> if acquisition has been abandoned, <code>false</code> if the lock
+   * has been already handed over to the waiter.
+   */
+  private static boolean abandon(final CompletableFuture<Void> waiter) {
+    return waiter.cancel(false);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Results of a {@link CompiledLockExecution} executed for each element of a batch (see
+ * {@link CompiledLockExecution#executeAll(Iterable, int)}).</p>
+ * <p>Results are kept in a single array indexed as the batch elements, failures in a separate,
+ * usually empty, list of indices and causes, so the result does not allocate a {@link Try} per
+ * element.</p>
+ *
+ * @param <O> result type of the execution.
+ */
+public final class BatchResult<O> {
+
+  static final int DEFAULT_CAPACITY = 16;
+
+  private static final int[] NO_INDICES = new int[0];
+  private static final Throwable[] NO_FAILURES = new Throwable[0];
+
+  private Object[] results;
+  private int size;
+  private int[] failedIndices = NO_INDICES;
+  private Throwable[] failures = NO_FAILURES;
+  private int failureCount;
+
+  BatchResult(final int capacity) {
+    this.results = new Object[Math.max(1, capacity)];
+  }
+
+  /**
+   * @return number of batch elements.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return <code>true</code> if execution succeeded for all the elements.
+   */
+  public boolean isSuccess() {
+    return failureCount == 0;
+  }
+
+  /**
+   * @param index index of the batch element.
+   * @return result of the execution for the element or <code>null</code> if the execution has
+   * been filtered or has failed.
+   */
+  @SuppressWarnings("unchecked")
+  public O get(final int index) {
+    checkIndex(index);
+    return (O) results[index];
+  }
+
+  /**
+   * @param index index of the batch element.
+   * @return result of the execution for the element.
+   */
+  public Try<O> result(final int index) {
+    final Throwable failure = failure(index);
+    return failure != null ? Try.failure(failure) : Try.success(get(index));
+  }
+
+  /**
+   * @return results of the executions indexed as the batch elements (<code>null</code> for
+   * the failed ones).
+   */
+  @SuppressWarnings("unchecked")
+  public List<O> results() {
+    return Collections.unmodifiableList(Arrays.asList((O[]) Arrays.copyOf(results, size)));
+  }
+
+  /**
+   * @return causes of the failed executions by the indices of their batch elements (in ascending
+   * order).
+   */
+  public Map<Integer, Throwable> failures() {
+    final Map<Integer, Throwable> failed = new LinkedHashMap<>();
+    for (int i = 0; i < failureCount; i++) {
+      failed.put(failedIndices[i], failures[i]);
+    }
+    return Collections.unmodifiableMap(failed);
+  }
+
+  /**
+   * @param index index of the batch element.
+   * @return cause of the failed execution for the element or <code>null</code> if it succeeded.
+   */
+  Throwable failure(final int index) {
+    checkIndex(index);
+    final int failure = Arrays.binarySearch(failedIndices, 0, failureCount, index);
+    return failure >= 0 ? failures[failure] : null;
+  }
+
+  void succeeded(final Object result) {
+    ensureCapacity();
+    results[size++] = result;
+  }
+
+  void failed(final Throwable cause) {
+    if (failureCount == failures.length) {
+      final int capacity = Math.max(DEFAULT_CAPACITY, failureCount * 2);
+      failedIndices = Arrays.copyOf(failedIndices, capacity);
+      failures = Arrays.copyOf(failures, capacity);
+    }
+    failedIndices[failureCount] = size;
+    failures[failureCount++] = cause;
+    succeeded(null);
+  }
+
+  private void ensureCapacity() {
+    if (size == results.length) {
+      results = Arrays.copyOf(results, size * 2);
+    }
+  }
+
+  private void checkIndex(final int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "BatchResult[size=" + size + ", failures=" + failureCount + "]";
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionLockBuilder;
+import io.vavr.control.Try;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>Executes {@link LockExecution} chains holding a single lock using flat combining.</p>
+ * <p>Instead of acquiring the lock for each chain, threads publish their chains on a lock-free
+ * publication list. The thread, which acquires the lock (combiner), executes all published chains
+ * in a batch (in publication order) and hands the results over to the waiting threads. Other
+ * threads do not compete for the lock while the combiner runs, they spin and park waiting for
+ * their results. This amortizes lock handovers across many small chains, which, under high
+ * contention, lets a shared structure sustain much higher write throughput.</p>
+ * <p>Chains are executed by the combiner thread, hence they:</p>
+ * <ul>
+ *   <li>should be short and must not rely on thread identity (e.g. thread locals),</li>
+ *   <li>must not execute chains of the same executor.</li>
+ * </ul>
+ * <p>Fatal errors thrown by the chain are rethrown in the thread, which published it.</p>
+ * <p>Chains with timeout (see {@link LockExecution#withLockTimeout()}) are not combined, they
+ * acquire the lock on their own. Neither are chains executed by non-blocking threads (see
+ * {@link NonBlockingThreadPolicy}), which must not wait for the combiner.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final CombiningLockExecutor executor = CombiningLockExecutor.newInstance();
+ * <br/>
+ * <br/>Try<Long> increment() {
+ * <br/>&nbsp;&nbsp;return executor.execute(() -> ++counter)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.execute();
+ * <br/>}
+ * </code>
+ * </p>
+ */
+public final class CombiningLockExecutor {
+
+  private final ExecutionGuard guard;
+
+  public CombiningLockExecutor(final Lock lock) {
+    this(new CombiningGuard(new Combiner(lock), null));
+  }
+
+  private CombiningLockExecutor(final ExecutionGuard guard) {
+    this.guard = guard;
+  }
+
+  public <T> LockExecution<T> execute(final Supplier<T> action) {
+    return new LockExecutionLockBuilder<T>(guard).execute(action);
+  }
+
+  public LockExecution<Void> execute(final Runnable action) {
+    return new LockExecutionLockBuilder<Void>(guard).execute(action);
+  }
+
+  /**
+   * Starts a {@link CompiledLockExecution} chain, which accepts its input at execution time.
+   *
+   * @param action first step of the chain, applied to the execution input.
+   * @param <I> input type of the execution.
+   * @param <T> result type of the first step.
+   * @return compiled execution.
+   */
+  public <I, T> CompiledLockExecution<I, T> compile(final Function<I, T> action) {
+    return new LockExecutionLockBuilder<T>(guard).compile(action);
+  }
+
+  /**
+   * Creates executor combining chains with this executor, which records {@link LockMetrics}. Wait
+   * time is the time from publishing the chain till the combiner starts executing it, hold time
+   * is the chain's execution time and queue length is the number of chains published, but not yet
+   * executed.
+   *
+   * @param metrics metrics to record.
+   * @return instrumented executor.
+   */
+  public CombiningLockExecutor instrumented(final LockMetrics metrics) {
+    return new CombiningLockExecutor(guard.instrumented(metrics));
+  }
+
+  public static CombiningLockExecutor newInstance() {
+    return new CombiningLockExecutor(new ReentrantLock());
+  }
+
+  private static final class CombiningGuard implements ExecutionGuard {
+
+    private final Combiner combiner;
+    // null if not instrumented
+    private final LockMetrics metrics;
+
+    private CombiningGuard(final Combiner combiner, final LockMetrics metrics) {
+      this.combiner = combiner;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public Lock lock() {
+      return combiner.lock;
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final NonBlockingThreadPolicy policy = NonBlockingThreadPolicy.of(Thread.currentThread());
+      if (policy != null && !policy.blocks()) {
+        // lock guard applies the policy instead of parking the thread until combined
+        return withAcquisition(AcquisitionStrategies.BLOCKING).execute(stage, input);
+      }
+      if (metrics == null && combiner.isIdle() && combiner.lock.tryLock()) {
+        return combiner.executeUncontended(stage, input);
+      }
+      return combiner.execute(new PendingExecution(stage, input, metrics));
+    }
+
+    /**
+     * Executions with custom acquisition are not combined, they acquire the lock on their own.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      final ExecutionGuard lockGuard = ExecutionGuard.of(combiner.lock, acquisition);
+      return metrics == null ? lockGuard : lockGuard.instrumented(metrics);
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new CombiningGuard(combiner, metrics);
+    }
+  }
+
+  private static final class Combiner {
+
+    // spinning only delays the combiner on single core machines
+    private static final int MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    // limits the time a single thread spends combining other threads' chains
+    private static final int MAX_COMBINING_PASSES = 16;
+
+    private final Lock lock;
+    // publication list (stack, the most recently published request is the head)
+    private final AtomicReference<PendingExecution> published = new AtomicReference<>();
+
+    private Combiner(final Lock lock) {
+      this.lock = lock;
+    }
+
+    private boolean isIdle() {
+      return published.get() == null;
+    }
+
+    /**
+     * Executes the chain without publishing it, when the lock has been acquired by the caller.
+     */
+    private <I, T> Try<T> executeUncontended(final Stage<I, T> stage, final I input) {
+      try {
+        return Try.success(stage.apply(input));
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      } finally {
+        lock.unlock();
+        wakeUpNextCombiner();
+      }
+    }
+
+    private <T> Try<T> execute(final PendingExecution request) {
+      request.published();
+      publish(request);
+      boolean interrupted = false;
+      int spins = 0;
+      while (!request.isDone()) {
+        if (lock.tryLock()) {
+          try {
+            combine();
+          } finally {
+            lock.unlock();
+          }
+          wakeUpNextCombiner();
+        } else if (spins < MAX_SPINS) {
+          spins++;
+          Thread.onSpinWait();
+        } else {
+          // woken up by the combiner, once the request is done, parking is time bound
+          // in case the lock is held by a thread not combining the requests
+          LockSupport.parkNanos(this, MAX_PARK_NANOS);
+          interrupted |= Thread.interrupted();
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return request.result();
+    }
+
+    private void publish(final PendingExecution request) {
+      PendingExecution head;
+      do {
+        head = published.get();
+        request.next = head;
+      } while (!published.compareAndSet(head, request));
+    }
+
+    private void combine() {
+      for (int pass = 0; pass < MAX_COMBINING_PASSES; pass++) {
+        final PendingExecution batch = published.getAndSet(null);
+        if (batch == null) {
+          return;
+        }
+        PendingExecution request = reverse(batch);
+        while (request != null) {
+          // request must not be accessed once done
+          final PendingExecution next = request.next;
+          request.execute();
+          request = next;
+        }
+      }
+    }
+
+    /**
+     * Requests published after the last combining pass might be left with their threads parked,
+     * one of them is woken up to become the next combiner.
+     */
+    private void wakeUpNextCombiner() {
+      final PendingExecution pending = published.get();
+      if (pending != null) {
+        LockSupport.unpark(pending.thread());
+      }
+    }
+
+    private static PendingExecution reverse(final PendingExecution head) {
+      PendingExecution reversed = null;
+      PendingExecution request = head;
+      while (request != null) {
+        final PendingExecution next = request.next;
+        request.next = reversed;
+        reversed = request;
+        request = next;
+      }
+      return reversed;
+    }
+  }
+}
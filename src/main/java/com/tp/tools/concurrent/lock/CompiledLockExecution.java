@@ -0,0 +1,363 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>Reusable, compiled form of a {@link LockExecution} chain.</p>
+ * <p>All chain steps are fused into a single function when the chain is built, so the compiled
+ * execution might be built once (e.g. at application startup) and executed any number of times.
+ * Executing it allocates nothing apart from the returned {@link Try} (and whatever the chain
+ * steps allocate themselves).</p>
+ * <p>Unlike {@link LockExecution}, the compiled execution accepts its input at execution time,
+ * so the chain steps do not need to capture per-call arguments. Apart from the first step, steps
+ * might access the input using overloads accepting it along with the current result (e.g.
+ * {@link #map(BiFunction)}), so that the compiled execution serves as a template of the chain
+ * executed with different arguments.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final CompiledLockExecution<CarId, Car> findCar =
+ * <br/>&nbsp;&nbsp;LockExecution.<Optional<Car>>withLock(readLock())
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.compile((CarId carId) -> cars.get(carId))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.filter(Optional::isPresent)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(Optional::get);
+ * <br/>
+ * <br/>Try<Car> find(CarId carId) {
+ * <br/>&nbsp;&nbsp;return findCar.execute(carId);
+ * <br/>}
+ * <br/>
+ * <br/>private final CompiledLockExecution<CarUpdated, UpdatedCar> updateIfExists =
+ * <br/>&nbsp;&nbsp;LockExecution.<Optional<Car>>withLock(writeLock())
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.compile((CarUpdated event) -> cars.get(event.getCarId()))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.filter(Optional::isPresent)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.supply(CarUpdated::toCar) // supplied from the input
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(car -> cars.store(car.getCarId(), car))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(UpdatedCar::fromCar);
+ * <br/>
+ * <br/>BatchResult<UpdatedCar> updateAll(List<CarUpdated> events) {
+ * <br/>&nbsp;&nbsp;return updateIfExists.executeAll(events, 100); // locked once per 100 events
+ * <br/>}
+ * </code>
+ * </p>
+ *
+ * @param <I> input type of the execution.
+ * @param <O> return type of the execution.
+ */
+public final class CompiledLockExecution<I, O> {
+
+  private static final CompiledLockExecution<?, ?> NONE =
+      new CompiledLockExecution<>(null, Stage.of(ignore -> null));
+
+  private final ExecutionGuard guard;
+  private final Stage<I, O> stage;
+
+  CompiledLockExecution(final ExecutionGuard guard, final Stage<I, O> stage) {
+    this.guard = guard;
+    this.stage = stage;
+  }
+
+  public <K> CompiledLockExecution<I, K> map(final Function<O, K> mapper) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.map(mapper));
+  }
+
+  /**
+   * @param mapper function applied to the execution input and the current execution result.
+   * @param <K> mapped result type.
+   * @return compiled execution.
+   */
+  public <K> CompiledLockExecution<I, K> map(final BiFunction<I, O, K> mapper) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.mapWithInput(mapper));
+  }
+
+  public <K> CompiledLockExecution<I, K> flatMap(final Function<O, LockExecution<K>> mapper) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.flatMap(mapper));
+  }
+
+  /**
+   * @param mapper function applied to the execution input and the current execution result.
+   * @param <K> nested execution result type.
+   * @return compiled execution.
+   */
+  public <K> CompiledLockExecution<I, K> flatMap(
+      final BiFunction<I, O, LockExecution<K>> mapper) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.flatMapWithInput(mapper));
+  }
+
+  public CompiledLockExecution<I, Void> run(final Runnable runnable) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.run(runnable));
+  }
+
+  public <K> CompiledLockExecution<I, K> supply(final Supplier<K> supplier) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.supply(supplier));
+  }
+
+  /**
+   * @param supplier function supplying the next result from the execution input.
+   * @param <K> supplied result type.
+   * @return compiled execution.
+   */
+  public <K> CompiledLockExecution<I, K> supply(final Function<I, K> supplier) {
+    return isNone() ? none() : new CompiledLockExecution<>(guard, stage.supplyWithInput(supplier));
+  }
+
+  /**
+   * Applies <code>predicate</code> to the current execution result. If the result does not pass
+   * the test, every later step is skipped and the execution returns <code>null</code> result.
+   *
+   * @param predicate predicate to test execution result with.
+   * @return compiled execution.
+   */
+  public CompiledLockExecution<I, O> filter(final Predicate<O> predicate) {
+    return isNone() ? this : new CompiledLockExecution<>(guard, stage.filter(predicate));
+  }
+
+  /**
+   * Applies <code>predicate</code> to the execution input and the current execution result.
+   *
+   * @param predicate predicate to test execution input and result with.
+   * @return compiled execution.
+   * @see #filter(Predicate)
+   */
+  public CompiledLockExecution<I, O> filter(final BiPredicate<I, O> predicate) {
+    return isNone() ? this : new CompiledLockExecution<>(guard, stage.filterWithInput(predicate));
+  }
+
+  public Try<O> execute(final I input) {
+    return isNone() ? Try.success(null) : guard.execute(stage, input);
+  }
+
+  public Try<O> execute() {
+    return execute(null);
+  }
+
+  /**
+   * Executes this chain asynchronously using given executor.
+   *
+   * @param input execution input.
+   * @param executor executor to execute the chain with.
+   * @return future completed with execution result.
+   * @see LockExecution#executeAsync(Executor)
+   */
+  public CompletableFuture<O> executeAsync(final I input, final Executor executor) {
+    return isNone() ? CompletableFuture.completedFuture(null)
+        : guard.executeAsync(stage, input, executor);
+  }
+
+  public CompletableFuture<O> executeAsync(final Executor executor) {
+    return executeAsync(null, executor);
+  }
+
+  /**
+   * Executes this chain for every input acquiring the lock only once.
+   *
+   * @param inputs execution inputs.
+   * @return results of the executions.
+   * @see #executeAll(Iterable, int)
+   */
+  public BatchResult<O> executeAll(final Iterable<I> inputs) {
+    return executeAll(inputs, Integer.MAX_VALUE);
+  }
+
+  /**
+   * <p>Executes this chain for every input acquiring the lock once per chunk of
+   * <code>chunkSize</code> inputs. The lock is released between the chunks, so that a long batch
+   * does not starve other threads waiting for the lock.</p>
+   * <p>Inputs of each chunk are taken from the iterator before the lock is acquired. Failure of
+   * a single execution does not interrupt the batch - it is recorded at the input's index and
+   * the next input is processed. If the lock cannot be acquired (e.g. on timeout), executions of
+   * the whole chunk fail with the acquisition failure.</p>
+   *
+   * @param inputs execution inputs (e.g. <code>stream::iterator</code> for a stream).
+   * @param chunkSize maximum number of inputs processed within a single lock acquisition.
+   * @return results of the executions, indexed as the inputs.
+   */
+  public BatchResult<O> executeAll(final Iterable<I> inputs, final int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    // buffers are sized upfront if the number of inputs is known
+    final int expectedSize = inputs instanceof Collection ? ((Collection<?>) inputs).size()
+        : BatchResult.DEFAULT_CAPACITY;
+    final BatchResult<O> result = new BatchResult<>(expectedSize);
+    final Iterator<I> iterator = inputs.iterator();
+    if (!iterator.hasNext()) {
+      return result;
+    }
+    final Chunk<I, O> chunk = new Chunk<>(stage, chunkSize, expectedSize, Long.MAX_VALUE);
+    while (iterator.hasNext()) {
+      chunk.fill(iterator);
+      execute(chunk, result);
+    }
+    return result;
+  }
+
+  /**
+   * Executes this chain for the inputs within a single lock acquisition, until all the inputs
+   * are processed or the lock has been held for <code>maxHoldNanos</code> (at least one input is
+   * processed anyway).
+   *
+   * @param inputs execution inputs.
+   * @param maxHoldNanos max time the lock is held for in nanoseconds.
+   * @return results of the executions of the processed inputs (the first
+   * {@link BatchResult#size()} of the inputs).
+   */
+  BatchResult<O> executeChunk(final List<I> inputs, final long maxHoldNanos) {
+    final BatchResult<O> result = new BatchResult<>(inputs.size());
+    if (!inputs.isEmpty()) {
+      final Chunk<I, O> chunk = new Chunk<>(stage, inputs.size(), inputs.size(), maxHoldNanos);
+      chunk.fill(inputs.iterator());
+      execute(chunk, result);
+    }
+    return result;
+  }
+
+  private void execute(final Chunk<I, O> chunk, final BatchResult<O> result) {
+    if (isNone()) {
+      chunk.evaluate(null);
+      chunk.drainTo(result, null);
+    } else {
+      final Try<Void> executed = guard.execute(chunk, null);
+      chunk.drainTo(result, executed.isFailure() ? executed.getCause() : null);
+    }
+  }
+
+  CompiledLockExecution<I, O> withAcquisition(final AcquisitionStrategy acquisition) {
+    return isNone() ? this
+        : new CompiledLockExecution<>(guard.withAcquisition(acquisition), stage);
+  }
+
+  CompiledLockExecution<I, O> withDeadline(final Deadline deadline) {
+    return isNone() ? this
+        : new CompiledLockExecution<>(ExecutionGuard.deadline(guard, deadline), stage);
+  }
+
+  private boolean isNone() {
+    return this == NONE;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <I, O> CompiledLockExecution<I, O> none() {
+    return (CompiledLockExecution<I, O>) NONE;
+  }
+
+  /**
+   * <p>Chunk of batch inputs evaluated within a single lock acquisition.</p>
+   * <p>Evaluation only records results and failures of the inputs (and might be repeated, e.g.
+   * by an optimistic read), they are moved to the batch result once the lock is released.
+   * Evaluation stops (leaving the remaining inputs not processed) once the lock has been held for
+   * <code>maxHoldNanos</code>.</p>
+   */
+  private static final class Chunk<I, O> extends Stage<Void, Void> {
+
+    private final Stage<I, O> stage;
+    private final int chunkSize;
+    private final long maxHoldNanos;
+    private Object[] inputs;
+    private Object[] results;
+    private Throwable[] failures;
+    private int size;
+    private int evaluated;
+
+    private Chunk(final Stage<I, O> stage, final int chunkSize, final int expectedSize,
+        final long maxHoldNanos) {
+      this.stage = stage;
+      this.chunkSize = chunkSize;
+      this.maxHoldNanos = maxHoldNanos;
+      final int capacity = Math.max(1, Math.min(chunkSize, expectedSize));
+      this.inputs = new Object[capacity];
+      this.results = new Object[capacity];
+      this.failures = new Throwable[capacity];
+    }
+
+    private void fill(final Iterator<I> iterator) {
+      size = 0;
+      while (size < chunkSize && iterator.hasNext()) {
+        if (size == inputs.length) {
+          final int capacity = (int) Math.min(chunkSize, 2L * size + 1);
+          inputs = Arrays.copyOf(inputs, capacity);
+          results = Arrays.copyOf(results, capacity);
+          failures = Arrays.copyOf(failures, capacity);
+        }
+        inputs[size++] = iterator.next();
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final Void ignore) {
+      final boolean bounded = maxHoldNanos != Long.MAX_VALUE;
+      final long start = bounded ? System.nanoTime() : 0L;
+      evaluated = size;
+      for (int i = 0; i < size; i++) {
+        if (bounded && i > 0 && System.nanoTime() - start >= maxHoldNanos) {
+          evaluated = i;
+          break;
+        }
+        try {
+          results[i] = Stage.result(stage.evaluate((I) inputs[i]));
+          failures[i] = null;
+        } catch (final Throwable e) {
+          if (e instanceof VirtualMachineError || e instanceof LinkageError) {
+            throw (Error) e;
+          } else if (e instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+          }
+          results[i] = null;
+          failures[i] = e;
+        }
+      }
+      return null;
+    }
+
+    private void drainTo(final BatchResult<O> result, final Throwable chunkFailure) {
+      // executions of the whole chunk fail, if the lock has not been acquired
+      final int processed = chunkFailure != null ? size : evaluated;
+      for (int i = 0; i < processed; i++) {
+        if (chunkFailure != null) {
+          result.failed(chunkFailure);
+        } else if (failures[i] != null) {
+          result.failed(failures[i]);
+        } else {
+          result.succeeded(results[i]);
+        }
+      }
+      Arrays.fill(inputs, 0, size, null);
+      Arrays.fill(results, 0, size, null);
+      Arrays.fill(failures, 0, size, null);
+    }
+
+    @Override
+    int length() {
+      return stage.length();
+    }
+  }
+}
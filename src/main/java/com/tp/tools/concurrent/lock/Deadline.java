@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>End-to-end time budget of a {@link DeadlineLockExecution}, either absolute
+ * ({@link #at(Instant)}) or relative to the execution start ({@link #after(Duration)}).</p>
+ * <p>While the execution is running, its deadline is kept by the executing thread, so that locks
+ * of nested executions (see {@link LockExecution#flatMap}) are acquired within the time
+ * remaining.</p>
+ */
+final class Deadline {
+
+  private static final ThreadLocal<Current> CURRENT = ThreadLocal.withInitial(Current::new);
+
+  // null if relative
+  private final Instant instant;
+  private final long budgetNanos;
+
+  private Deadline(final Instant instant, final long budgetNanos) {
+    this.instant = instant;
+    this.budgetNanos = budgetNanos;
+  }
+
+  static Deadline at(final Instant instant) {
+    return new Deadline(Objects.requireNonNull(instant, "Deadline must not be null"), 0L);
+  }
+
+  static Deadline after(final Duration budget) {
+    return new Deadline(null, Math.max(0L, saturatedNanos(budget)));
+  }
+
+  /**
+   * @param now current {@link System#nanoTime()}.
+   * @return {@link System#nanoTime()} of the deadline for the execution starting now.
+   */
+  long nanoTime(final long now) {
+    final long remaining = instant == null ? budgetNanos
+        : saturatedNanos(Duration.between(Instant.now(), instant));
+    return remaining > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + remaining;
+  }
+
+  /**
+   * @return deadline context of the current thread.
+   */
+  static Current current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * @return <code>true</code> if the current thread executes a chain with deadline.
+   */
+  static boolean isActive() {
+    return CURRENT.get().active;
+  }
+
+  /**
+   * <p>Evaluates nested execution's stage guarded by its guard, acquiring the lock within the time
+   * remaining. Failures are thrown, so that they fail the outer execution.</p>
+   * <p>Stages of guards, which do not acquire any lock (e.g. serialized executions), are
+   * evaluated directly, as nested stages of chains without deadline are.</p>
+   *
+   * @param guard nested execution's guard.
+   * @param stage nested execution's stage.
+   * @return stage evaluation result (might be {@link Stage#FILTERED}).
+   */
+  static Object evaluate(final ExecutionGuard guard, final Stage<Void, ?> stage) {
+    if (!guard.acquiresLock()) {
+      return stage.evaluate(null);
+    }
+    return Stage.valueOrThrow(guard.withAcquisition(acquisition(CURRENT.get().nanoTime))
+        .execute(stage.evaluated(), null));
+  }
+
+  /**
+   * @param deadlineNanos {@link System#nanoTime()} of the deadline.
+   * @return strategy acquiring the lock within the time remaining till the deadline (combined with
+   * the strategy of the guard, see {@link AcquisitionStrategies.Timed}).
+   */
+  static AcquisitionStrategy acquisition(final long deadlineNanos) {
+    return AcquisitionStrategies.timed((lock, base) -> acquire(lock, base, deadlineNanos));
+  }
+
+  private static boolean acquire(final Lock lock, final AcquisitionStrategy base,
+      final long deadlineNanos) {
+    final long remaining = deadlineNanos - System.nanoTime();
+    try {
+      return remaining > 0L ? base.tryAcquire(lock, remaining, TimeUnit.NANOSECONDS)
+          : lock.tryLock();
+    } catch (final InterruptedException e) {
+      // rethrown as is, like other execution failures, Try rethrows it as fatal
+      throw Stage.<RuntimeException>sneakyThrow(e);
+    }
+  }
+
+  private static long saturatedNanos(final Duration duration) {
+    try {
+      return duration.toNanos();
+    } catch (final ArithmeticException e) {
+      return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Deadline of the chain executed by the thread.
+   */
+  static final class Current {
+
+    boolean active;
+    long nanoTime;
+  }
+}
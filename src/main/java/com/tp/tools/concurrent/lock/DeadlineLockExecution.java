@@ -0,0 +1,121 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>{@link LockExecution} with a single end-to-end latency budget (deadline), created with
+ * {@link LockExecution#withDeadline(Instant)} or {@link LockExecution#withDeadline(Duration)}.</p>
+ * <p>Every lock acquired by the chain is acquired with
+ * {@link java.util.concurrent.locks.Lock#tryLock(long, java.util.concurrent.TimeUnit)} (or the
+ * timed variant of the chain's {@link AcquisitionStrategy}) with the time remaining till the
+ * deadline. Unlike other chains,
+ * chains with deadline really acquire the locks of the executions they are flat mapped to (nested
+ * executions), while holding the outer lock. As no lock is awaited past the deadline, lock
+ * acquisition cycles (e.g. two chains nesting the same locks in the opposite order) cannot
+ * deadlock - they fail with {@link LockTimeoutException} once the deadline is reached.</p>
+ * <p>If any lock has not been acquired before the deadline, the execution fails with
+ * {@link LockTimeoutException}, all the locks acquired so far are released. Steps executed
+ * before the failure are not rolled back.</p>
+ * <p>Read chains of {@link StampedReadWriteLock} are still executed optimistically, without any
+ * lock. Only if the optimistic read is invalidated, the chain is executed once again holding the
+ * read lock acquired within the time remaining.</p>
+ *
+ * @param <T> execution result type.
+ */
+public class DeadlineLockExecution<T> implements LockExecution<T> {
+
+  private final Deadline deadline;
+
+  private final LockExecution<T> lockExecution;
+
+  private DeadlineLockExecution(final Deadline deadline, final LockExecution<T> lockExecution) {
+    this.deadline = deadline;
+    this.lockExecution = lockExecution;
+  }
+
+  @Override
+  public <K> LockExecution<K> map(final Function<T, K> mapper) {
+    return new DeadlineLockExecution<>(deadline, lockExecution.map(mapper));
+  }
+
+  @Override
+  public <K> LockExecution<K> flatMap(final Function<T, LockExecution<K>> mapper) {
+    return new DeadlineLockExecution<>(deadline, lockExecution.flatMap(mapper));
+  }
+
+  @Override
+  public LockExecution<Void> run(final Runnable runnable) {
+    return new DeadlineLockExecution<>(deadline, lockExecution.run(runnable));
+  }
+
+  @Override
+  public <K> LockExecution<K> supply(final Supplier<K> supplier) {
+    return new DeadlineLockExecution<>(deadline, lockExecution.supply(supplier));
+  }
+
+  @Override
+  public LockExecution<T> filter(final Predicate<T> predicate) {
+    return new DeadlineLockExecution<>(deadline, lockExecution.filter(predicate));
+  }
+
+  @Override
+  public Try<T> execute() {
+    // normally, there should be only one instance of LockExecutionNone
+    if (lockExecution == LockExecution.none() || lockExecution instanceof LockExecutionNone) {
+      return lockExecution.execute();
+    } else if (lockExecution instanceof LockExecutionSome) {
+      final LockExecutionSome<T> some = (LockExecutionSome<T>) lockExecution;
+      return ExecutionGuard.deadline(some.guard(), deadline).execute(some.stage(), null);
+    } else {
+      return Try.failure(new IllegalArgumentException("Unsupported LockExecution type"));
+    }
+  }
+
+  /**
+   * Relative deadline (budget) of the compiled execution starts with each execution.
+   */
+  @Override
+  public CompiledLockExecution<Void, T> compile() {
+    return lockExecution.compile().withDeadline(deadline);
+  }
+
+  @Override
+  public CompletableFuture<T> executeAsync(final Executor executor) {
+    return compile().executeAsync(executor);
+  }
+
+  Deadline deadline() {
+    return deadline;
+  }
+
+  LockExecution<T> lockExecution() {
+    return lockExecution;
+  }
+
+  static <T> DeadlineLockExecution<T> of(final Deadline deadline,
+      final LockExecution<T> lockExecution) {
+    return new DeadlineLockExecution<>(deadline, lockExecution);
+  }
+}
@@ -0,0 +1,755 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>Guards execution of a {@link Stage} chain, e.g. by acquiring a lock before and releasing it
+ * after the execution.</p>
+ */
+interface ExecutionGuard {
+
+  /**
+   * @return lock used by this guard when executing the chain pessimistically or
+   * <code>null</code> if this guard does not use any lock (e.g. serialized executions).
+   */
+  Lock lock();
+
+  /**
+   * Executes given chain guarded by this guard.
+   *
+   * @param stage chain to execute.
+   * @param input chain input.
+   * @param <I> chain input type.
+   * @param <T> chain result type.
+   * @return execution result.
+   */
+  <I, T> Try<T> execute(final Stage<I, T> stage, final I input);
+
+  /**
+   * @param acquisition lock acquisition strategy.
+   * @return guard acquiring the lock using given strategy.
+   */
+  ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition);
+
+  /**
+   * @param metrics metrics to record.
+   * @return guard recording given metrics.
+   */
+  ExecutionGuard instrumented(final LockMetrics metrics);
+
+  /**
+   * @return <code>true</code> if this guard acquires a lock (so it supports acquisition
+   * strategies), <code>false</code> otherwise (e.g. serialized executions).
+   */
+  default boolean acquiresLock() {
+    return true;
+  }
+
+  /**
+   * Executes given chain guarded by this guard asynchronously. By default, the chain is executed
+   * by the given executor and the executor's thread is blocked, while waiting for the guard,
+   * unless it is a non-blocking thread with {@link NonBlockingThreadPolicy#offload} policy.
+   * Then, if the lock is not free, the chain is executed by the policy's blocking executor.
+   *
+   * @param stage chain to execute.
+   * @param input chain input.
+   * @param executor executor to execute the chain with.
+   * @param <I> chain input type.
+   * @param <T> chain result type.
+   * @return future completed with execution result.
+   */
+  default <I, T> CompletableFuture<T> executeAsync(final Stage<I, T> stage, final I input,
+      final Executor executor) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    executor.execute(() -> {
+      final Try<T> execution = execute(stage, input);
+      final NonBlockingThreadPolicy policy = NonBlockingThreadPolicy.of(Thread.currentThread());
+      if (execution.isFailure() && execution.getCause() instanceof NonBlockingThreadException
+          && policy != null && policy.blockingExecutor() != null) {
+        // lock is not free, continue with the blocking executor
+        try {
+          policy.blockingExecutor().execute(() -> complete(result, execute(stage, input)));
+        } catch (final Throwable e) {
+          result.completeExceptionally(e);
+        }
+      } else {
+        complete(result, execution);
+      }
+    });
+    return result;
+  }
+
+  private static <T> void complete(final CompletableFuture<T> future, final Try<T> result) {
+    if (result.isSuccess()) {
+      future.complete(result.get());
+    } else {
+      future.completeExceptionally(result.getCause());
+    }
+  }
+
+  static ExecutionGuard of(final Lock lock) {
+    return new LockGuard(lock, AcquisitionStrategies.BLOCKING, null);
+  }
+
+  static ExecutionGuard of(final Lock lock, final AcquisitionStrategy acquisition) {
+    return new LockGuard(lock, acquisition, null);
+  }
+
+  static ExecutionGuard unguarded() {
+    return UnguardedGuard.INSTANCE;
+  }
+
+  static ExecutionGuard deadline(final ExecutionGuard guard, final Deadline deadline) {
+    return new DeadlineGuard(guard, deadline);
+  }
+
+  static ExecutionGuard optimisticRead(final StampedLock lock) {
+    return new OptimisticReadGuard(lock, ExecutionGuard.of(lock.asReadLock()));
+  }
+
+  static ExecutionGuard holdBudget(final ExecutionGuard guard, final LockWatchdog watchdog,
+      final Duration budget) {
+    return new HoldBudgetGuard(guard, watchdog, budget.toNanos());
+  }
+
+  static ExecutionGuard sequenceRead(final SequenceLock lock) {
+    return new SequenceReadGuard(lock, ExecutionGuard.of(lock));
+  }
+
+  /**
+   * @param read guard of the read lock.
+   * @param write guard of the write lock.
+   * @param check chain checking, whether the write is needed, executed under the read guard.
+   * @return guard executing the chain under the write lock, only if the check passes.
+   */
+  static ExecutionGuard upgrade(final ExecutionGuard read, final ExecutionGuard write,
+      final Stage<Void, ?> check) {
+    return read instanceof OptimisticReadGuard
+        ? new OptimisticUpgradeGuard(((OptimisticReadGuard) read).lock, write, check)
+        : new UpgradeGuard(read, write, check);
+  }
+
+  /**
+   * Executes the chain holding the lock acquired using {@link AcquisitionStrategy}. Lock hold
+   * times are reported to the strategy, only if it {@link AcquisitionStrategy#measuresHoldTime()}.
+   */
+  final class LockGuard implements ExecutionGuard {
+
+    private final Lock lock;
+    private final AcquisitionStrategy acquisition;
+    // null if not instrumented
+    private final LockMetrics metrics;
+
+    private LockGuard(final Lock lock, final AcquisitionStrategy acquisition,
+        final LockMetrics metrics) {
+      this.lock = lock;
+      this.acquisition = acquisition;
+      this.metrics = metrics;
+    }
+
+    @Override
+    public Lock lock() {
+      return lock;
+    }
+
+    /**
+     * Timed strategies (lock timeout, deadline) are combined with the current strategy, others
+     * replace it.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new LockGuard(lock, acquisition instanceof AcquisitionStrategies.Timed
+          ? ((AcquisitionStrategies.Timed) acquisition).of(this.acquisition) : acquisition,
+          metrics);
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new LockGuard(lock, acquisition, metrics);
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final Thread thread = Thread.currentThread();
+      final NonBlockingThreadPolicy policy = NonBlockingThreadPolicy.of(thread);
+      final AcquisitionStrategy effective =
+          policy == null ? acquisition : policy.acquisition(acquisition);
+      if (metrics != null) {
+        return executeInstrumented(stage, input, effective, thread);
+      }
+      final boolean locked;
+      try {
+        locked = effective.acquire(lock);
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      }
+      if (!locked) {
+        return notAcquired(effective, thread);
+      }
+      if (acquisition.measuresHoldTime()) {
+        return executeMeasured(stage, input);
+      }
+      try {
+        return Try.success(stage.apply(input));
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private <T> Try<T> notAcquired(final AcquisitionStrategy effective, final Thread thread) {
+      return effective == acquisition
+          ? LockTimeoutException.failure()
+          : Try.failure(new NonBlockingThreadException(thread));
+    }
+
+    private <I, T> Try<T> executeMeasured(final Stage<I, T> stage, final I input) {
+      final long acquiredAt = System.nanoTime();
+      try {
+        return Try.success(stage.apply(input));
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      } finally {
+        lock.unlock();
+        acquisition.released(System.nanoTime() - acquiredAt);
+      }
+    }
+
+    private <I, T> Try<T> executeInstrumented(final Stage<I, T> stage, final I input,
+        final AcquisitionStrategy effective, final Thread thread) {
+      metrics.acquiring();
+      final long acquisitionStart = System.nanoTime();
+      final boolean locked;
+      try {
+        locked = effective.acquire(lock);
+      } catch (final Throwable e) {
+        metrics.acquisitionFailed(System.nanoTime() - acquisitionStart);
+        return Try.failure(e);
+      }
+      final long acquiredAt = System.nanoTime();
+      metrics.acquired(acquiredAt - acquisitionStart, locked);
+      if (!locked) {
+        return notAcquired(effective, thread);
+      }
+      boolean failed = true;
+      try {
+        final T result = stage.apply(input);
+        failed = false;
+        return Try.success(result);
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      } finally {
+        lock.unlock();
+        final long holdNanos = System.nanoTime() - acquiredAt;
+        metrics.released(holdNanos, failed);
+        if (acquisition.measuresHoldTime()) {
+          acquisition.released(holdNanos);
+        }
+      }
+    }
+
+    /**
+     * {@link AsyncLock} is acquired without blocking any thread. Once acquired, the chain is
+     * executed by the given executor.
+     */
+    @Override
+    public <I, T> CompletableFuture<T> executeAsync(final Stage<I, T> stage, final I input,
+        final Executor executor) {
+      if (!(lock instanceof AsyncLock) || acquisition != AcquisitionStrategies.BLOCKING
+          || metrics != null) {
+        return ExecutionGuard.super.executeAsync(stage, input, executor);
+      }
+      final AsyncLock asyncLock = (AsyncLock) lock;
+      final CompletableFuture<T> result = new CompletableFuture<>();
+      asyncLock.acquireAsync().thenRun(() -> {
+        try {
+          executor.execute(() -> executeAcquired(asyncLock, stage, input, result));
+        } catch (final Throwable e) {
+          asyncLock.unlock();
+          result.completeExceptionally(e);
+        }
+      });
+      return result;
+    }
+
+    private static <I, T> void executeAcquired(final AsyncLock lock, final Stage<I, T> stage,
+        final I input, final CompletableFuture<T> result) {
+      final T value;
+      try {
+        value = stage.apply(input);
+      } catch (final Throwable e) {
+        lock.unlock();
+        result.completeExceptionally(e);
+        return;
+      }
+      lock.unlock();
+      result.complete(value);
+    }
+  }
+
+  /**
+   * Executes the chain without any lock, e.g. compiled chains of {@link LockExecution}
+   * implementations, which acquire their locks on their own. Lock acquisition strategies are not
+   * supported - executions with any strategy fail with {@link UnsupportedOperationException}.
+   */
+  final class UnguardedGuard implements ExecutionGuard {
+
+    private static final UnguardedGuard INSTANCE = new UnguardedGuard(false);
+    private static final UnguardedGuard WITH_ACQUISITION = new UnguardedGuard(true);
+
+    private final boolean withAcquisition;
+
+    private UnguardedGuard(final boolean withAcquisition) {
+      this.withAcquisition = withAcquisition;
+    }
+
+    @Override
+    public Lock lock() {
+      return null;
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      if (withAcquisition) {
+        return Try.failure(new UnsupportedOperationException(
+            "Unguarded execution does not support lock acquisition strategies"));
+      }
+      try {
+        return Try.success(stage.apply(input));
+      } catch (final Throwable e) {
+        return Try.failure(e);
+      }
+    }
+
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return WITH_ACQUISITION;
+    }
+
+    @Override
+    public boolean acquiresLock() {
+      return false;
+    }
+
+    /**
+     * No lock is acquired, hence nothing is recorded.
+     */
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return this;
+    }
+  }
+
+  /**
+   * <p>Executes the chain acquiring the lock within the time remaining till the deadline.</p>
+   * <p>The deadline is kept by the executing thread during the execution, so that nested
+   * executions acquire their locks within the time remaining (see {@link Deadline}). Deadline of
+   * the execution nested in another execution with deadline is never later than the outer one.</p>
+   */
+  final class DeadlineGuard implements ExecutionGuard {
+
+    private final ExecutionGuard guard;
+    private final Deadline deadline;
+
+    private DeadlineGuard(final ExecutionGuard guard, final Deadline deadline) {
+      this.guard = guard;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public Lock lock() {
+      return guard.lock();
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final Deadline.Current current = Deadline.current();
+      final boolean nested = current.active;
+      final long outerNanoTime = current.nanoTime;
+      long nanoTime = deadline.nanoTime(System.nanoTime());
+      if (nested && outerNanoTime - nanoTime < 0L) {
+        nanoTime = outerNanoTime;
+      }
+      current.active = true;
+      current.nanoTime = nanoTime;
+      try {
+        return guard.withAcquisition(Deadline.acquisition(nanoTime)).execute(stage, input);
+      } finally {
+        current.active = nested;
+        current.nanoTime = outerNanoTime;
+      }
+    }
+
+    /**
+     * Lock is always acquired within the time remaining till the deadline.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return this;
+    }
+
+    @Override
+    public boolean acquiresLock() {
+      return guard.acquiresLock();
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new DeadlineGuard(guard.instrumented(metrics), deadline);
+    }
+  }
+
+  /**
+   * <p>Executes the chain without any lock, using {@link StampedLock#tryOptimisticRead()}.</p>
+   * <p>If the stamp is not valid after the execution (a write lock has been acquired in the
+   * meantime), the result (or failure) is discarded and the chain is executed once again holding
+   * the read lock.</p>
+   */
+  final class OptimisticReadGuard implements ExecutionGuard {
+
+    private final StampedLock lock;
+    private final ExecutionGuard fallback;
+
+    private OptimisticReadGuard(final StampedLock lock, final ExecutionGuard fallback) {
+      this.lock = lock;
+      this.fallback = fallback;
+    }
+
+    @Override
+    public Lock lock() {
+      return fallback.lock();
+    }
+
+    /**
+     * Given acquisition is used to acquire the read lock pessimistically.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new OptimisticReadGuard(lock, fallback.withAcquisition(acquisition));
+    }
+
+    /**
+     * Only pessimistic (fallback) executions are instrumented.
+     */
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new OptimisticReadGuard(lock, fallback.instrumented(metrics));
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final long stamp = lock.tryOptimisticRead();
+      if (stamp != 0L) {
+        try {
+          final T result = stage.apply(input);
+          if (lock.validate(stamp)) {
+            return Try.success(result);
+          }
+        } catch (final Throwable e) {
+          // failure might have been caused by reading inconsistent state
+          if (lock.validate(stamp)) {
+            return Try.failure(e);
+          }
+        }
+      }
+      return fallback.execute(stage, input);
+    }
+  }
+
+  /**
+   * Marks executions holding the lock of the guarded guard, so that {@link LockWatchdog} reports
+   * the ones holding the lock longer than the budget.
+   */
+  final class HoldBudgetGuard implements ExecutionGuard {
+
+    private final ExecutionGuard guard;
+    private final LockWatchdog watchdog;
+    private final long budgetNanos;
+
+    private HoldBudgetGuard(final ExecutionGuard guard, final LockWatchdog watchdog,
+        final long budgetNanos) {
+      this.guard = guard;
+      this.watchdog = watchdog;
+      this.budgetNanos = budgetNanos;
+    }
+
+    @Override
+    public Lock lock() {
+      return guard.lock();
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      return guard.execute(new HeldStage<>(stage, watchdog, budgetNanos), input);
+    }
+
+    @Override
+    public <I, T> CompletableFuture<T> executeAsync(final Stage<I, T> stage, final I input,
+        final Executor executor) {
+      return guard.executeAsync(new HeldStage<>(stage, watchdog, budgetNanos), input, executor);
+    }
+
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new HoldBudgetGuard(guard.withAcquisition(acquisition), watchdog, budgetNanos);
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new HoldBudgetGuard(guard.instrumented(metrics), watchdog, budgetNanos);
+    }
+
+    /**
+     * Chain executed by the guarded guard, once the lock is acquired.
+     */
+    private static final class HeldStage<I, T> extends Stage<I, T> {
+
+      private final Stage<I, T> chain;
+      private final LockWatchdog watchdog;
+      private final long budgetNanos;
+
+      private HeldStage(final Stage<I, T> chain, final LockWatchdog watchdog,
+          final long budgetNanos) {
+        this.chain = chain;
+        this.watchdog = watchdog;
+        this.budgetNanos = budgetNanos;
+      }
+
+      @Override
+      Object evaluate(final I input) {
+        final LockWatchdog.Holder holder = watchdog.holder();
+        holder.held(this, budgetNanos);
+        try {
+          return chain.evaluate(input);
+        } finally {
+          holder.released();
+        }
+      }
+
+      @Override
+      int length() {
+        return chain.length();
+      }
+    }
+  }
+
+  /**
+   * <p>Executes the chain without any lock, validating the {@link SequenceLock}'s sequence after
+   * the execution.</p>
+   * <p>If the sequence has changed (the state has been written in the meantime), the result (or
+   * failure) is discarded and the chain is executed once again. While the state is being written,
+   * the reader spins. After {@value #MAX_RETRIES} attempts, the chain is executed holding
+   * the write lock. Chain executed by the writer itself is executed directly.</p>
+   */
+  final class SequenceReadGuard implements ExecutionGuard {
+
+    private static final int MAX_RETRIES = 64;
+
+    private final SequenceLock lock;
+    private final ExecutionGuard fallback;
+
+    private SequenceReadGuard(final SequenceLock lock, final ExecutionGuard fallback) {
+      this.lock = lock;
+      this.fallback = fallback;
+    }
+
+    @Override
+    public Lock lock() {
+      return fallback.lock();
+    }
+
+    /**
+     * Given acquisition is used to acquire the write lock after all the retries.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new SequenceReadGuard(lock, fallback.withAcquisition(acquisition));
+    }
+
+    /**
+     * Only executions holding the write lock are instrumented.
+     */
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new SequenceReadGuard(lock, fallback.instrumented(metrics));
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      for (int attempt = 0; attempt < MAX_RETRIES; attempt++) {
+        final long sequence = lock.sequence();
+        if ((sequence & 1L) != 0L) {
+          if (lock.isHeldByCurrentThread()) {
+            break;
+          }
+          Thread.onSpinWait();
+          continue;
+        }
+        try {
+          final T result = stage.apply(input);
+          if (lock.validate(sequence)) {
+            return Try.success(result);
+          }
+        } catch (final Throwable e) {
+          // failure might have been caused by reading inconsistent state
+          if (lock.validate(sequence)) {
+            return Try.failure(e);
+          }
+        }
+      }
+      return fallback.execute(stage, input);
+    }
+  }
+
+  /**
+   * <p>Evaluates the check chain holding the read lock. If the check is filtered, the execution
+   * completes with <code>null</code> result without acquiring the write lock. Otherwise, the read
+   * lock is released, the write lock is acquired and the check is evaluated once again (as the
+   * state might have changed in the meantime), before the chain is executed with its result.</p>
+   * <p>The chain passed to {@link #execute} has to accept the check result as its input.</p>
+   */
+  final class UpgradeGuard implements ExecutionGuard {
+
+    private final ExecutionGuard read;
+    private final ExecutionGuard write;
+    private final Stage<Void, ?> check;
+    private final Stage<Void, Object> evaluatedCheck;
+
+    private UpgradeGuard(final ExecutionGuard read, final ExecutionGuard write,
+        final Stage<Void, ?> check) {
+      this.read = read;
+      this.write = write;
+      this.check = check;
+      this.evaluatedCheck = check.evaluated();
+    }
+
+    @Override
+    public Lock lock() {
+      return write.lock();
+    }
+
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new UpgradeGuard(read.withAcquisition(acquisition), write.withAcquisition(acquisition),
+          check);
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new UpgradeGuard(read.instrumented(metrics), write.instrumented(metrics), check);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final Try<Object> checked = read.execute(evaluatedCheck, null);
+      if (checked.isFailure()) {
+        return (Try<T>) checked;
+      }
+      if (checked.get() == Stage.FILTERED) {
+        return Try.success(null);
+      }
+      return write.execute(((Stage<Void, Object>) check).then((Stage<Object, T>) stage), null);
+    }
+  }
+
+  /**
+   * <p>Evaluates the check chain optimistically (see {@link OptimisticReadGuard}). If the check is
+   * filtered, the execution completes with <code>null</code> result without acquiring any lock.
+   * Otherwise, the optimistic stamp is converted to the write lock
+   * ({@link StampedLock#tryConvertToWriteLock(long)}) and the chain is executed with the check
+   * result.</p>
+   * <p>If the stamp is not valid after the check or cannot be converted, because a write lock has
+   * been acquired in the meantime, the write lock is acquired by the write guard and the check is
+   * evaluated once again. Executions promoted by the conversion are not instrumented.</p>
+   */
+  final class OptimisticUpgradeGuard implements ExecutionGuard {
+
+    private final StampedLock lock;
+    private final ExecutionGuard write;
+    private final Stage<Void, ?> check;
+
+    private OptimisticUpgradeGuard(final StampedLock lock, final ExecutionGuard write,
+        final Stage<Void, ?> check) {
+      this.lock = lock;
+      this.write = write;
+      this.check = check;
+    }
+
+    @Override
+    public Lock lock() {
+      return write.lock();
+    }
+
+    /**
+     * Given acquisition is used to acquire the write lock, when the stamp cannot be converted.
+     */
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new OptimisticUpgradeGuard(lock, write.withAcquisition(acquisition), check);
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new OptimisticUpgradeGuard(lock, write.instrumented(metrics), check);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      final Stage<Object, T> upgraded = (Stage<Object, T>) stage;
+      final long stamp = lock.tryOptimisticRead();
+      if (stamp != 0L) {
+        Object checked = null;
+        boolean evaluated = false;
+        try {
+          checked = check.evaluate(null);
+          evaluated = true;
+        } catch (final Throwable e) {
+          // failure might have been caused by reading inconsistent state
+          if (lock.validate(stamp)) {
+            return Try.failure(e);
+          }
+        }
+        if (evaluated && lock.validate(stamp)) {
+          if (checked == Stage.FILTERED) {
+            return Try.success(null);
+          }
+          final long writeStamp = lock.tryConvertToWriteLock(stamp);
+          if (writeStamp != 0L) {
+            try {
+              return Try.success(upgraded.apply(checked));
+            } catch (final Throwable e) {
+              return Try.failure(e);
+            } finally {
+              lock.unlockWrite(writeStamp);
+            }
+          }
+        }
+      }
+      return write.execute(((Stage<Void, Object>) check).then(upgraded), null);
+    }
+  }
+}
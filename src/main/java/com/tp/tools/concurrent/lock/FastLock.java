@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Non-reentrant, non-fair lock, optimized for the uncontended case: the lock is acquired with
+ * a single CAS and released with a single store (and a check for queued threads). Contended
+ * threads are queued and parked as with {@link ReentrantLock}.</p>
+ * <p>Unlike {@link ReentrantLock}, the lock does not track its owner nor hold count, so it must
+ * not be acquired again by the thread holding it (the thread would deadlock) and it might be
+ * released by any thread. {@link LockExecution} chains never acquire their lock again, unless
+ * the chain executes another execution guarded by the same lock.</p>
+ */
+public final class FastLock implements Lock {
+
+  private final Sync sync = new Sync();
+
+  @Override
+  public void lock() {
+    if (!sync.tryAcquire(1)) {
+      sync.acquire(1);
+    }
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    sync.acquireInterruptibly(1);
+  }
+
+  @Override
+  public boolean tryLock() {
+    return sync.tryAcquire(1);
+  }
+
+  @Override
+  public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+    return sync.tryAcquire(1) || sync.tryAcquireNanos(1, unit.toNanos(time));
+  }
+
+  @Override
+  public void unlock() {
+    sync.release(1);
+  }
+
+  /**
+   * {@link Condition#await()} requires the lock to be held, but does not check, whether it is
+   * held by the current thread.
+   */
+  @Override
+  public Condition newCondition() {
+    return sync.newCondition();
+  }
+
+  public boolean isLocked() {
+    return sync.isHeldExclusively();
+  }
+
+  private static final class Sync extends AbstractQueuedSynchronizer {
+
+    private static final long serialVersionUID = 4318236473914384617L;
+
+    @Override
+    protected boolean tryAcquire(final int ignore) {
+      return compareAndSetState(0, 1);
+    }
+
+    @Override
+    protected boolean tryRelease(final int ignore) {
+      if (getState() == 0) {
+        throw new IllegalMonitorStateException("Lock is not held");
+      }
+      setState(0);
+      return true;
+    }
+
+    @Override
+    protected boolean isHeldExclusively() {
+      return getState() == 1;
+    }
+
+    private Condition newCondition() {
+      return new ConditionObject();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Concurrent histogram of non-negative long values with log-linear buckets (similar to
+ * HdrHistogram). Values are grouped by their highest bit into ranges, each split into
+ * {@value #SUB_BUCKETS} equal buckets, so recorded values are accurate to ~3%.</p>
+ * <p>All buckets are allocated upfront, recording a value does not allocate any memory.</p>
+ */
+final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_MASK = SUB_BUCKETS - 1;
+  static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records given value. Negative values are recorded as <code>0</code>.
+   *
+   * @param value value to record.
+   */
+  void record(final long value) {
+    final long recorded = Math.max(value, 0L);
+    counts.getAndIncrement(index(recorded));
+    sum.add(recorded);
+    long currentMax = max.get();
+    while (recorded > currentMax && !max.compareAndSet(currentMax, recorded)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * @return point in time copy of this histogram (might be slightly inconsistent, if values
+   * are recorded concurrently).
+   */
+  HistogramSnapshot snapshot() {
+    final long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return new HistogramSnapshot(snapshot, sum.sum(), max.get());
+  }
+
+  static int index(final long value) {
+    // values lower than 2 * SUB_BUCKETS have their own buckets (shift == 0)
+    final int shift = 63 - Long.numberOfLeadingZeros(value | SUB_BUCKETS) - SUB_BUCKET_BITS;
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  /**
+   * @param index bucket index.
+   * @return highest value recorded in the bucket with given index.
+   */
+  static long highestValue(final int index) {
+    if (index < SUB_BUCKETS << 1) {
+      return index;
+    }
+    final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    final long lowest = (long) ((index & SUB_BUCKET_MASK) + SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
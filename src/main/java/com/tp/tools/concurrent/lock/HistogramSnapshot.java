@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+/**
+ * Immutable copy of a histogram recorded by {@link LockMetrics}.
+ */
+public final class HistogramSnapshot {
+
+  private final long[] counts;
+  private final long count;
+  private final long sum;
+  private final long max;
+
+  HistogramSnapshot(final long[] counts, final long sum, final long max) {
+    this.counts = counts;
+    long total = 0L;
+    for (final long bucketCount : counts) {
+      total += bucketCount;
+    }
+    this.count = total;
+    this.sum = sum;
+    this.max = max;
+  }
+
+  /**
+   * @return number of recorded values.
+   */
+  public long count() {
+    return count;
+  }
+
+  /**
+   * @return sum of recorded values.
+   */
+  public long sum() {
+    return sum;
+  }
+
+  /**
+   * @return max recorded value or <code>0</code> if no value has been recorded.
+   */
+  public long max() {
+    return max;
+  }
+
+  /**
+   * @return mean of recorded values or <code>0</code> if no value has been recorded.
+   */
+  public double mean() {
+    return count == 0L ? 0.0 : (double) sum / count;
+  }
+
+  /**
+   * @param percentile percentile between <code>0</code> and <code>100</code>.
+   * @return value, which given percentage of recorded values is lower or equal to (accurate to
+   * the histogram bucket size) or <code>0</code> if no value has been recorded.
+   */
+  public long valueAtPercentile(final double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+    }
+    if (count == 0L) {
+      return 0L;
+    }
+    final long target = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+    long cumulative = 0L;
+    for (int i = 0; i < counts.length; i++) {
+      cumulative += counts[i];
+      if (cumulative >= target) {
+        return Math.min(Histogram.highestValue(i), max);
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "HistogramSnapshot{" +
+        "count=" + count +
+        ", mean=" + mean() +
+        ", p50=" + valueAtPercentile(50.0) +
+        ", p99=" + valueAtPercentile(99.0) +
+        ", max=" + max +
+        '}';
+  }
+}
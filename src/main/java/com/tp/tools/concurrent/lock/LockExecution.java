@@ -18,6 +18,12 @@ package com.tp.tools.concurrent.lock;
 
 import com.tp.tools.concurrent.lock.TimeoutLockExecution.TimeoutLockExecutionBuilder;
 import io.vavr.control.Try;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -67,12 +73,118 @@ public interface LockExecution<T> {
 
   Try<T> execute();
 
+  /**
+   * <p>Compiles this chain into a reusable {@link CompiledLockExecution}, which might be executed
+   * any number of times.</p>
+   * <p>By default, the compiled execution calls {@link #execute()} (ignoring its input), so that
+   * the execution acquires its locks on its own. Lock acquisition strategies (e.g. lock timeouts
+   * and deadlines) are not supported by such compiled executions - they fail with
+   * {@link UnsupportedOperationException}.</p>
+   *
+   * @return compiled execution.
+   */
+  default CompiledLockExecution<Void, T> compile() {
+    return new CompiledLockExecution<>(ExecutionGuard.unguarded(),
+        Stage.of(() -> Stage.valueOrThrow(execute())));
+  }
+
+  /**
+   * <p>Executes this chain asynchronously using given executor.</p>
+   * <p>If the chain uses {@link AsyncLock}, waiting for the lock does not use any thread and
+   * the chain is executed by the executor once the lock is acquired. Otherwise, the executor's
+   * thread waits for the lock. By default, {@link #execute()} is called by the executor.</p>
+   *
+   * @param executor executor to execute the chain with.
+   * @return future completed with execution result or completed exceptionally with execution
+   * failure.
+   */
+  default CompletableFuture<T> executeAsync(final Executor executor) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    executor.execute(() -> {
+      try {
+        final Try<T> execution = execute();
+        if (execution.isSuccess()) {
+          result.complete(execution.get());
+        } else {
+          result.completeExceptionally(execution.getCause());
+        }
+      } catch (final Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Executes the chain asynchronously without blocking the caller. By default, the chain is
+   * executed by {@link ForkJoinPool#commonPool()}, but e.g. {@link SerializedExecution} chains
+   * are only put into its mailbox.
+   *
+   * @return future completed with execution result or completed exceptionally with execution
+   * failure.
+   */
+  default CompletableFuture<T> submit() {
+    return executeAsync(ForkJoinPool.commonPool());
+  }
+
   default TimeoutLockExecutionBuilder<T> withLockTimeout() {
     return TimeoutLockExecution.builder(this);
   }
 
+  /**
+   * Creates execution, which acquires all its locks (including locks of nested executions) before
+   * the given deadline.
+   *
+   * @param deadline deadline of the whole execution.
+   * @return execution with deadline.
+   * @see DeadlineLockExecution
+   */
+  default DeadlineLockExecution<T> withDeadline(final Instant deadline) {
+    return DeadlineLockExecution.of(Deadline.at(deadline), this);
+  }
+
+  /**
+   * Creates execution, which acquires all its locks (including locks of nested executions) within
+   * the given budget, starting when the execution starts.
+   *
+   * @param budget time budget of the whole execution.
+   * @return execution with deadline.
+   * @see DeadlineLockExecution
+   */
+  default DeadlineLockExecution<T> withDeadline(final Duration budget) {
+    return DeadlineLockExecution.of(Deadline.after(budget), this);
+  }
+
   static <T> LockExecutionNone.LockExecutionLockBuilder<T> withLock(final Lock lock) {
-    return new LockExecutionLockBuilder<>(lock);
+    return new LockExecutionLockBuilder<>(ExecutionGuard.of(lock));
+  }
+
+  /**
+   * Creates execution builder, which acquires all the given locks in a global, stable order
+   * (by their identity), regardless of the order they are given in, and releases them in reverse
+   * order. Executions holding overlapping sets of locks cannot deadlock. With timeout, locks
+   * acquired so far are released and the acquisition is retried with back-off, if any of
+   * the following locks is not acquired within a short window.
+   *
+   * @param locks locks to execute the chain with.
+   * @param <T> execution result type.
+   * @return lock execution builder.
+   */
+  static <T> LockExecutionNone.LockExecutionLockBuilder<T> withLocks(final Lock... locks) {
+    return new LockExecutionLockBuilder<>(ExecutionGuard.of(OrderedLock.ranked(locks)));
+  }
+
+  /**
+   * Creates execution builder, which acquires the lock using given strategy.
+   *
+   * @param lock lock to execute the chain with.
+   * @param acquisition lock acquisition strategy.
+   * @param <T> execution result type.
+   * @return lock execution builder.
+   */
+  static <T> LockExecutionNone.LockExecutionLockBuilder<T> withLock(final Lock lock,
+      final AcquisitionStrategy acquisition) {
+    return new LockExecutionLockBuilder<>(ExecutionGuard.of(lock, acquisition));
   }
 
   @SuppressWarnings("unchecked")
@@ -80,8 +192,39 @@ public interface LockExecution<T> {
     return (LockExecution<T>) LockExecutionNone.NONE;
   }
 
-  private static <T> LockExecution<T> of(final Lock lock, final Supplier<T> action) {
-    return new LockExecutionSome<>(lock, action);
+  /**
+   * Executes independent executions in parallel using {@link ForkJoinPool#commonPool()}.
+   *
+   * @param executions executions to execute.
+   * @param <T> result type of the executions.
+   * @return results of the executions (in the executions' order) or the first failure.
+   * @see #parallel(List, Executor)
+   */
+  static <T> Try<List<T>> parallel(final List<? extends LockExecution<T>> executions) {
+    return parallel(executions, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * <p>Executes independent executions (e.g. reads of different stores, each guarded by its own
+   * lock) in parallel, so that the total time is set by the slowest execution rather than by
+   * the sum of all of them.</p>
+   * <p>The calling thread executes the executions as well, then waits for the ones executed by
+   * the executor. Execution fails fast - it fails with the first failure, without waiting for
+   * the executions running on the executor (they are not interrupted), and executions not started
+   * yet are skipped.</p>
+   *
+   * @param executions executions to execute.
+   * @param executor executor to execute the executions with.
+   * @param <T> result type of the executions.
+   * @return results of the executions (in the executions' order) or the first failure.
+   */
+  static <T> Try<List<T>> parallel(final List<? extends LockExecution<T>> executions,
+      final Executor executor) {
+    return ParallelExecution.execute(executions, executor);
+  }
+
+  private static <T> LockExecution<T> of(final ExecutionGuard guard, final Stage<Void, T> stage) {
+    return new LockExecutionSome<>(guard, stage);
   }
 
   interface LockExecutionWithAction<T> extends LockExecution<T> {
@@ -91,6 +234,10 @@ public interface LockExecution<T> {
 
   interface LockExecutionWithLock<T> extends LockExecution<T> {
 
+    /**
+     * @return lock guarding the chain or <code>null</code> if the chain is not guarded by any lock
+     * (e.g. {@link SerializedExecution} chains).
+     */
     Lock lock();
   }
 
@@ -138,96 +285,162 @@ public interface LockExecution<T> {
     public Try<T> execute() {
       return Try.success(null);
     }
+
+    @Override
+    public CompiledLockExecution<Void, T> compile() {
+      return CompiledLockExecution.none();
+    }
+
+    @Override
+    public CompletableFuture<T> executeAsync(final Executor executor) {
+      return CompletableFuture.completedFuture(null);
+    }
   }
 
   class LockExecutionSome<T> implements LockExecutionWithAction<T>,
       LockExecutionWithLock<T> {
 
-    private final Lock lock;
-    private final Function<Void, T> action;
+    private final ExecutionGuard guard;
+    private final Stage<Void, T> stage;
 
-    private LockExecutionSome(final Lock lock, final Supplier<T> action) {
-      this.lock = lock;
-      this.action = ignore -> action.get();
+    private LockExecutionSome(final ExecutionGuard guard, final Stage<Void, T> stage) {
+      this.guard = guard;
+      this.stage = stage;
     }
 
     @Override
     public Function<Void, T> action() {
-      return action;
+      return stage;
     }
 
     @Override
     public Lock lock() {
-      return lock;
+      return guard.lock();
+    }
+
+    Stage<Void, T> stage() {
+      return stage;
+    }
+
+    ExecutionGuard guard() {
+      return guard;
     }
 
     @Override
     public <K> LockExecution<K> map(final Function<T, K> mapper) {
-      return LockExecution.of(lock, () -> this.action.andThen(mapper).apply(null));
+      return LockExecution.of(guard, stage.map(mapper));
     }
 
     @Override
     public <K> LockExecution<K> flatMap(final Function<T, LockExecution<K>> mapper) {
-      return LockExecution.of(lock, () -> {
-        final LockExecution<K> apply = this.action.andThen(mapper).apply(null);
-        return ((LockExecutionWithAction<K>) apply).action().apply(null);
-      });
+      return LockExecution.of(guard, stage.flatMap(mapper));
     }
 
     @Override
     public LockExecution<Void> run(final Runnable runnable) {
-      return LockExecution.of(lock, () ->
-          this.action
-              .andThen(ignore -> runRunnable(runnable))
-              .apply(null)
-      );
+      return LockExecution.of(guard, stage.run(runnable));
     }
 
     @Override
     public <K> LockExecution<K> supply(final Supplier<K> supplier) {
-      return LockExecution.of(lock, () ->
-          this.action
-              .andThen(ignore -> supplier.get())
-              .apply(null)
-      );
+      return LockExecution.of(guard, stage.supply(supplier));
     }
 
     @Override
     public LockExecution<T> filter(final Predicate<T> predicate) {
-      return this.flatMap(ret -> predicate.test(ret) ? this : LockExecution.none());
+      return LockExecution.of(guard, stage.filter(predicate));
     }
 
     @Override
     public Try<T> execute() {
-      return Try.run(lock::lock)
-          .mapTry(ignore -> action.apply(null))
-          .andFinally(lock::unlock);
+      return guard.execute(stage, null);
+    }
+
+    @Override
+    public CompiledLockExecution<Void, T> compile() {
+      return new CompiledLockExecution<>(guard, stage);
     }
 
-    private Void runRunnable(final Runnable runnable) {
-      runnable.run();
-      return null;
+    @Override
+    public CompletableFuture<T> executeAsync(final Executor executor) {
+      return guard.executeAsync(stage, null, executor);
     }
   }
 
   //region builders
   class LockExecutionLockBuilder<T> {
 
-    private final Lock lock;
+    private final ExecutionGuard guard;
+
+    LockExecutionLockBuilder(final ExecutionGuard guard) {
+      this.guard = guard;
+    }
+
+    /**
+     * Chains built by the returned builder record lock contention metrics.
+     *
+     * @param metrics metrics to record.
+     * @return instrumented lock execution builder.
+     */
+    public LockExecutionLockBuilder<T> instrumented(final LockMetrics metrics) {
+      return new LockExecutionLockBuilder<>(guard.instrumented(metrics));
+    }
 
-    private LockExecutionLockBuilder(final Lock lock) {
-      this.lock = lock;
+    /**
+     * Chains built by the returned builder are tracked by the given watchdog, which reports
+     * executions holding the lock longer than the budget.
+     *
+     * @param watchdog watchdog tracking the executions.
+     * @param budget lock hold time budget.
+     * @return lock execution builder with hold time budget.
+     */
+    public LockExecutionLockBuilder<T> holdBudget(final LockWatchdog watchdog,
+        final Duration budget) {
+      return new LockExecutionLockBuilder<>(ExecutionGuard.holdBudget(guard, watchdog, budget));
+    }
+
+    /**
+     * Chains built by the returned builder acquire {@link PriorityLock} with given priority
+     * (see {@link AcquisitionStrategy#priority(LockPriority)}). Combined with
+     * {@link #instrumented(LockMetrics)}, wait times might be recorded per priority class.
+     *
+     * @param priority acquisition priority.
+     * @return lock execution builder acquiring the lock with given priority.
+     */
+    public LockExecutionLockBuilder<T> priority(final LockPriority priority) {
+      return new LockExecutionLockBuilder<>(
+          guard.withAcquisition(AcquisitionStrategy.priority(priority)));
     }
 
     public LockExecution<T> execute(final Supplier<T> action) {
-      return LockExecution.of(lock, action);
+      return LockExecution.of(guard, Stage.of(action));
     }
 
     public LockExecution<Void> execute(final Runnable action) {
-      return LockExecution.of(lock, () -> {
-        action.run();
-        return null;
-      });
+      return LockExecution.of(guard, Stage.of(action));
+    }
+
+    /**
+     * Starts a {@link CompiledLockExecution} chain, which accepts its input at execution time.
+     *
+     * @param action first step of the chain, applied to the execution input.
+     * @param <I> input type of the execution.
+     * @return compiled execution.
+     */
+    public <I> CompiledLockExecution<I, T> compile(final Function<I, T> action) {
+      return new CompiledLockExecution<>(guard, Stage.of(action));
+    }
+
+    /**
+     * Starts a chain, which results in the input passed to the chain by the guard (see
+     * {@link ExecutionGuard#upgrade}).
+     *
+     * @return lock execution.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LockExecution<T> input() {
+      // erased identity, as the input is not Void
+      return LockExecution.of(guard, Stage.of((Function<Void, T>) (Function) Function.identity()));
     }
   }
   //endregion
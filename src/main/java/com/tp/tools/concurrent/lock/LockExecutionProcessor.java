@@ -0,0 +1,326 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>{@link Flow.Processor} executing a {@link CompiledLockExecution} template for each element
+ * of a stream and publishing the results.</p>
+ * <p>The processor requests at most <code>bufferSize</code> elements from the upstream ahead and
+ * processes elements only when the downstream has requested their results, so a slow subscriber
+ * slows down the upstream instead of growing the buffer.</p>
+ * <p>Elements are processed by the given executor in micro-batches - elements buffered when
+ * the processing starts are executed within a single lock acquisition (see
+ * {@link CompiledLockExecution#executeAll(Iterable, int)}), up to <code>maxBatchSize</code> of
+ * them and only until the lock has been held for <code>maxHoldTime</code>.</p>
+ * <p>Filtered executions (<code>null</code> results) are not published. The first failed
+ * execution cancels the upstream and fails the downstream.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final CompiledLockExecution<CarUpdated, UpdatedCar> updateIfExists = ...
+ * <br/>
+ * <br/>void process(Flow.Publisher<CarUpdated> events, Flow.Subscriber<UpdatedCar> updates) {
+ * <br/>&nbsp;&nbsp;final LockExecutionProcessor<CarUpdated, UpdatedCar> processor =
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;LockExecutionProcessor.newBatching(updateIfExists, 64,
+ * Duration.ofMillis(1));
+ * <br/>&nbsp;&nbsp;processor.subscribe(updates);
+ * <br/>&nbsp;&nbsp;events.subscribe(processor);
+ * <br/>}
+ * </code>
+ * </p>
+ *
+ * @param <I> element type.
+ * @param <O> result type.
+ */
+public final class LockExecutionProcessor<I, O> implements Flow.Processor<I, O> {
+
+  private final CompiledLockExecution<I, O> template;
+  private final int maxBatchSize;
+  private final long maxHoldNanos;
+  private final int bufferSize;
+  private final Executor executor;
+
+  private final Queue<I> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicLong demand = new AtomicLong();
+  private final AtomicInteger wip = new AtomicInteger();
+  // accessed by the processing thread only
+  private final List<I> batch = new ArrayList<>();
+
+  private final AtomicReference<Subscriber<? super O>> downstream = new AtomicReference<>();
+  private volatile Subscription upstream;
+  // set once the downstream has been given its subscription
+  private volatile boolean subscribed;
+  private volatile boolean upstreamDone;
+  private volatile Throwable upstreamFailure;
+  private volatile Throwable downstreamFailure;
+  private volatile boolean cancelled;
+  private boolean terminated;
+
+  private LockExecutionProcessor(final CompiledLockExecution<I, O> template,
+      final int maxBatchSize, final Duration maxHoldTime, final int bufferSize,
+      final Executor executor) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+    }
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    this.template = Objects.requireNonNull(template, "Template must not be null");
+    this.maxBatchSize = maxBatchSize;
+    this.maxHoldNanos = maxHoldNanos(maxHoldTime);
+    this.bufferSize = Math.max(bufferSize, maxBatchSize);
+    this.executor = Objects.requireNonNull(executor, "Executor must not be null");
+  }
+
+  /**
+   * Creates processor executing the template for each element within its own lock acquisition.
+   *
+   * @param template execution template.
+   * @param <I> element type.
+   * @param <O> result type.
+   * @return processor.
+   */
+  public static <I, O> LockExecutionProcessor<I, O> newInstance(
+      final CompiledLockExecution<I, O> template) {
+    return new LockExecutionProcessor<>(template, 1, null, Flow.defaultBufferSize(),
+        ForkJoinPool.commonPool());
+  }
+
+  public static <I, O> LockExecutionProcessor<I, O> newInstance(
+      final CompiledLockExecution<I, O> template, final int bufferSize, final Executor executor) {
+    return new LockExecutionProcessor<>(template, 1, null, bufferSize, executor);
+  }
+
+  /**
+   * Creates processor executing the template for micro-batches of elements within a single lock
+   * acquisition.
+   *
+   * @param template execution template.
+   * @param maxBatchSize max number of elements processed within a single lock acquisition.
+   * @param maxHoldTime max time the lock is held for by a single batch.
+   * @param <I> element type.
+   * @param <O> result type.
+   * @return processor.
+   */
+  public static <I, O> LockExecutionProcessor<I, O> newBatching(
+      final CompiledLockExecution<I, O> template, final int maxBatchSize,
+      final Duration maxHoldTime) {
+    return new LockExecutionProcessor<>(template, maxBatchSize, maxHoldTime,
+        Flow.defaultBufferSize(), ForkJoinPool.commonPool());
+  }
+
+  public static <I, O> LockExecutionProcessor<I, O> newBatching(
+      final CompiledLockExecution<I, O> template, final int maxBatchSize,
+      final Duration maxHoldTime, final int bufferSize, final Executor executor) {
+    return new LockExecutionProcessor<>(template, maxBatchSize, maxHoldTime, bufferSize,
+        executor);
+  }
+
+  @Override
+  public void subscribe(final Subscriber<? super O> subscriber) {
+    Objects.requireNonNull(subscriber, "Subscriber must not be null");
+    if (downstream.compareAndSet(null, subscriber)) {
+      subscriber.onSubscribe(new DownstreamSubscription());
+      subscribed = true;
+      schedule();
+    } else {
+      subscriber.onSubscribe(NoOpSubscription.INSTANCE);
+      subscriber.onError(new IllegalStateException("Processor supports a single subscriber"));
+    }
+  }
+
+  @Override
+  public void onSubscribe(final Subscription subscription) {
+    Objects.requireNonNull(subscription, "Subscription must not be null");
+    if (upstream != null || cancelled) {
+      subscription.cancel();
+      return;
+    }
+    upstream = subscription;
+    subscription.request(bufferSize);
+  }
+
+  @Override
+  public void onNext(final I item) {
+    queue.offer(Objects.requireNonNull(item, "Item must not be null"));
+    schedule();
+  }
+
+  @Override
+  public void onError(final Throwable throwable) {
+    upstreamFailure = Objects.requireNonNull(throwable, "Throwable must not be null");
+    upstreamDone = true;
+    schedule();
+  }
+
+  @Override
+  public void onComplete() {
+    upstreamDone = true;
+    schedule();
+  }
+
+  private void schedule() {
+    if (wip.getAndIncrement() == 0) {
+      executor.execute(this::drain);
+    }
+  }
+
+  private void drain() {
+    int missed = 1;
+    do {
+      process();
+      missed = wip.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void process() {
+    if (!subscribed || terminated) {
+      return;
+    }
+    final Subscriber<? super O> subscriber = downstream.get();
+    if (downstreamFailure != null) {
+      terminate(subscriber, downstreamFailure);
+    }
+    while (!cancelled) {
+      fillBatch();
+      if (batch.isEmpty()) {
+        if (upstreamDone && queue.isEmpty()) {
+          terminate(subscriber, upstreamFailure);
+        }
+        return;
+      }
+      final BatchResult<O> result = template.executeChunk(batch, maxHoldNanos);
+      final int processed = result.size();
+      long published = 0L;
+      for (int i = 0; i < processed && !cancelled; i++) {
+        final Throwable failure = result.failure(i);
+        if (failure != null) {
+          upstream.cancel();
+          terminate(subscriber, failure);
+          return;
+        }
+        final O value = result.get(i);
+        if (value != null) {
+          subscriber.onNext(value);
+          published++;
+        }
+      }
+      batch.subList(0, processed).clear();
+      if (published > 0L) {
+        demand.accumulateAndGet(published,
+            (current, used) -> current == Long.MAX_VALUE ? current : current - used);
+      }
+      upstream.request(processed);
+    }
+    batch.clear();
+    queue.clear();
+  }
+
+  private void fillBatch() {
+    final int limit = (int) Math.min(maxBatchSize, demand.get());
+    while (batch.size() < limit) {
+      final I item = queue.poll();
+      if (item == null) {
+        return;
+      }
+      batch.add(item);
+    }
+  }
+
+  private void terminate(final Subscriber<? super O> subscriber, final Throwable failure) {
+    terminated = true;
+    cancelled = true;
+    if (failure == null) {
+      subscriber.onComplete();
+    } else {
+      subscriber.onError(failure);
+    }
+  }
+
+  private static long maxHoldNanos(final Duration maxHoldTime) {
+    if (maxHoldTime == null) {
+      return Long.MAX_VALUE;
+    }
+    if (maxHoldTime.isNegative() || maxHoldTime.isZero()) {
+      throw new IllegalArgumentException("Max hold time must be positive: " + maxHoldTime);
+    }
+    try {
+      return maxHoldTime.toNanos();
+    } catch (final ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Subscription of the rejected subscribers.
+   */
+  private static final class NoOpSubscription implements Subscription {
+
+    private static final Subscription INSTANCE = new NoOpSubscription();
+
+    @Override
+    public void request(final long n) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+  }
+
+  private final class DownstreamSubscription implements Subscription {
+
+    @Override
+    public void request(final long n) {
+      if (n <= 0L) {
+        // signalled by the processing thread, so that downstream signals are not concurrent
+        downstreamFailure = new IllegalArgumentException("Requested must be positive: " + n);
+        cancel();
+        return;
+      }
+      demand.accumulateAndGet(n, (current, requested) -> current + requested < 0L
+          ? Long.MAX_VALUE : current + requested);
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      final Subscription subscription = upstream;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+      schedule();
+    }
+  }
+}
@@ -16,30 +16,76 @@
 
 package com.tp.tools.concurrent.lock;
 
+import java.util.Objects;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * <p>Thread factory creating daemon threads named with the given prefix and a sequence number.</p>
+ * <p>Factory might create:</p>
+ * <ul>
+ *   <li>platform threads with the given priority,</li>
+ *   <li>platform threads marked as non-blocking ({@link LockExecutionThread}), which acquire
+ *   locks according to {@link NonBlockingThreadPolicy},</li>
+ *   <li>virtual threads (Java 21+), see {@link #virtual(String)}.</li>
+ * </ul>
+ * <p>Locks used by {@link LockExecution} ({@link java.util.concurrent.locks} and
+ * {@link AsyncLock}) park waiting threads with {@link java.util.concurrent.locks.LockSupport}
+ * and the library does not use <code>synchronized</code>, so executions do not pin virtual
+ * threads' carrier threads.</p>
+ */
 public class LockExecutionThreadFactory extends AtomicLong implements ThreadFactory {
 
   private static final long serialVersionUID = 6513315664631794722L;
   private static final long INITIAL_VALUE = 0L;
   private final String prefix;
   private final int priority;
-  private final boolean nonBlocking;
+  private final NonBlockingThreadPolicy nonBlockingPolicy;
+  private final boolean virtual;
 
+  /**
+   * Creates thread factory. Non-blocking threads use {@link NonBlockingThreadPolicy#block()}
+   * policy.
+   *
+   * @param prefix thread name prefix.
+   * @param priority thread priority.
+   * @param nonBlocking whether created threads are non-blocking threads.
+   */
   public LockExecutionThreadFactory(final String prefix, final int priority,
       final boolean nonBlocking) {
+    this(prefix, priority, nonBlocking ? NonBlockingThreadPolicy.block() : null, false);
+  }
+
+  /**
+   * Creates non-blocking threads factory.
+   *
+   * @param prefix thread name prefix.
+   * @param priority thread priority.
+   * @param nonBlockingPolicy policy applied when created threads execute {@link LockExecution}.
+   */
+  public LockExecutionThreadFactory(final String prefix, final int priority,
+      final NonBlockingThreadPolicy nonBlockingPolicy) {
+    this(prefix, priority, Objects.requireNonNull(nonBlockingPolicy), false);
+  }
+
+  private LockExecutionThreadFactory(final String prefix, final int priority,
+      final NonBlockingThreadPolicy nonBlockingPolicy, final boolean virtual) {
     super(INITIAL_VALUE);
     this.prefix = prefix;
     this.priority = priority;
-    this.nonBlocking = nonBlocking;
+    this.nonBlockingPolicy = nonBlockingPolicy;
+    this.virtual = virtual;
   }
 
   @Override
   public Thread newThread(final Runnable runnable) {
     final String name = this.prefix + '-' + this.incrementAndGet();
-    final Thread thread =
-        this.nonBlocking ? new LockExecutionThread(runnable, name) : new Thread(runnable, name);
+    if (this.virtual) {
+      return VirtualThreads.newThread(runnable, name);
+    }
+    final Thread thread = this.nonBlockingPolicy != null
+        ? new LockExecutionThread(runnable, name, this.nonBlockingPolicy)
+        : new Thread(runnable, name);
     thread.setPriority(this.priority);
     thread.setDaemon(true);
     return thread;
@@ -47,13 +93,44 @@ public class LockExecutionThreadFactory extends AtomicLong implements ThreadFact
 
   @Override
   public String toString() {
-    return LockExecutionThreadFactory.class.getSimpleName() + "[" + this.prefix + "]";
+    return LockExecutionThreadFactory.class.getSimpleName() + "[" + this.prefix
+        + (this.virtual ? ", virtual" : "") + "]";
+  }
+
+  /**
+   * Creates factory of virtual threads. Virtual threads are always daemon threads with normal
+   * priority.
+   *
+   * @param prefix thread name prefix.
+   * @return virtual threads factory.
+   * @throws UnsupportedOperationException if virtual threads are not supported by the JVM.
+   */
+  public static LockExecutionThreadFactory virtual(final String prefix) {
+    if (!VirtualThreads.isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads are not supported");
+    }
+    return new LockExecutionThreadFactory(prefix, Thread.NORM_PRIORITY, null, true);
+  }
+
+  /**
+   * @return <code>true</code> if the JVM supports virtual threads.
+   */
+  public static boolean isVirtualSupported() {
+    return VirtualThreads.isSupported();
   }
 
   static final class LockExecutionThread extends Thread {
 
-    LockExecutionThread(final Runnable run, final String name) {
+    private final NonBlockingThreadPolicy policy;
+
+    LockExecutionThread(final Runnable run, final String name,
+        final NonBlockingThreadPolicy policy) {
       super(run, name);
+      this.policy = policy;
+    }
+
+    NonBlockingThreadPolicy policy() {
+      return policy;
     }
   }
 }
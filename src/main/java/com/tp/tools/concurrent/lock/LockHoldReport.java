@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.time.Duration;
+
+/**
+ * Report of a {@link LockExecution} holding its lock longer than its hold time budget, created by
+ * {@link LockWatchdog}.
+ */
+public final class LockHoldReport {
+
+  private final Thread thread;
+  private final Duration holdTime;
+  private final Duration budget;
+  private final int stage;
+  private final int stages;
+  private final StackTraceElement[] stackTrace;
+  private final boolean interrupted;
+
+  LockHoldReport(final Thread thread, final Duration holdTime, final Duration budget,
+      final int stage, final int stages, final StackTraceElement[] stackTrace,
+      final boolean interrupted) {
+    this.thread = thread;
+    this.holdTime = holdTime;
+    this.budget = budget;
+    this.stage = stage;
+    this.stages = stages;
+    this.stackTrace = stackTrace;
+    this.interrupted = interrupted;
+  }
+
+  /**
+   * @return thread holding the lock.
+   */
+  public Thread thread() {
+    return thread;
+  }
+
+  /**
+   * @return time the lock has been held for, when the report was created.
+   */
+  public Duration holdTime() {
+    return holdTime;
+  }
+
+  public Duration budget() {
+    return budget;
+  }
+
+  /**
+   * @return position of the chain's stage being executed (starting with 1, as added to
+   * the chain) or <code>0</code> if unknown.
+   */
+  public int stage() {
+    return stage;
+  }
+
+  /**
+   * @return number of stages of the chain.
+   */
+  public int stages() {
+    return stages;
+  }
+
+  /**
+   * @return stack trace of the thread holding the lock.
+   */
+  public StackTraceElement[] stackTrace() {
+    return stackTrace.clone();
+  }
+
+  /**
+   * @return <code>true</code> if the thread holding the lock has been interrupted.
+   */
+  public boolean interrupted() {
+    return interrupted;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder report = new StringBuilder("Lock held by ").append(thread.getName())
+        .append(" for ").append(holdTime.toMillis()).append(" ms (budget ")
+        .append(budget.toMillis()).append(" ms), executing stage ")
+        .append(stage == 0 ? "?" : String.valueOf(stage)).append(" of ").append(stages);
+    if (interrupted) {
+      report.append(", interrupted");
+    }
+    for (final StackTraceElement element : stackTrace) {
+      report.append(System.lineSeparator()).append("\tat ").append(element);
+    }
+    return report.toString();
+  }
+}
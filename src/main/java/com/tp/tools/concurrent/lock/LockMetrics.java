@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Contention metrics of a lock used by instrumented {@link LockExecution} chains
+ * ({@link LockExecution.LockExecutionLockBuilder#instrumented(LockMetrics)},
+ * {@link ReadWriteLock#instrumented(LockMetrics, LockMetrics)}).</p>
+ * <p>Records:</p>
+ * <ul>
+ *   <li>wait time - time spent acquiring the lock in nanoseconds (also when the lock has not been
+ *   acquired),</li>
+ *   <li>hold time - time the lock has been held for in nanoseconds,</li>
+ *   <li>queue length - number of threads acquiring the lock, when a thread starts acquiring it
+ *   (lock holder is not counted),</li>
+ *   <li>timeouts - number of executions, which have not acquired the lock (e.g.
+ *   {@link TimeoutLockExecution} timed out),</li>
+ *   <li>failures - number of failed executions (including interrupted acquisitions).</li>
+ * </ul>
+ * <p>Recording does not allocate memory. Chains, which are not instrumented, do not record
+ * anything.</p>
+ */
+public final class LockMetrics {
+
+  private final Histogram waitTime = new Histogram();
+  private final Histogram holdTime = new Histogram();
+  private final Histogram queueLength = new Histogram();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final AtomicInteger acquiring = new AtomicInteger();
+
+  private LockMetrics() {
+  }
+
+  public static LockMetrics newInstance() {
+    return new LockMetrics();
+  }
+
+  /**
+   * @return point in time copy of the metrics.
+   */
+  public LockMetricsSnapshot snapshot() {
+    return new LockMetricsSnapshot(waitTime.snapshot(), holdTime.snapshot(),
+        queueLength.snapshot(), timeouts.sum(), failures.sum());
+  }
+
+  void acquiring() {
+    queueLength.record(acquiring.getAndIncrement());
+  }
+
+  void acquired(final long waitNanos, final boolean locked) {
+    acquiring.decrementAndGet();
+    waitTime.record(waitNanos);
+    if (!locked) {
+      timeouts.increment();
+    }
+  }
+
+  void acquisitionFailed(final long waitNanos) {
+    acquiring.decrementAndGet();
+    waitTime.record(waitNanos);
+    failures.increment();
+  }
+
+  void released(final long holdNanos, final boolean failed) {
+    holdTime.record(holdNanos);
+    if (failed) {
+      failures.increment();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+/**
+ * Immutable copy of {@link LockMetrics}.
+ */
+public final class LockMetricsSnapshot {
+
+  private final HistogramSnapshot waitTime;
+  private final HistogramSnapshot holdTime;
+  private final HistogramSnapshot queueLength;
+  private final long timeouts;
+  private final long failures;
+
+  LockMetricsSnapshot(final HistogramSnapshot waitTime, final HistogramSnapshot holdTime,
+      final HistogramSnapshot queueLength, final long timeouts, final long failures) {
+    this.waitTime = waitTime;
+    this.holdTime = holdTime;
+    this.queueLength = queueLength;
+    this.timeouts = timeouts;
+    this.failures = failures;
+  }
+
+  /**
+   * @return lock acquisition wait times in nanoseconds.
+   */
+  public HistogramSnapshot waitTime() {
+    return waitTime;
+  }
+
+  /**
+   * @return lock hold times in nanoseconds (number of executions, which acquired the lock).
+   */
+  public HistogramSnapshot holdTime() {
+    return holdTime;
+  }
+
+  /**
+   * @return numbers of threads acquiring the lock, seen by threads starting acquisition.
+   */
+  public HistogramSnapshot queueLength() {
+    return queueLength;
+  }
+
+  /**
+   * @return number of executions, which have not acquired the lock.
+   */
+  public long timeouts() {
+    return timeouts;
+  }
+
+  /**
+   * @return number of failed executions.
+   */
+  public long failures() {
+    return failures;
+  }
+
+  @Override
+  public String toString() {
+    return "LockMetricsSnapshot{" +
+        "waitTime=" + waitTime +
+        ", holdTime=" + holdTime +
+        ", queueLength=" + queueLength +
+        ", timeouts=" + timeouts +
+        ", failures=" + failures +
+        '}';
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Execution failure reported, when the lock has not been acquired within the timeout (see
+ * {@link LockExecution#withLockTimeout()}).</p>
+ * <p>Timeouts are expected to happen often under overload, so reporting them has to be as cheap
+ * as possible. The exception does not capture any stack trace, so creating it costs a single
+ * allocation. A new instance is created for each timed out execution (instead of sharing one),
+ * as suppressed exceptions cannot be disabled for {@link NoSuchElementException} and any
+ * exception added to a shared instance would leak to all the other executions.</p>
+ * <p>Extends {@link NoSuchElementException} reported by timed out executions before.</p>
+ */
+public final class LockTimeoutException extends NoSuchElementException {
+
+  private static final long serialVersionUID = 3650911016617386582L;
+
+  private LockTimeoutException() {
+    super("Lock has not been acquired within the timeout");
+  }
+
+  /**
+   * @param result execution result.
+   * @return <code>true</code> if the execution failed, because the lock has not been acquired
+   * within the timeout, <code>false</code> otherwise.
+   */
+  public static boolean isLockTimeout(final Try<?> result) {
+    return result.isFailure() && result.getCause() instanceof LockTimeoutException;
+  }
+
+  static <T> Try<T> failure() {
+    return Try.failure(new LockTimeoutException());
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * <p>Background thread tracking executions holding their locks (see
+ * {@link LockExecution.LockExecutionLockBuilder#holdBudget} and
+ * {@link ReadWriteLock#holdBudget}). Once an execution holds its lock longer than its hold time
+ * budget, the watchdog reports the holder's stack trace and the stage being executed to
+ * the reporter and optionally interrupts the holder. Each execution is reported at most
+ * once.</p>
+ * <p>Tracking is cheap: each thread executing the chains registers once and then only marks its
+ * executions' start and end. Watchdog checks the registered threads periodically, so
+ * the budget is exceeded by up to the check interval before being reported. Only the outermost
+ * of nested executions is tracked.</p>
+ * <p>Watchdog thread is created by {@link LockExecutionThreadFactory} and runs until
+ * {@link #close() closed}.</p>
+ */
+public final class LockWatchdog implements AutoCloseable {
+
+  private final long checkIntervalNanos;
+  private final Consumer<LockHoldReport> reporter;
+  private final boolean interrupting;
+  private final Queue<Holder> holders = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Holder> holder = ThreadLocal.withInitial(this::register);
+  private final Thread thread;
+  private volatile boolean closed;
+
+  private LockWatchdog(final Duration checkInterval, final Consumer<LockHoldReport> reporter,
+      final boolean interrupting) {
+    if (checkInterval.isNegative() || checkInterval.isZero()) {
+      throw new IllegalArgumentException("Check interval must be positive: " + checkInterval);
+    }
+    this.checkIntervalNanos = checkInterval.toNanos();
+    this.reporter = reporter;
+    this.interrupting = interrupting;
+    this.thread = new LockExecutionThreadFactory("lock-watchdog", Thread.MAX_PRIORITY, false)
+        .newThread(this::run);
+    this.thread.start();
+  }
+
+  /**
+   * @param checkInterval interval between checks of the executions holding their locks.
+   * @param reporter consumer of reports of executions exceeding their budgets.
+   * @return started watchdog.
+   */
+  public static LockWatchdog newInstance(final Duration checkInterval,
+      final Consumer<LockHoldReport> reporter) {
+    return new LockWatchdog(checkInterval, reporter, false);
+  }
+
+  /**
+   * Creates watchdog, which interrupts threads executing the chains exceeding their budgets,
+   * after reporting them. Interruption fails the chain (and releases the lock) only if the stage
+   * being executed responds to interrupts. Thread completing the execution just when the budget
+   * is exceeded might be interrupted after the execution.
+   *
+   * @param checkInterval interval between checks of the executions holding their locks.
+   * @param reporter consumer of reports of executions exceeding their budgets.
+   * @return started watchdog.
+   */
+  public static LockWatchdog newInterrupting(final Duration checkInterval,
+      final Consumer<LockHoldReport> reporter) {
+    return new LockWatchdog(checkInterval, reporter, true);
+  }
+
+  /**
+   * Stops the watchdog thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * @return holder of the current thread.
+   */
+  Holder holder() {
+    return holder.get();
+  }
+
+  private Holder register() {
+    final Holder registered = new Holder(Thread.currentThread());
+    holders.add(registered);
+    return registered;
+  }
+
+  private void run() {
+    while (!closed) {
+      LockSupport.parkNanos(this, checkIntervalNanos);
+      if (!closed) {
+        check();
+      }
+    }
+  }
+
+  private void check() {
+    final Iterator<Holder> iterator = holders.iterator();
+    while (iterator.hasNext()) {
+      final Holder held = iterator.next();
+      if (!held.thread.isAlive()) {
+        iterator.remove();
+        continue;
+      }
+      final Stage<?, ?> stage = held.stage;
+      final long hold = held.hold;
+      if (stage == null || hold == held.reportedHold) {
+        continue;
+      }
+      final long holdNanos = System.nanoTime() - held.since;
+      final long budgetNanos = held.budgetNanos;
+      if (holdNanos > budgetNanos) {
+        final StackTraceElement[] stackTrace = held.thread.getStackTrace();
+        if (held.hold != hold || held.stage == null) {
+          // execution has completed in the meantime
+          continue;
+        }
+        held.reportedHold = hold;
+        if (interrupting) {
+          held.thread.interrupt();
+        }
+        report(new LockHoldReport(held.thread, Duration.ofNanos(holdNanos),
+            Duration.ofNanos(budgetNanos), Stage.executing(stage, stackTrace), stage.length(),
+            stackTrace, interrupting));
+      }
+    }
+  }
+
+  private void report(final LockHoldReport report) {
+    try {
+      reporter.accept(report);
+    } catch (final RuntimeException e) {
+      // reporter's failure must not stop the watchdog
+    }
+  }
+
+  /**
+   * Executions of a single thread. Written by the thread only, read by the watchdog.
+   */
+  static final class Holder {
+
+    private final Thread thread;
+    private int depth;
+    private volatile long since;
+    private volatile long budgetNanos;
+    private volatile long hold;
+    // null if no execution is held
+    private volatile Stage<?, ?> stage;
+    // written by the watchdog only
+    private long reportedHold;
+
+    private Holder(final Thread thread) {
+      this.thread = thread;
+    }
+
+    void held(final Stage<?, ?> stage, final long budgetNanos) {
+      if (depth++ > 0) {
+        return;
+      }
+      this.since = System.nanoTime();
+      this.budgetNanos = budgetNanos;
+      this.hold = hold + 1L;
+      this.stage = stage;
+    }
+
+    void released() {
+      if (--depth > 0) {
+        return;
+      }
+      this.stage = null;
+    }
+  }
+}
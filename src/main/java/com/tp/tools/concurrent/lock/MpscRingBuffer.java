@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>Bounded, lock-free, multi-producer single-consumer queue backed by a ring buffer.</p>
+ * <p>Each slot has a sequence number telling, whether it is free for the producer, which claimed
+ * given position (<code>sequence == position</code>) or holds an element published for
+ * the consumer (<code>sequence == position + 1</code>). Producers claim positions with CAS on
+ * the tail, the consumer does not use any atomic read-modify-write operation.</p>
+ * <p>{@link #poll()} and {@link #peek()} must not be called concurrently, {@link #isEmpty()}
+ * might be called by any thread. Consumer role might be
+ * passed over between threads, as long as there is a happens-before relation between
+ * consecutive consumers.</p>
+ *
+ * @param <E> element type.
+ */
+final class MpscRingBuffer<E> {
+
+  private final Object[] elements;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  // written by the consumer only, volatile for isEmpty() called by other threads
+  private volatile long head;
+
+  MpscRingBuffer(final int capacity) {
+    if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    this.elements = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @param element element to add.
+   * @return <code>true</code> if the element has been added, <code>false</code> if the buffer is
+   * full.
+   */
+  boolean offer(final E element) {
+    long position = tail.get();
+    while (true) {
+      final int index = (int) position & mask;
+      final long difference = sequences.get(index) - position;
+      if (difference == 0L) {
+        if (tail.compareAndSet(position, position + 1)) {
+          elements[index] = element;
+          sequences.set(index, position + 1);
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0L) {
+        // slot still holds an element from the previous lap
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * @return the oldest published element or <code>null</code> if there is no published element.
+   */
+  @SuppressWarnings("unchecked")
+  E poll() {
+    final long position = head;
+    final int index = (int) position & mask;
+    if (sequences.get(index) != position + 1) {
+      return null;
+    }
+    final E element = (E) elements[index];
+    elements[index] = null;
+    sequences.set(index, position + elements.length);
+    head = position + 1;
+    return element;
+  }
+
+  /**
+   * @return the oldest published element (without removing it) or <code>null</code> if there is
+   * no published element.
+   */
+  @SuppressWarnings("unchecked")
+  E peek() {
+    final long position = head;
+    final int index = (int) position & mask;
+    return sequences.get(index) == position + 1 ? (E) elements[index] : null;
+  }
+
+  /**
+   * @return <code>true</code> if there is no element published or being published.
+   */
+  boolean isEmpty() {
+    return tail.get() == head;
+  }
+}
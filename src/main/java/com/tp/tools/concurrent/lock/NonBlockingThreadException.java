@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+/**
+ * Thrown when {@link LockExecution} executed by a non-blocking thread cannot acquire the lock
+ * without blocking the thread.
+ *
+ * @see NonBlockingThreadPolicy
+ */
+public class NonBlockingThreadException extends IllegalStateException {
+
+  private static final long serialVersionUID = -2618454853164326032L;
+
+  public NonBlockingThreadException(final Thread thread) {
+    super("Lock cannot be acquired without blocking non-blocking thread " + thread.getName());
+  }
+}
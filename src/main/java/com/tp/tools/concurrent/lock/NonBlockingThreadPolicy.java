@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecutionThreadFactory.LockExecutionThread;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * <p>Defines, how the lock is acquired, when {@link LockExecution} is executed by a non-blocking
+ * thread (created by {@link LockExecutionThreadFactory} with <code>nonBlocking</code> flag).</p>
+ * <p>Available policies:</p>
+ * <ul>
+ *   <li>{@link #block()} - thread blocks until the lock is acquired (as any other thread),</li>
+ *   <li>{@link #fail()} - lock is acquired only if it is free, otherwise the execution fails
+ *   with {@link NonBlockingThreadException},</li>
+ *   <li>{@link #spin(int)} - lock is acquired with bounded number of {@link Lock#tryLock()}
+ *   attempts, otherwise the execution fails with {@link NonBlockingThreadException},</li>
+ *   <li>{@link #offload(Executor)} - lock is acquired only if it is free, otherwise
+ *   {@link LockExecution#executeAsync} executions are moved to the given blocking executor
+ *   and synchronous executions fail with {@link NonBlockingThreadException}.</li>
+ * </ul>
+ */
+public final class NonBlockingThreadPolicy {
+
+  private static final NonBlockingThreadPolicy BLOCK = new NonBlockingThreadPolicy(null, null);
+  private static final NonBlockingThreadPolicy FAIL =
+      new NonBlockingThreadPolicy(Lock::tryLock, null);
+
+  private final AcquisitionStrategy acquisition;
+  private final Executor blockingExecutor;
+
+  private NonBlockingThreadPolicy(final AcquisitionStrategy acquisition,
+      final Executor blockingExecutor) {
+    this.acquisition = acquisition;
+    this.blockingExecutor = blockingExecutor;
+  }
+
+  public static NonBlockingThreadPolicy block() {
+    return BLOCK;
+  }
+
+  public static NonBlockingThreadPolicy fail() {
+    return FAIL;
+  }
+
+  public static NonBlockingThreadPolicy spin(final int maxSpins) {
+    if (maxSpins < 0) {
+      throw new IllegalArgumentException("Max spins must not be negative: " + maxSpins);
+    }
+    return new NonBlockingThreadPolicy(lock -> AcquisitionStrategies.spin(lock, maxSpins), null);
+  }
+
+  public static NonBlockingThreadPolicy offload(final Executor blockingExecutor) {
+    return new NonBlockingThreadPolicy(Lock::tryLock, blockingExecutor);
+  }
+
+  /**
+   * @param thread thread executing the lock execution.
+   * @return policy of the given thread or <code>null</code> if the thread is not a non-blocking
+   * thread.
+   */
+  static NonBlockingThreadPolicy of(final Thread thread) {
+    return thread instanceof LockExecutionThread ? ((LockExecutionThread) thread).policy() : null;
+  }
+
+  /**
+   * @param requested acquisition strategy requested by the execution.
+   * @return acquisition strategy to be used by the non-blocking thread.
+   */
+  AcquisitionStrategy acquisition(final AcquisitionStrategy requested) {
+    return acquisition == null ? requested : acquisition;
+  }
+
+  /**
+   * @return <code>true</code> if the non-blocking thread is allowed to block (see
+   * {@link #block()}).
+   */
+  boolean blocks() {
+    return acquisition == null;
+  }
+
+  /**
+   * @return executor, which blocking acquisitions are offloaded to or <code>null</code>.
+   */
+  Executor blockingExecutor() {
+    return blockingExecutor;
+  }
+}
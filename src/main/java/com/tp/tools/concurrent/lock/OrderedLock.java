@@ -0,0 +1,203 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Composite {@link Lock}, which acquires all the given locks in the given order and releases
+ * them in reverse order.</p>
+ * <p>If any of the locks cannot be acquired (timeout, interruption, failure), locks acquired so
+ * far are released, so the composite lock is either fully acquired or not acquired at all.</p>
+ * <p>{@link #tryLock(long, TimeUnit)} does not wait for the following locks for long, while
+ * holding the preceding ones. If a lock is not acquired within a short window, all the locks are
+ * released and the acquisition is retried after a randomized, exponential back-off, until
+ * the timeout elapses.</p>
+ */
+final class OrderedLock implements Lock {
+
+  private static final long MIN_BACK_OFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10L);
+  private static final long MAX_BACK_OFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+  // used when ranks of the locks collide, so that they are not acquired in random order
+  private static final Lock TIE_LOCK = new ReentrantLock();
+
+  private final Lock[] locks;
+
+  OrderedLock(final Lock[] locks) {
+    this.locks = locks;
+  }
+
+  @Override
+  public void lock() {
+    int acquired = 0;
+    try {
+      for (final Lock lock : locks) {
+        lock.lock();
+        acquired++;
+      }
+    } catch (final RuntimeException | Error e) {
+      unlock(acquired);
+      throw e;
+    }
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    int acquired = 0;
+    try {
+      for (final Lock lock : locks) {
+        lock.lockInterruptibly();
+        acquired++;
+      }
+    } catch (final InterruptedException | RuntimeException | Error e) {
+      unlock(acquired);
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean tryLock() {
+    int acquired = 0;
+    try {
+      for (final Lock lock : locks) {
+        if (!lock.tryLock()) {
+          unlock(acquired);
+          return false;
+        }
+        acquired++;
+      }
+      return true;
+    } catch (final RuntimeException | Error e) {
+      unlock(acquired);
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(time);
+    long backOff = MIN_BACK_OFF_NANOS;
+    while (true) {
+      if (tryLockOnce(deadline, backOff)) {
+        return true;
+      }
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0L) {
+        return false;
+      }
+      LockSupport.parkNanos(this,
+          Math.min(remaining, ThreadLocalRandom.current().nextLong(backOff) + 1L));
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      backOff = Math.min(backOff << 1, MAX_BACK_OFF_NANOS);
+    }
+  }
+
+  /**
+   * Acquires the first lock waiting till the deadline (no lock is held) and the following locks
+   * waiting at most the given window.
+   */
+  private boolean tryLockOnce(final long deadline, final long window)
+      throws InterruptedException {
+    int acquired = 0;
+    try {
+      for (final Lock lock : locks) {
+        final long remaining = deadline - System.nanoTime();
+        final long wait = acquired == 0 ? remaining : Math.min(remaining, window);
+        if (!lock.tryLock(wait, TimeUnit.NANOSECONDS)) {
+          unlock(acquired);
+          return false;
+        }
+        acquired++;
+      }
+      return true;
+    } catch (final InterruptedException | RuntimeException | Error e) {
+      unlock(acquired);
+      throw e;
+    }
+  }
+
+  @Override
+  public void unlock() {
+    unlock(locks.length);
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException("Conditions are not supported by composite lock");
+  }
+
+  /**
+   * <p>Creates composite lock acquiring given locks in a global, stable order - by their identity
+   * hash codes, regardless of the order they are given in. Duplicated locks are acquired once.</p>
+   * <p>If identity hash codes of different locks collide, a global tie-breaking lock is acquired
+   * first, so that the colliding locks are never acquired in the opposite order concurrently.</p>
+   *
+   * @param locks locks to acquire.
+   * @return composite lock.
+   */
+  static OrderedLock ranked(final Lock... locks) {
+    final Lock[] sorted = Arrays.stream(locks)
+        .map(lock -> Objects.requireNonNull(lock, "Lock must not be null"))
+        .sorted(Comparator.comparingInt(System::identityHashCode))
+        .toArray(Lock[]::new);
+    final List<Lock> ranked = new ArrayList<>(sorted.length + 1);
+    boolean tie = false;
+    for (int i = 0; i < sorted.length; i++) {
+      if (isDuplicate(sorted, i)) {
+        continue;
+      }
+      final int rank = System.identityHashCode(sorted[i]);
+      tie |= i > 0 && System.identityHashCode(sorted[i - 1]) == rank;
+      ranked.add(sorted[i]);
+    }
+    if (tie) {
+      ranked.add(0, TIE_LOCK);
+    }
+    return new OrderedLock(ranked.toArray(new Lock[0]));
+  }
+
+  /**
+   * @return <code>true</code> if the same lock precedes the lock with the given index.
+   */
+  private static boolean isDuplicate(final Lock[] sorted, final int index) {
+    final int rank = System.identityHashCode(sorted[index]);
+    for (int i = index - 1; i >= 0 && System.identityHashCode(sorted[i]) == rank; i--) {
+      if (sorted[i] == sorted[index]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void unlock(final int acquired) {
+    for (int i = acquired - 1; i >= 0; i--) {
+      locks[i].unlock();
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Independent executions run in parallel (see {@link LockExecution#parallel(List, Executor)}).
+ * </p>
+ * <p>Executions are not bound to the executor's tasks - each task (and the calling thread, which
+ * does not just wait for the tasks) claims the next execution not started yet, until there are
+ * none left. Hence the calling thread helps, when the executor is busy (e.g. when the caller
+ * itself runs on the executor's pool), and executions not started yet are skipped, once any of
+ * them fails.</p>
+ *
+ * @param <T> result type of the executions.
+ */
+final class ParallelExecution<T> {
+
+  private final List<? extends LockExecution<T>> executions;
+  private final Object[] results;
+  private final AtomicInteger next = new AtomicInteger();
+  private final AtomicInteger remaining;
+  private final CompletableFuture<List<T>> result = new CompletableFuture<>();
+
+  private ParallelExecution(final List<? extends LockExecution<T>> executions) {
+    this.executions = executions;
+    this.results = new Object[executions.size()];
+    this.remaining = new AtomicInteger(executions.size());
+  }
+
+  static <T> Try<List<T>> execute(final List<? extends LockExecution<T>> executions,
+      final Executor executor) {
+    if (executions.isEmpty()) {
+      return Try.success(Collections.emptyList());
+    }
+    return new ParallelExecution<>(executions).execute(executor);
+  }
+
+  private Try<List<T>> execute(final Executor executor) {
+    try {
+      // the calling thread executes one of the executions itself
+      for (int i = 1; i < results.length; i++) {
+        executor.execute(this::executeRemaining);
+      }
+    } catch (final RejectedExecutionException e) {
+      // executions not submitted are executed by the calling thread
+    }
+    executeRemaining();
+    try {
+      return Try.success(result.get());
+    } catch (final ExecutionException e) {
+      return Try.failure(e.getCause());
+    } catch (final InterruptedException e) {
+      result.completeExceptionally(e);
+      Thread.currentThread().interrupt();
+      return Try.failure(e);
+    }
+  }
+
+  private void executeRemaining() {
+    int index;
+    while (!result.isDone() && (index = next.getAndIncrement()) < results.length) {
+      Try<T> execution;
+      try {
+        execution = executions.get(index).execute();
+      } catch (final Throwable e) {
+        // e.g. custom implementation throwing instead of returning a failure
+        execution = Try.failure(e);
+      }
+      if (execution.isFailure()) {
+        // fail fast, executions not started yet are skipped
+        result.completeExceptionally(execution.getCause());
+        return;
+      }
+      results[index] = execution.get();
+      if (remaining.decrementAndGet() == 0) {
+        result.complete(resultList());
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<T> resultList() {
+    return Collections.unmodifiableList(Arrays.asList((T[]) results));
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>{@link Stage} chain published for execution by another thread (e.g. by
+ * {@link CombiningLockExecutor} combiner or {@link SerializedExecution} drainer).</p>
+ * <p>Publishing thread either waits for the execution ({@link #isDone()}), being unparked once
+ * it is done, or gets the result from the future (asynchronous executions).</p>
+ */
+final class PendingExecution {
+
+  private final Stage<Object, Object> stage;
+  private final Object input;
+  // null if not instrumented
+  private final LockMetrics metrics;
+  // null for asynchronous executions
+  private final Thread thread;
+  // null for synchronous executions
+  private final CompletableFuture<Object> future;
+  private long publishedAt;
+  // link used by publication lists
+  PendingExecution next;
+  private Object value;
+  private Throwable failure;
+  // publishes value and failure written by the executing thread
+  private volatile boolean done;
+
+  @SuppressWarnings("unchecked")
+  private PendingExecution(final Stage<?, ?> stage, final Object input, final LockMetrics metrics,
+      final Thread thread, final CompletableFuture<?> future) {
+    this.stage = (Stage<Object, Object>) stage;
+    this.input = input;
+    this.metrics = metrics;
+    this.thread = thread;
+    this.future = (CompletableFuture<Object>) future;
+  }
+
+  /**
+   * Creates execution awaited by the current thread.
+   */
+  PendingExecution(final Stage<?, ?> stage, final Object input, final LockMetrics metrics) {
+    this(stage, input, metrics, Thread.currentThread(), null);
+  }
+
+  /**
+   * Creates execution completing given future.
+   */
+  PendingExecution(final Stage<?, ?> stage, final Object input, final LockMetrics metrics,
+      final CompletableFuture<?> future) {
+    this(stage, input, metrics, null, future);
+  }
+
+  /**
+   * Must be called by the publishing thread before the execution is published.
+   */
+  void published() {
+    if (metrics != null) {
+      metrics.acquiring();
+      publishedAt = System.nanoTime();
+    }
+  }
+
+  /**
+   * Executes the chain and hands the result over to the publishing thread. Execution must not be
+   * accessed once executed.
+   */
+  void execute() {
+    final long startedAt = metrics == null ? 0L : started();
+    try {
+      value = stage.apply(input);
+    } catch (final Throwable e) {
+      failure = e;
+    }
+    if (metrics != null) {
+      metrics.released(System.nanoTime() - startedAt, failure != null);
+    }
+    if (future != null) {
+      complete();
+      return;
+    }
+    final Thread waiter = thread;
+    done = true;
+    if (waiter != Thread.currentThread()) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  /**
+   * Fails asynchronous execution without executing it.
+   *
+   * @param e failure.
+   */
+  void reject(final Throwable e) {
+    future.completeExceptionally(e);
+  }
+
+  boolean isDone() {
+    return done;
+  }
+
+  /**
+   * @return thread waiting for the execution or <code>null</code> for asynchronous executions.
+   */
+  Thread thread() {
+    return thread;
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> Try<T> result() {
+    // fatal failures are rethrown by Try in the publishing thread
+    return failure == null ? Try.success((T) value) : Try.failure(failure);
+  }
+
+  private long started() {
+    final long startedAt = System.nanoTime();
+    metrics.acquired(startedAt - publishedAt, true);
+    return startedAt;
+  }
+
+  private void complete() {
+    if (failure == null) {
+      future.complete(value);
+    } else {
+      future.completeExceptionally(failure);
+    }
+  }
+}
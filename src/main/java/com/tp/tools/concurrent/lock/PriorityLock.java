@@ -0,0 +1,282 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Non-reentrant lock granted to waiting threads according to their {@link LockPriority}.</p>
+ * <p>When the lock is released, it is handed over directly to the waiter with the highest
+ * priority (waiters with the same priority are granted the lock in FIFO order). To prevent
+ * starvation, waiters age: priority of the waiter is raised by one level for each aging period
+ * it has been waiting for, so e.g. {@link LockPriority#LOW} waiter waiting for two periods is
+ * granted the lock before {@link LockPriority#HIGH} waiter, which has just arrived.</p>
+ * <p>Free lock is acquired immediately (with a single CAS), unless there are waiting threads.
+ * Methods of {@link Lock} interface acquire the lock with {@link LockPriority#NORMAL} priority.
+ * Chains acquire the lock with given priority, when built with
+ * {@link LockExecution.LockExecutionLockBuilder#priority(LockPriority)}.</p>
+ * <p>Conditions are not supported.</p>
+ */
+public final class PriorityLock implements Lock {
+
+  private static final LockPriority[] PRIORITIES = LockPriority.values();
+  private static final Duration DEFAULT_AGING = Duration.ofMillis(10L);
+
+  // 1 if the lock is held
+  private final AtomicInteger state = new AtomicInteger();
+  // guards the queues
+  private final ReentrantLock queuesLock = new ReentrantLock();
+  private final ArrayDeque<Waiter>[] queues;
+  private final long agingNanos;
+  private volatile int waiting;
+
+  public PriorityLock() {
+    this(DEFAULT_AGING);
+  }
+
+  /**
+   * @param aging time, after which waiting thread's priority is raised by one level.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public PriorityLock(final Duration aging) {
+    if (aging.isNegative() || aging.isZero()) {
+      throw new IllegalArgumentException("Aging must be positive: " + aging);
+    }
+    this.agingNanos = aging.toNanos();
+    this.queues = new ArrayDeque[PRIORITIES.length];
+    for (int i = 0; i < queues.length; i++) {
+      queues[i] = new ArrayDeque<>();
+    }
+  }
+
+  public void lock(final LockPriority priority) {
+    if (!tryLock()) {
+      acquireQueued(priority, false, 0L, false);
+    }
+  }
+
+  public void lockInterruptibly(final LockPriority priority) throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (!tryLock() && !acquireQueued(priority, false, 0L, true)) {
+      Thread.interrupted();
+      throw new InterruptedException();
+    }
+  }
+
+  public boolean tryLock(final LockPriority priority, final long time, final TimeUnit unit)
+      throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    if (tryLock()) {
+      return true;
+    }
+    final long deadline = System.nanoTime() + unit.toNanos(time);
+    final boolean locked = acquireQueued(priority, true, deadline, true);
+    if (!locked && Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    return locked;
+  }
+
+  @Override
+  public void lock() {
+    lock(LockPriority.NORMAL);
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    lockInterruptibly(LockPriority.NORMAL);
+  }
+
+  /**
+   * Acquires the lock only if it is free and no thread is waiting for it.
+   */
+  @Override
+  public boolean tryLock() {
+    return waiting == 0 && state.compareAndSet(0, 1);
+  }
+
+  @Override
+  public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+    return tryLock(LockPriority.NORMAL, time, unit);
+  }
+
+  @Override
+  public void unlock() {
+    if (state.get() == 0) {
+      throw new IllegalMonitorStateException("Lock is not held");
+    }
+    if (waiting == 0) {
+      state.set(0);
+      // waiter might have been queued in the meantime, expecting the lock to be handed over
+      if (waiting == 0 || !state.compareAndSet(0, 1)) {
+        return;
+      }
+    }
+    handOver();
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException("Priority lock does not support conditions");
+  }
+
+  public boolean isLocked() {
+    return state.get() == 1;
+  }
+
+  /**
+   * @return number of threads waiting for the lock.
+   */
+  public int queueLength() {
+    return waiting;
+  }
+
+  /**
+   * Queues the current thread and waits, until the lock is handed over to it.
+   *
+   * @return <code>true</code> if the lock has been acquired, <code>false</code> if timed out or
+   * interrupted (interrupted status is kept).
+   */
+  private boolean acquireQueued(final LockPriority priority, final boolean timed,
+      final long deadline, final boolean interruptible) {
+    final Waiter waiter = new Waiter(Thread.currentThread(), System.nanoTime());
+    queuesLock.lock();
+    try {
+      waiting++;
+      if (state.compareAndSet(0, 1)) {
+        waiting--;
+        return true;
+      }
+      queues[priority.ordinal()].addLast(waiter);
+    } finally {
+      queuesLock.unlock();
+    }
+    boolean interrupted = false;
+    while (!waiter.granted) {
+      if (timed) {
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L) {
+          return cancel(waiter, priority, interrupted);
+        }
+        LockSupport.parkNanos(this, remaining);
+      } else {
+        LockSupport.park(this);
+      }
+      if (Thread.interrupted()) {
+        interrupted = true;
+        if (interruptible && !waiter.granted) {
+          return cancel(waiter, priority, true);
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return true;
+  }
+
+  private boolean cancel(final Waiter waiter, final LockPriority priority,
+      final boolean interrupted) {
+    queuesLock.lock();
+    try {
+      if (!waiter.granted) {
+        queues[priority.ordinal()].remove(waiter);
+        waiting--;
+      }
+    } finally {
+      queuesLock.unlock();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (waiter.granted) {
+      // lock has been handed over in the meantime
+      if (interrupted) {
+        unlock();
+        return false;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private void handOver() {
+    final Waiter next;
+    queuesLock.lock();
+    try {
+      next = dequeue(System.nanoTime());
+      if (next == null) {
+        state.set(0);
+      } else {
+        waiting--;
+        next.granted = true;
+      }
+    } finally {
+      queuesLock.unlock();
+    }
+    if (next != null) {
+      LockSupport.unpark(next.thread);
+    }
+  }
+
+  /**
+   * @param now current time.
+   * @return waiter with the highest aged priority (the longest waiting one, if many) or
+   * <code>null</code> if no thread is waiting.
+   */
+  private Waiter dequeue(final long now) {
+    int selected = -1;
+    long selectedPriority = Long.MIN_VALUE;
+    long selectedSince = 0L;
+    for (int i = queues.length - 1; i >= 0; i--) {
+      final Waiter head = queues[i].peekFirst();
+      if (head == null) {
+        continue;
+      }
+      final long aged = i + (now - head.since) / agingNanos;
+      if (aged > selectedPriority || aged == selectedPriority && head.since - selectedSince < 0L) {
+        selected = i;
+        selectedPriority = aged;
+        selectedSince = head.since;
+      }
+    }
+    return selected < 0 ? null : queues[selected].pollFirst();
+  }
+
+  private static final class Waiter {
+
+    private final Thread thread;
+    private final long since;
+    private volatile boolean granted;
+
+    private Waiter(final Thread thread, final long since) {
+      this.thread = thread;
+      this.since = since;
+    }
+  }
+}
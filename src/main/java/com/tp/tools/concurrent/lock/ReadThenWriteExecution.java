@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionLockBuilder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * <p>Check chain of {@link ReadWriteLock#readThenWrite}, executed holding the read lock (or
+ * optimistically), followed by the chain executed holding the write lock.</p>
+ * <p>Write lock is acquired only if the check chain is not filtered, so e.g. updating
+ * an element, which exists in the store, does not block readers, when the element does not
+ * exist.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>Try<UpdatedCar> updateIfExists(CarUpdated event) {
+ * <br/>&nbsp;&nbsp;return lock.readThenWrite(() -> cars.get(event.getCarId()))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.filter(Optional::isPresent)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.upgrade() // write lock acquired only if the car exists
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.supply(event::toCar)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(car -> cars.store(car.getCarId(), car))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(UpdatedCar::fromCar)
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.execute();
+ * <br/>}
+ * </code>
+ * </p>
+ *
+ * @param <T> return type of the check chain.
+ */
+public final class ReadThenWriteExecution<T> {
+
+  private final ExecutionGuard readGuard;
+  private final ExecutionGuard writeGuard;
+  private final Stage<Void, T> check;
+
+  ReadThenWriteExecution(final ExecutionGuard readGuard, final ExecutionGuard writeGuard,
+      final Stage<Void, T> check) {
+    this.readGuard = readGuard;
+    this.writeGuard = writeGuard;
+    this.check = check;
+  }
+
+  public <K> ReadThenWriteExecution<K> map(final Function<T, K> mapper) {
+    return new ReadThenWriteExecution<>(readGuard, writeGuard, check.map(mapper));
+  }
+
+  public ReadThenWriteExecution<T> filter(final Predicate<T> predicate) {
+    return new ReadThenWriteExecution<>(readGuard, writeGuard, check.filter(predicate));
+  }
+
+  /**
+   * Promotes the execution to the write lock. Returned chain starts with the result of the check
+   * chain and is executed holding the write lock, only if the check chain is not filtered.
+   * Otherwise, the execution results in <code>null</code>.
+   *
+   * @return lock execution.
+   */
+  public LockExecution<T> upgrade() {
+    return new LockExecutionLockBuilder<T>(ExecutionGuard.upgrade(readGuard, writeGuard, check))
+        .input();
+  }
+}
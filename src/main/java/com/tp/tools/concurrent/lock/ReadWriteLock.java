@@ -16,32 +16,241 @@
 
 package com.tp.tools.concurrent.lock;
 
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionLockBuilder;
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
 public class ReadWriteLock {
 
-  private final java.util.concurrent.locks.ReadWriteLock lock;
+  private final ExecutionGuard readGuard;
+  private final ExecutionGuard writeGuard;
 
-  public ReadWriteLock(final java.util.concurrent.locks.ReadWriteLock lock) {this.lock = lock;}
+  public ReadWriteLock(final java.util.concurrent.locks.ReadWriteLock lock) {
+    this(ExecutionGuard.of(lock.readLock()), ExecutionGuard.of(lock.writeLock()));
+  }
+
+  /**
+   * Creates read write lock acquiring read and write locks using given strategies. Stateful
+   * strategies (e.g. {@link AcquisitionStrategy#adaptive()}) must not be shared by both locks.
+   *
+   * @param lock underlying read write lock.
+   * @param readAcquisition read lock acquisition strategy.
+   * @param writeAcquisition write lock acquisition strategy.
+   */
+  public ReadWriteLock(final java.util.concurrent.locks.ReadWriteLock lock,
+      final AcquisitionStrategy readAcquisition, final AcquisitionStrategy writeAcquisition) {
+    this(ExecutionGuard.of(lock.readLock(), readAcquisition),
+        ExecutionGuard.of(lock.writeLock(), writeAcquisition));
+  }
+
+  ReadWriteLock(final ExecutionGuard readGuard, final ExecutionGuard writeGuard) {
+    this.readGuard = readGuard;
+    this.writeGuard = writeGuard;
+  }
 
   public <T> LockExecution<T> read(final Supplier<T> read) {
-    return LockExecution.<T>withLock(lock.readLock()).execute(read);
+    return new LockExecutionLockBuilder<T>(readGuard).execute(read);
   }
 
   public <T> LockExecution<T> write(final Supplier<T> write) {
-    return LockExecution.<T>withLock(lock.writeLock()).execute(write);
+    return new LockExecutionLockBuilder<T>(writeGuard).execute(write);
   }
 
   public LockExecution<Void> write(final Runnable write) {
-    return LockExecution.withLock(lock.writeLock()).execute(write);
+    return new LockExecutionLockBuilder<Void>(writeGuard).execute(write);
+  }
+
+  /**
+   * Starts a {@link CompiledLockExecution} chain executed holding the read lock (or as any other
+   * read chain of this lock), which accepts its input at execution time.
+   *
+   * @param read first step of the chain, applied to the execution input.
+   * @param <I> input type of the execution.
+   * @param <T> return type of the first step.
+   * @return compiled execution.
+   */
+  public <I, T> CompiledLockExecution<I, T> compileRead(final Function<I, T> read) {
+    return new LockExecutionLockBuilder<T>(readGuard).compile(read);
+  }
+
+  /**
+   * Starts a {@link CompiledLockExecution} chain executed holding the write lock, which accepts
+   * its input at execution time.
+   *
+   * @param write first step of the chain, applied to the execution input.
+   * @param <I> input type of the execution.
+   * @param <T> return type of the first step.
+   * @return compiled execution.
+   */
+  public <I, T> CompiledLockExecution<I, T> compileWrite(final Function<I, T> write) {
+    return new LockExecutionLockBuilder<T>(writeGuard).compile(write);
+  }
+
+  /**
+   * <p>Starts a check chain executed holding the read lock (or optimistically for
+   * {@link StampedReadWriteLock}). Once {@link ReadThenWriteExecution#upgrade() upgraded}, the rest
+   * of the chain is executed holding the write lock, only if the check chain has not been
+   * filtered.</p>
+   * <p>The check chain is executed once again holding the write lock, unless the optimistic read
+   * lock of {@link StampedReadWriteLock} has been converted to the write lock, so it must not have
+   * any side effects.</p>
+   *
+   * @param read first step of the check chain.
+   * @param <T> return type of the check chain.
+   * @return read then write execution.
+   */
+  public <T> ReadThenWriteExecution<T> readThenWrite(final Supplier<T> read) {
+    return new ReadThenWriteExecution<>(readGuard, writeGuard, Stage.of(read));
+  }
+
+  /**
+   * Creates read write lock, which executes the same chains as this lock, but records lock
+   * contention metrics. For {@link StampedReadWriteLock}, only pessimistic reads are recorded.
+   *
+   * @param readMetrics read lock metrics.
+   * @param writeMetrics write lock metrics.
+   * @return instrumented read write lock using the same underlying lock.
+   */
+  public ReadWriteLock instrumented(final LockMetrics readMetrics, final LockMetrics writeMetrics) {
+    return new ReadWriteLock(readGuard.instrumented(readMetrics),
+        writeGuard.instrumented(writeMetrics));
+  }
+
+  /**
+   * Creates read write lock, which executes the same chains as this lock, but tracked by
+   * the given watchdog, which reports executions holding the lock (read or write) longer than
+   * the budget.
+   *
+   * @param watchdog watchdog tracking the executions.
+   * @param budget lock hold time budget.
+   * @return read write lock with hold time budget using the same underlying lock.
+   */
+  public ReadWriteLock holdBudget(final LockWatchdog watchdog, final Duration budget) {
+    return new ReadWriteLock(ExecutionGuard.holdBudget(readGuard, watchdog, budget),
+        ExecutionGuard.holdBudget(writeGuard, watchdog, budget));
+  }
+
+  /**
+   * <p>Creates execution holding write locks of all the given read write locks, acquired in
+   * a global, stable order (see {@link LockExecution#withLocks(Lock...)}).</p>
+   * <p>The underlying write locks are acquired directly, as a single composite lock. Acquisition
+   * strategies, metrics ({@link #instrumented(LockMetrics, LockMetrics)}) and hold time budgets
+   * ({@link #holdBudget(LockWatchdog, Duration)}) of the given read write locks do not apply to
+   * the execution - it is neither recorded in their metrics nor tracked by their watchdogs.</p>
+   *
+   * @param locks locks to hold.
+   * @param write first step of the execution.
+   * @param <T> return type of the execution.
+   * @return lock execution.
+   */
+  public static <T> LockExecution<T> writeAll(final Collection<? extends ReadWriteLock> locks,
+      final Supplier<T> write) {
+    return LockExecution.<T>withLocks(writeLocks(locks)).execute(write);
+  }
+
+  public static LockExecution<Void> writeAll(final Collection<? extends ReadWriteLock> locks,
+      final Runnable write) {
+    return LockExecution.<Void>withLocks(writeLocks(locks)).execute(write);
+  }
+
+  /**
+   * Executes reads of multiple stores (e.g. shards), each guarded by its own read write lock,
+   * in parallel using {@link ForkJoinPool#commonPool()}.
+   *
+   * @param locks locks of the stores.
+   * @param read read of the store by its index in <code>locks</code>, executed as a read chain
+   * of the store's lock (so e.g. its acquisition strategy and metrics apply).
+   * @param <T> return type of the reads.
+   * @return results of the reads (in the locks' order) or the first failure.
+   * @see LockExecution#parallel(List, Executor)
+   */
+  public static <T> Try<List<T>> readAll(final List<? extends ReadWriteLock> locks,
+      final IntFunction<T> read) {
+    return LockExecution.parallel(reads(locks, read));
+  }
+
+  public static <T> Try<List<T>> readAll(final List<? extends ReadWriteLock> locks,
+      final IntFunction<T> read, final Executor executor) {
+    return LockExecution.parallel(reads(locks, read), executor);
+  }
+
+  Lock writeLock() {
+    return writeGuard.lock();
+  }
+
+  private static <T> List<LockExecution<T>> reads(final List<? extends ReadWriteLock> locks,
+      final IntFunction<T> read) {
+    final List<LockExecution<T>> reads = new ArrayList<>(locks.size());
+    for (int i = 0; i < locks.size(); i++) {
+      final int index = i;
+      reads.add(locks.get(i).read(() -> read.apply(index)));
+    }
+    return reads;
+  }
+
+  private static Lock[] writeLocks(final Collection<? extends ReadWriteLock> locks) {
+    return locks.stream()
+        .map(ReadWriteLock::writeLock)
+        .toArray(Lock[]::new);
   }
 
   public static ReadWriteLock newInstance() {
     return new ReadWriteLock(new ReentrantReadWriteLock());
   }
 
+  /**
+   * Creates read write lock acquiring both read and write locks with
+   * {@link AcquisitionStrategy#adaptive()} strategy (separate for each lock).
+   *
+   * @return read write lock backed by {@link ReentrantReadWriteLock}.
+   */
+  public static ReadWriteLock newAdaptive() {
+    return new ReadWriteLock(new ReentrantReadWriteLock(), AcquisitionStrategy.adaptive(),
+        AcquisitionStrategy.adaptive());
+  }
+
+  /**
+   * Creates read write lock backed by {@link ReaderBiasedReadWriteLock}, which scales reads with
+   * the number of cores at the cost of more expensive writes. Chains executed by this lock must
+   * not execute another chain guarded by the same lock.
+   *
+   * @return read write lock backed by {@link ReaderBiasedReadWriteLock}.
+   */
+  public static ReadWriteLock newReaderBiased() {
+    return new ReadWriteLock(new ReaderBiasedReadWriteLock());
+  }
+
   public static ReadWriteLock newInstanceFair() {
     return new ReadWriteLock(new ReentrantReadWriteLock(true));
   }
+
+  /**
+   * Creates {@link StampedReadWriteLock}, which executes read chains optimistically.
+   *
+   * @return read write lock backed by {@link StampedLock}.
+   */
+  public static ReadWriteLock newOptimistic() {
+    return new StampedReadWriteLock(new StampedLock());
+  }
+
+  /**
+   * Creates {@link SeqLockExecution}, which executes read chains without any lock, retrying them
+   * if the state has been written in the meantime.
+   *
+   * @return read write lock implemented as a sequence lock.
+   */
+  public static ReadWriteLock newSeqLock() {
+    return new SeqLockExecution();
+  }
 }
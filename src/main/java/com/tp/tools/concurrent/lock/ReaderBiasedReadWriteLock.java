@@ -0,0 +1,267 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>Non-reentrant read write lock biased towards readers.</p>
+ * <p>Readers are counted by striped reader indicators: each reader increments the counter of
+ * the slot its thread is mapped to (slots are padded, so that they do not share a cache line).
+ * Java exposes no id of the core a thread is running on, so threads (not cores) are striped -
+ * thread id is hashed into twice as many slots as there are available processors by default.
+ * Hence, readers running on different cores might still share a slot, and reads of a single
+ * thread always use the same slot, even after the thread has migrated to another core. Unlike
+ * {@link ReentrantReadWriteLock}, read lock acquisition does not track its holders.</p>
+ * <p>Read scaling with the number of cores has not been measured - only single core,
+ * uncontended acquisitions have been benchmarked (see <code>FastLockBenchmark</code>).</p>
+ * <p>Writers are serialized by {@link FastLock}. Writer announces itself, so that no new readers
+ * acquire the lock, and waits until all the readers release it, checking all the slots. Writes
+ * are therefore more expensive than with {@link ReentrantReadWriteLock}. Readers arriving while
+ * the lock is write locked wait for the writer to release it.</p>
+ * <p>Neither read lock nor write lock might be acquired again by the thread holding any of them
+ * (read lock acquired again might deadlock with a waiting writer). Conditions are not
+ * supported.</p>
+ */
+public final class ReaderBiasedReadWriteLock implements java.util.concurrent.locks.ReadWriteLock {
+
+  // 128 bytes between the slots
+  private static final int SLOT_STRIDE = 16;
+  private static final int MAX_SPINS = 64;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10L);
+
+  private final FastLock writerLock = new FastLock();
+  private final AtomicLongArray readers;
+  private final int mask;
+  private volatile boolean writing;
+
+  private final ReadLock readLock = new ReadLock();
+  private final WriteLock writeLock = new WriteLock();
+
+  public ReaderBiasedReadWriteLock() {
+    this(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * @param slots minimal number of reader indicator slots, rounded up to a power of two.
+   */
+  public ReaderBiasedReadWriteLock(final int slots) {
+    if (slots <= 0) {
+      throw new IllegalArgumentException("Number of slots must be positive: " + slots);
+    }
+    final int size = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+    this.readers = new AtomicLongArray((size + 1) * SLOT_STRIDE);
+    this.mask = size - 1;
+  }
+
+  @Override
+  public Lock readLock() {
+    return readLock;
+  }
+
+  @Override
+  public Lock writeLock() {
+    return writeLock;
+  }
+
+  public boolean isWriteLocked() {
+    return writing;
+  }
+
+  public long readLockCount() {
+    long count = 0L;
+    for (int slot = 0; slot <= mask; slot++) {
+      count += readers.get(index(slot));
+    }
+    return count;
+  }
+
+  /**
+   * @return slot of the current thread, chosen by the thread id (not by the core the thread is
+   * running on).
+   */
+  private int slot() {
+    final long id = Thread.currentThread().getId();
+    final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static int index(final int slot) {
+    // first stride is left empty, so that slots do not share a cache line with other objects
+    return (slot + 1) * SLOT_STRIDE;
+  }
+
+  /**
+   * @param index index of the current thread's slot.
+   * @return <code>true</code> if read lock has been acquired, <code>false</code> if the lock is
+   * write locked.
+   */
+  private boolean tryRead(final int index) {
+    if (writing) {
+      return false;
+    }
+    readers.incrementAndGet(index);
+    if (writing) {
+      // writer announced itself in the meantime and might be waiting for this reader
+      readers.decrementAndGet(index);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param timed whether waiting is bounded by the deadline.
+   * @param deadline deadline ({@link System#nanoTime()}).
+   * @param interruptible whether waiting is interrupted when the thread is interrupted.
+   * @return <code>true</code> if all the readers have released the lock, <code>false</code> if
+   * the deadline has passed or the thread has been interrupted.
+   */
+  private boolean awaitReaders(final boolean timed, final long deadline,
+      final boolean interruptible) {
+    int spins = 0;
+    while (readLockCount() != 0L) {
+      if (interruptible && Thread.currentThread().isInterrupted()
+          || timed && deadline - System.nanoTime() <= 0L) {
+        return false;
+      }
+      if (spins < MAX_SPINS) {
+        spins++;
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(this, PARK_NANOS);
+      }
+    }
+    return true;
+  }
+
+  private final class ReadLock implements Lock {
+
+    @Override
+    public void lock() {
+      final int index = index(slot());
+      while (!tryRead(index)) {
+        // wait for the writer to release the lock
+        writerLock.lock();
+        writerLock.unlock();
+      }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      final int index = index(slot());
+      while (!tryRead(index)) {
+        writerLock.lockInterruptibly();
+        writerLock.unlock();
+      }
+    }
+
+    @Override
+    public boolean tryLock() {
+      return tryRead(index(slot()));
+    }
+
+    @Override
+    public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+      final int index = index(slot());
+      final long deadline = System.nanoTime() + unit.toNanos(time);
+      while (!tryRead(index)) {
+        if (!writerLock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          return false;
+        }
+        writerLock.unlock();
+      }
+      return true;
+    }
+
+    @Override
+    public void unlock() {
+      readers.decrementAndGet(index(slot()));
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException("Read lock does not support conditions");
+    }
+  }
+
+  private final class WriteLock implements Lock {
+
+    @Override
+    public void lock() {
+      writerLock.lock();
+      writing = true;
+      awaitReaders(false, 0L, false);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      writerLock.lockInterruptibly();
+      writing = true;
+      if (!awaitReaders(false, 0L, true)) {
+        unlock();
+        Thread.interrupted();
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public boolean tryLock() {
+      if (!writerLock.tryLock()) {
+        return false;
+      }
+      writing = true;
+      if (readLockCount() != 0L) {
+        unlock();
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+      final long deadline = System.nanoTime() + unit.toNanos(time);
+      if (!writerLock.tryLock(time, unit)) {
+        return false;
+      }
+      writing = true;
+      if (!awaitReaders(true, deadline, true)) {
+        unlock();
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void unlock() {
+      writing = false;
+      writerLock.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+      throw new UnsupportedOperationException("Write lock does not support conditions");
+    }
+  }
+}
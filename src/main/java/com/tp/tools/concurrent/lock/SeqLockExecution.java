@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+/**
+ * <p>{@link ReadWriteLock} implemented as a sequence lock (seqlock), suited for small groups of
+ * primitive fields (e.g. counters, price and size pairs), which are read much more often than
+ * written.</p>
+ * <p>Chains created with {@link #read} do not acquire any lock and do not write any shared memory.
+ * They read the lock's sequence, execute the chain and validate the sequence afterwards. If
+ * the state has been written in the meantime, the result is discarded and the chain is executed
+ * once again. After a bounded number of retries, the chain is executed holding the write lock,
+ * so that readers are not starved by frequent writers. Therefore read chains:</p>
+ * <ul>
+ *   <li>might be executed many times,</li>
+ *   <li>must not have any side effects,</li>
+ *   <li>must tolerate reading inconsistent state (including failing because of it), as such
+ *   results are always discarded.</li>
+ * </ul>
+ * <p>Chains created with {@link #write} are executed holding the (reentrant) write lock.</p>
+ */
+public class SeqLockExecution extends ReadWriteLock {
+
+  public SeqLockExecution() {
+    this(new SequenceLock());
+  }
+
+  private SeqLockExecution(final SequenceLock lock) {
+    super(ExecutionGuard.sequenceRead(lock), ExecutionGuard.of(lock));
+  }
+}
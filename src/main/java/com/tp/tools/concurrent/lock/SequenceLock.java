@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Reentrant write lock of a sequence lock (seqlock).</p>
+ * <p>Sequence is incremented, when the lock is acquired and once again, when it is released
+ * (nested acquisitions do not change it), so it is odd while the state is written. Readers do
+ * not acquire the lock. They read the sequence, then the state and finally
+ * {@link #validate(long) validate}, that the sequence has not changed.</p>
+ * <p>Conditions are not supported, as waiting for the condition releases the lock without
+ * changing the sequence.</p>
+ */
+final class SequenceLock implements Lock {
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile long sequence;
+
+  /**
+   * @return current sequence, odd if the state is being written.
+   */
+  long sequence() {
+    return sequence;
+  }
+
+  /**
+   * @param sequence sequence read before reading the state.
+   * @return <code>true</code> if the state has not been written since the sequence was read.
+   */
+  boolean validate(final long sequence) {
+    // state reads must not be reordered with the sequence read below
+    VarHandle.acquireFence();
+    return this.sequence == sequence;
+  }
+
+  boolean isHeldByCurrentThread() {
+    return lock.isHeldByCurrentThread();
+  }
+
+  @Override
+  public void lock() {
+    lock.lock();
+    writing();
+  }
+
+  @Override
+  public void lockInterruptibly() throws InterruptedException {
+    lock.lockInterruptibly();
+    writing();
+  }
+
+  @Override
+  public boolean tryLock() {
+    if (lock.tryLock()) {
+      writing();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+    if (lock.tryLock(time, unit)) {
+      writing();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void unlock() {
+    if (lock.getHoldCount() == 1) {
+      sequence = sequence + 1L;
+    }
+    lock.unlock();
+  }
+
+  @Override
+  public Condition newCondition() {
+    throw new UnsupportedOperationException("Sequence lock does not support conditions");
+  }
+
+  private void writing() {
+    if (lock.getHoldCount() == 1) {
+      sequence = sequence + 1L;
+      // state writes must not be reordered with the sequence write above
+      VarHandle.storeStoreFence();
+    }
+  }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionLockBuilder;
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>Executes {@link LockExecution} chains one at a time without any {@link Lock} (single writer
+ * principle). Chains are put on a bounded, lock-free, multi-producer single-consumer ring buffer
+ * (mailbox), which is drained by a single thread at a time:</p>
+ * <ul>
+ *   <li>{@link #newInstance()} - by the caller, which wins the ownership of the mailbox, others
+ *   wait for their results (they do not compete for any lock),</li>
+ *   <li>{@link #newInstance(Executor)} - by the given executor (e.g. single thread executor being
+ *   the owner of the guarded state), callers only wait for their results.</li>
+ * </ul>
+ * <p>{@link LockExecution#execute()} still returns {@link Try}, while
+ * {@link LockExecution#submit()} and {@link LockExecution#executeAsync(Executor)} only put
+ * the chain into the mailbox and return immediately (failing with
+ * {@link RejectedExecutionException} if the mailbox is full).</p>
+ * <p>Chains executed by a chain of the same serialized execution are executed immediately,
+ * as they are already serialized. Chains with lock timeout are not supported, they fail with
+ * {@link UnsupportedOperationException}.</p>
+ * <p>Non-blocking threads (see {@link NonBlockingThreadPolicy}), unless allowed to block, do not
+ * wait for other threads draining the mailbox. Their synchronous executions fail with
+ * {@link NonBlockingThreadException}, if the mailbox is being drained or is drained by
+ * the executor.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final SerializedExecution serialized = SerializedExecution.newInstance();
+ * <br/>
+ * <br/>Try<Car> update(CarUpdated event) {
+ * <br/>&nbsp;&nbsp;return serialized.execute(() -> event.toCar())
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(car -> cars.store(car.getCarId(), car))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.execute();
+ * <br/>}
+ * </code>
+ * </p>
+ */
+public final class SerializedExecution {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  private final ExecutionGuard guard;
+
+  private SerializedExecution(final ExecutionGuard guard) {
+    this.guard = guard;
+  }
+
+  public <T> LockExecution<T> execute(final Supplier<T> action) {
+    return new LockExecutionLockBuilder<T>(guard).execute(action);
+  }
+
+  public LockExecution<Void> execute(final Runnable action) {
+    return new LockExecutionLockBuilder<Void>(guard).execute(action);
+  }
+
+  /**
+   * Starts a {@link CompiledLockExecution} chain, which accepts its input at execution time.
+   *
+   * @param action first step of the chain, applied to the execution input.
+   * @param <I> input type of the execution.
+   * @param <T> result type of the first step.
+   * @return compiled execution.
+   */
+  public <I, T> CompiledLockExecution<I, T> compile(final Function<I, T> action) {
+    return new LockExecutionLockBuilder<T>(guard).compile(action);
+  }
+
+  /**
+   * Creates serialized execution sharing the mailbox with this one, which records
+   * {@link LockMetrics}. Wait time is the time from putting the chain into the mailbox till its
+   * execution start, hold time is the chain's execution time and queue length is the number of
+   * chains waiting in the mailbox.
+   *
+   * @param metrics metrics to record.
+   * @return instrumented serialized execution.
+   */
+  public SerializedExecution instrumented(final LockMetrics metrics) {
+    return new SerializedExecution(guard.instrumented(metrics));
+  }
+
+  /**
+   * @return serialized execution drained by the callers with mailbox capacity of
+   * {@value #DEFAULT_CAPACITY}.
+   */
+  public static SerializedExecution newInstance() {
+    return newInstance(null, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param drainer executor draining the mailbox.
+   * @return serialized execution drained by the given executor with mailbox capacity of
+   * {@value #DEFAULT_CAPACITY}.
+   */
+  public static SerializedExecution newInstance(final Executor drainer) {
+    return newInstance(drainer, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param drainer executor draining the mailbox or <code>null</code> if drained by the callers.
+   * @param capacity mailbox capacity, power of two.
+   * @return serialized execution.
+   */
+  public static SerializedExecution newInstance(final Executor drainer, final int capacity) {
+    return new SerializedExecution(new MailboxGuard(new Mailbox(drainer, capacity), null));
+  }
+
+  private static final class MailboxGuard implements ExecutionGuard {
+
+    private final Mailbox mailbox;
+    // null if not instrumented
+    private final LockMetrics metrics;
+
+    private MailboxGuard(final Mailbox mailbox, final LockMetrics metrics) {
+      this.mailbox = mailbox;
+      this.metrics = metrics;
+    }
+
+    /**
+     * Serialized execution does not use any lock.
+     */
+    @Override
+    public Lock lock() {
+      return null;
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      if (mailbox.isOwnedByCurrentThread()) {
+        try {
+          return Try.success(stage.apply(input));
+        } catch (final Throwable e) {
+          return Try.failure(e);
+        }
+      }
+      final Thread thread = Thread.currentThread();
+      final NonBlockingThreadPolicy policy = NonBlockingThreadPolicy.of(thread);
+      if (policy != null && !policy.blocks()) {
+        return mailbox.executeNonBlocking(new PendingExecution(stage, input, metrics), thread);
+      }
+      return mailbox.execute(new PendingExecution(stage, input, metrics));
+    }
+
+    @Override
+    public <I, T> CompletableFuture<T> executeAsync(final Stage<I, T> stage, final I input,
+        final Executor executor) {
+      final CompletableFuture<T> result = new CompletableFuture<>();
+      mailbox.submit(new PendingExecution(stage, input, metrics, result), executor);
+      return result;
+    }
+
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return new UnsupportedAcquisitionGuard(this);
+    }
+
+    @Override
+    public boolean acquiresLock() {
+      return false;
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new MailboxGuard(mailbox, metrics);
+    }
+  }
+
+  private static final class UnsupportedAcquisitionGuard implements ExecutionGuard {
+
+    private final MailboxGuard guard;
+
+    private UnsupportedAcquisitionGuard(final MailboxGuard guard) {
+      this.guard = guard;
+    }
+
+    @Override
+    public Lock lock() {
+      return guard.lock();
+    }
+
+    @Override
+    public <I, T> Try<T> execute(final Stage<I, T> stage, final I input) {
+      return Try.failure(new UnsupportedOperationException(
+          "Serialized execution does not support lock acquisition strategies"));
+    }
+
+    @Override
+    public ExecutionGuard withAcquisition(final AcquisitionStrategy acquisition) {
+      return this;
+    }
+
+    @Override
+    public boolean acquiresLock() {
+      return false;
+    }
+
+    @Override
+    public ExecutionGuard instrumented(final LockMetrics metrics) {
+      return new UnsupportedAcquisitionGuard((MailboxGuard) guard.instrumented(metrics));
+    }
+  }
+
+  private static final class Mailbox {
+
+    // spinning only delays the draining thread on single core machines
+    private static final int MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    // limits the time a single thread spends draining other threads' chains
+    private static final int MAX_BATCH = 256;
+
+    private final Executor drainer;
+    private final MpscRingBuffer<PendingExecution> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // written by the draining thread only, so that it is able to recognize itself
+    private Thread owner;
+
+    private Mailbox(final Executor drainer, final int capacity) {
+      this.drainer = drainer;
+      this.queue = new MpscRingBuffer<>(capacity);
+    }
+
+    private boolean isOwnedByCurrentThread() {
+      return owner == Thread.currentThread();
+    }
+
+    private <T> Try<T> execute(final PendingExecution execution) {
+      execution.published();
+      boolean interrupted = false;
+      int spins = 0;
+      boolean offered = false;
+      while (!execution.isDone()) {
+        if (!offered) {
+          offered = queue.offer(execution);
+          if (drainer != null) {
+            schedule(drainer);
+          }
+        }
+        if (drainer == null && !draining.get() && draining.compareAndSet(false, true)) {
+          drain(execution);
+          continue;
+        }
+        if (spins < MAX_SPINS) {
+          spins++;
+          Thread.onSpinWait();
+        } else {
+          // woken up once the execution is done, parking is time bound as the mailbox might be
+          // full or the thread might not have been woken up to take over draining
+          LockSupport.parkNanos(this, MAX_PARK_NANOS);
+          interrupted |= Thread.interrupted();
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      return execution.result();
+    }
+
+    /**
+     * Executes the chain by a non-blocking thread, only if it is able to drain the mailbox itself.
+     */
+    private <T> Try<T> executeNonBlocking(final PendingExecution execution, final Thread thread) {
+      if (drainer != null || !draining.compareAndSet(false, true)) {
+        return Try.failure(new NonBlockingThreadException(thread));
+      }
+      execution.published();
+      if (!queue.offer(execution)) {
+        // mailbox is full, the chain is executed ahead of the queued ones instead of waiting
+        owner = thread;
+        execution.execute();
+      }
+      drain(execution);
+      return execution.result();
+    }
+
+    private void submit(final PendingExecution execution, final Executor executor) {
+      execution.published();
+      if (!queue.offer(execution)) {
+        execution.reject(new RejectedExecutionException("Serialized execution mailbox is full"));
+        return;
+      }
+      schedule(drainer == null ? executor : drainer);
+    }
+
+    private void schedule(final Executor executor) {
+      if (!draining.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        executor.execute(() -> drain(executor));
+      } catch (final Throwable e) {
+        draining.set(false);
+        // mailbox is drained by the next caller or the next successfully scheduled drain
+        throw e;
+      }
+    }
+
+    /**
+     * Drains the mailbox by the caller at least until the given execution is done.
+     */
+    private void drain(final PendingExecution awaited) {
+      owner = Thread.currentThread();
+      int drained = 0;
+      PendingExecution execution;
+      while ((!awaited.isDone() || drained < MAX_BATCH) && (execution = queue.poll()) != null) {
+        execution.execute();
+        drained++;
+      }
+      final PendingExecution next = queue.peek();
+      release();
+      if (next != null && next.thread() != null) {
+        LockSupport.unpark(next.thread());
+      } else if (!queue.isEmpty()) {
+        // asynchronous executions are drained by the common pool, if there is no caller
+        schedule(ForkJoinPool.commonPool());
+      }
+    }
+
+    /**
+     * Drains the mailbox by the executor.
+     */
+    private void drain(final Executor executor) {
+      owner = Thread.currentThread();
+      int drained = 0;
+      PendingExecution execution;
+      while (drained < MAX_BATCH && (execution = queue.poll()) != null) {
+        execution.execute();
+        drained++;
+      }
+      release();
+      if (!queue.isEmpty()) {
+        schedule(executor);
+      }
+    }
+
+    private void release() {
+      owner = null;
+      draining.set(false);
+    }
+  }
+}
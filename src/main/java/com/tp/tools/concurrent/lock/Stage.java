@@ -0,0 +1,416 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionNone;
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionSome;
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionWithAction;
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>Single, pre-built step of a {@link LockExecution} chain.</p>
+ * <p>Each stage keeps reference to its predecessor, so the whole chain is fused into a single
+ * function once, when the chain is built. Evaluating a stage does not allocate anything apart from
+ * what the user's functions allocate.</p>
+ * <p>Stage might evaluate to {@link #FILTERED}, which means, that a filter has not passed (or
+ * the chain has been flat mapped to {@link LockExecution#none()}) and every later stage has to be
+ * skipped. Chain evaluated to {@link #FILTERED} returns <code>null</code> result.</p>
+ *
+ * @param <I> chain input type.
+ * @param <T> stage result type.
+ */
+abstract class Stage<I, T> implements Function<I, T> {
+
+  static final Object FILTERED = new Object();
+
+  /**
+   * Evaluates the chain up to (and including) this stage.
+   *
+   * @param input chain input.
+   * @return stage result or {@link #FILTERED}.
+   */
+  abstract Object evaluate(final I input);
+
+  /**
+   * @return number of stages of the chain up to (and including) this stage.
+   */
+  abstract int length();
+
+  @Override
+  public T apply(final I input) {
+    return result(evaluate(input));
+  }
+
+  <K> Stage<I, K> map(final Function<T, K> mapper) {
+    return new Mapped<>(this, mapper);
+  }
+
+  <K> Stage<I, K> mapWithInput(final BiFunction<I, T, K> mapper) {
+    return new MappedWithInput<>(this, mapper);
+  }
+
+  <K> Stage<I, K> flatMap(final Function<T, LockExecution<K>> mapper) {
+    return new FlatMapped<>(this, (input, value) -> mapper.apply(value));
+  }
+
+  <K> Stage<I, K> flatMapWithInput(final BiFunction<I, T, LockExecution<K>> mapper) {
+    return new FlatMapped<>(this, mapper);
+  }
+
+  Stage<I, Void> run(final Runnable runnable) {
+    return new Mapped<>(this, ignore -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  <K> Stage<I, K> supply(final Supplier<K> supplier) {
+    return new Mapped<>(this, ignore -> supplier.get());
+  }
+
+  <K> Stage<I, K> supplyWithInput(final Function<I, K> supplier) {
+    return new MappedWithInput<>(this, (input, ignore) -> supplier.apply(input));
+  }
+
+  Stage<I, T> filter(final Predicate<T> predicate) {
+    return new Filtered<>(this, predicate);
+  }
+
+  Stage<I, T> filterWithInput(final BiPredicate<I, T> predicate) {
+    return new FilteredWithInput<>(this, predicate);
+  }
+
+  /**
+   * @param next chain evaluated with this chain's result.
+   * @param <K> result type of the next chain.
+   * @return chain evaluating this chain and then the next one, unless this chain is filtered.
+   */
+  <K> Stage<I, K> then(final Stage<T, K> next) {
+    return new Composed<>(this, next);
+  }
+
+  /**
+   * @return chain, which results in {@link #FILTERED} (instead of <code>null</code>), when this
+   * chain is filtered.
+   */
+  Stage<I, Object> evaluated() {
+    return new Evaluated<>(this);
+  }
+
+  static <I, T> Stage<I, T> of(final Function<I, T> action) {
+    return new Head<>(action);
+  }
+
+  static <T> Stage<Void, T> of(final Supplier<T> action) {
+    return new Head<>(ignore -> action.get());
+  }
+
+  static Stage<Void, Void> of(final Runnable action) {
+    return new Head<>(ignore -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Finds the stage of the chain, which is being executed, by the number of stages evaluated
+   * on the given stack: each stage evaluates its predecessor before its own function, so stages
+   * following the executed one are on the stack as well. Only stages evaluated directly by
+   * the outermost evaluation of the chain are counted, stages of nested chains (executed by
+   * the stage's function) are not.
+   *
+   * @param chain chain being executed, evaluating its stages.
+   * @param stackTrace stack trace of the thread executing the chain.
+   * @return position of the executed stage (starting with 1) or <code>0</code> if no stage is
+   * being executed.
+   */
+  static int executing(final Stage<?, ?> chain, final StackTraceElement[] stackTrace) {
+    final String chainClassName = chain.getClass().getName();
+    int frame = stackTrace.length - 1;
+    while (frame >= 0 && !isEvaluation(stackTrace[frame], chainClassName)) {
+      frame--;
+    }
+    final String prefix = Stage.class.getName() + '$';
+    int evaluated = 0;
+    // the first frame, which is not an evaluation, belongs to the executed stage's function
+    while (--frame >= 0 && "evaluate".equals(stackTrace[frame].getMethodName())) {
+      final String className = stackTrace[frame].getClassName();
+      if (className.startsWith(prefix) && !className.equals(Composed.class.getName())
+          && !className.equals(Evaluated.class.getName())) {
+        evaluated++;
+      }
+    }
+    final int length = chain.length();
+    return evaluated == 0 || evaluated > length ? 0 : length - evaluated + 1;
+  }
+
+  private static boolean isEvaluation(final StackTraceElement element, final String className) {
+    return "evaluate".equals(element.getMethodName()) && className.equals(element.getClassName());
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> T result(final Object value) {
+    return value == FILTERED ? null : (T) value;
+  }
+
+  /**
+   * @param result execution result.
+   * @param <T> result type.
+   * @return value of the successful result.
+   * @throws RuntimeException failure of the result (any {@link Throwable}, rethrown as is), so
+   * that it fails the evaluated chain.
+   */
+  static <T> T valueOrThrow(final Try<T> result) {
+    if (result.isFailure()) {
+      throw Stage.<RuntimeException>sneakyThrow(result.getCause());
+    }
+    return result.get();
+  }
+
+  @SuppressWarnings("unchecked")
+  static <E extends Throwable> E sneakyThrow(final Throwable e) throws E {
+    throw (E) e;
+  }
+
+  private static final class Head<I, T> extends Stage<I, T> {
+
+    private final Function<I, T> action;
+
+    private Head(final Function<I, T> action) {
+      this.action = action;
+    }
+
+    @Override
+    Object evaluate(final I input) {
+      return action.apply(input);
+    }
+
+    @Override
+    int length() {
+      return 1;
+    }
+  }
+
+  private static final class Mapped<I, T, K> extends Stage<I, K> {
+
+    private final Stage<I, T> previous;
+    private final Function<T, K> mapper;
+
+    private Mapped(final Stage<I, T> previous, final Function<T, K> mapper) {
+      this.previous = previous;
+      this.mapper = mapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      return value == FILTERED ? FILTERED : mapper.apply((T) value);
+    }
+
+    @Override
+    int length() {
+      return previous.length() + 1;
+    }
+  }
+
+  private static final class MappedWithInput<I, T, K> extends Stage<I, K> {
+
+    private final Stage<I, T> previous;
+    private final BiFunction<I, T, K> mapper;
+
+    private MappedWithInput(final Stage<I, T> previous, final BiFunction<I, T, K> mapper) {
+      this.previous = previous;
+      this.mapper = mapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      return value == FILTERED ? FILTERED : mapper.apply(input, (T) value);
+    }
+
+    @Override
+    int length() {
+      return previous.length() + 1;
+    }
+  }
+
+  private static final class FlatMapped<I, T, K> extends Stage<I, K> {
+
+    private final Stage<I, T> previous;
+    private final BiFunction<I, T, LockExecution<K>> mapper;
+
+    private FlatMapped(final Stage<I, T> previous,
+        final BiFunction<I, T, LockExecution<K>> mapper) {
+      this.previous = previous;
+      this.mapper = mapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      if (value == FILTERED) {
+        return FILTERED;
+      }
+      return nested(mapper.apply(input, (T) value));
+    }
+
+    /**
+     * Evaluates the nested execution. Nested lock is acquired only within the chain with
+     * deadline (or when the nested execution has a deadline itself), within the earlier of
+     * the nested and the outer deadline.
+     */
+    private static Object nested(final LockExecution<?> next) {
+      if (next instanceof LockExecutionSome) {
+        final LockExecutionSome<?> some = (LockExecutionSome<?>) next;
+        return Deadline.isActive() ? Deadline.evaluate(some.guard(), some.stage())
+            : some.stage().evaluate(null);
+      } else if (next instanceof LockExecutionNone) {
+        return FILTERED;
+      } else if (next instanceof LockExecutionWithAction) {
+        return ((LockExecutionWithAction<?>) next).action().apply(null);
+      } else if (next instanceof DeadlineLockExecution) {
+        final DeadlineLockExecution<?> withDeadline = (DeadlineLockExecution<?>) next;
+        return nested(withDeadline.lockExecution(), withDeadline.deadline());
+      } else if (next instanceof TimeoutLockExecution) {
+        final TimeoutLockExecution<?> withTimeout = (TimeoutLockExecution<?>) next;
+        final LockTimeout timeout = withTimeout.timeout();
+        return Deadline.isActive() ? nested(withTimeout.lockExecution(),
+            Deadline.after(Duration.ofNanos(timeout.getUnit().toNanos(timeout.getTimeout()))))
+            : nested(withTimeout.lockExecution());
+      }
+      // any other implementation is executed on its own
+      return valueOrThrow(next.execute());
+    }
+
+    private static Object nested(final LockExecution<?> next, final Deadline deadline) {
+      if (next instanceof LockExecutionSome) {
+        final LockExecutionSome<?> some = (LockExecutionSome<?>) next;
+        // deadline guard takes the earlier of its own and the outer deadline
+        return Deadline.evaluate(ExecutionGuard.deadline(some.guard(), deadline), some.stage());
+      }
+      return nested(next);
+    }
+
+    @Override
+    int length() {
+      return previous.length() + 1;
+    }
+  }
+
+  private static final class Filtered<I, T> extends Stage<I, T> {
+
+    private final Stage<I, T> previous;
+    private final Predicate<T> predicate;
+
+    private Filtered(final Stage<I, T> previous, final Predicate<T> predicate) {
+      this.previous = previous;
+      this.predicate = predicate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      return value == FILTERED || !predicate.test((T) value) ? FILTERED : value;
+    }
+
+    @Override
+    int length() {
+      return previous.length() + 1;
+    }
+  }
+
+  private static final class FilteredWithInput<I, T> extends Stage<I, T> {
+
+    private final Stage<I, T> previous;
+    private final BiPredicate<I, T> predicate;
+
+    private FilteredWithInput(final Stage<I, T> previous, final BiPredicate<I, T> predicate) {
+      this.previous = previous;
+      this.predicate = predicate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      return value == FILTERED || !predicate.test(input, (T) value) ? FILTERED : value;
+    }
+
+    @Override
+    int length() {
+      return previous.length() + 1;
+    }
+  }
+
+  private static final class Composed<I, T, K> extends Stage<I, K> {
+
+    private final Stage<I, T> previous;
+    private final Stage<T, K> next;
+
+    private Composed(final Stage<I, T> previous, final Stage<T, K> next) {
+      this.previous = previous;
+      this.next = next;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    Object evaluate(final I input) {
+      final Object value = previous.evaluate(input);
+      return value == FILTERED ? FILTERED : next.evaluate((T) value);
+    }
+
+    @Override
+    int length() {
+      return previous.length() + next.length();
+    }
+  }
+
+  private static final class Evaluated<I> extends Stage<I, Object> {
+
+    private final Stage<I, ?> previous;
+
+    private Evaluated(final Stage<I, ?> previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    Object evaluate(final I input) {
+      return previous.evaluate(input);
+    }
+
+    @Override
+    public Object apply(final I input) {
+      return previous.evaluate(input);
+    }
+
+    @Override
+    int length() {
+      return previous.length();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <p>{@link ReadWriteLock} backed by {@link StampedLock}.</p>
+ * <p>Chains created with {@link #read} are executed optimistically, without acquiring any lock
+ * (see {@link StampedLock#tryOptimisticRead()}). If a write lock has been acquired in the meantime,
+ * the optimistic result is discarded and the chain is executed once again holding the read lock.
+ * Therefore read chains:</p>
+ * <ul>
+ *   <li>might be executed twice,</li>
+ *   <li>must not have any side effects,</li>
+ *   <li>must tolerate reading inconsistent state (including failing because of it), as such
+ *   results are always discarded.</li>
+ * </ul>
+ * <p>Chains created with {@link #write} are executed holding the write lock.</p>
+ * <p>Unlike {@link java.util.concurrent.locks.ReentrantReadWriteLock},
+ * {@link StampedLock} is not reentrant.</p>
+ */
+public class StampedReadWriteLock extends ReadWriteLock {
+
+  public StampedReadWriteLock(final StampedLock lock) {
+    super(ExecutionGuard.optimisticRead(lock), ExecutionGuard.of(lock.asWriteLock()));
+  }
+}
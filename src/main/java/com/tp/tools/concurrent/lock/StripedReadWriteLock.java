@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import com.tp.tools.concurrent.lock.LockExecution.LockExecutionLockBuilder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * <p>Pool of read write locks (stripes), where the lock is chosen by the key's hash code.</p>
+ * <p>Unlike a single {@link ReadWriteLock} guarding the whole store, executions for keys mapped to
+ * different stripes do not block each other, so the write throughput scales with the number of
+ * stripes (up to the number of cores).</p>
+ * <p>Number of stripes has to be a power of two. Each stripe is padded, so that states of
+ * the stripes created together do not share a cache line.</p>
+ *
+ * <p>Example usage:</p>
+ * <p>
+ * <code>
+ * <br/>
+ * <br/>private final StripedReadWriteLock<CarId> locks = StripedReadWriteLock.newInstance();
+ * <br/>
+ * <br/>Try<Car> update(CarUpdated event) {
+ * <br/>&nbsp;&nbsp;return locks.write(event.getCarId(), () -> event.toCar())
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.map(car -> cars.store(car.getCarId(), car))
+ * <br/>&nbsp;&nbsp;&nbsp;&nbsp;.execute();
+ * <br/>}
+ * </code>
+ * </p>
+ *
+ * @param <K> key type.
+ */
+public class StripedReadWriteLock<K> {
+
+  private static final int STRIPES_PER_CORE = 4;
+
+  private final java.util.concurrent.locks.ReadWriteLock[] locks;
+  private final ReadWriteLock[] stripes;
+  private final int mask;
+
+  public StripedReadWriteLock(final int stripes) {
+    if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("Number of stripes must be a power of two: " + stripes);
+    }
+    this.locks = new java.util.concurrent.locks.ReadWriteLock[stripes];
+    this.stripes = new ReadWriteLock[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.locks[i] = new PaddedReadWriteLock();
+      this.stripes[i] = new ReadWriteLock(this.locks[i]);
+    }
+    this.mask = stripes - 1;
+  }
+
+  public <T> LockExecution<T> read(final K key, final Supplier<T> read) {
+    return stripe(key).read(read);
+  }
+
+  public <T> LockExecution<T> write(final K key, final Supplier<T> write) {
+    return stripe(key).write(write);
+  }
+
+  public LockExecution<Void> write(final K key, final Runnable write) {
+    return stripe(key).write(write);
+  }
+
+  /**
+   * Creates execution holding write locks of all the stripes the given keys are mapped to.
+   * Stripes are always locked in the same (ascending) order, so concurrent executions for
+   * overlapping key sets cannot deadlock.
+   *
+   * @param keys keys to lock.
+   * @param write first step of the execution.
+   * @param <T> return type of the execution.
+   * @return lock execution.
+   */
+  public <T> LockExecution<T> writeAll(final Collection<K> keys, final Supplier<T> write) {
+    return new LockExecutionLockBuilder<T>(ExecutionGuard.of(writeLocks(keys))).execute(write);
+  }
+
+  public LockExecution<Void> writeAll(final Collection<K> keys, final Runnable write) {
+    return new LockExecutionLockBuilder<Void>(ExecutionGuard.of(writeLocks(keys))).execute(write);
+  }
+
+  public int stripes() {
+    return stripes.length;
+  }
+
+  int stripeIndex(final K key) {
+    final int hash = Objects.hashCode(key);
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private ReadWriteLock stripe(final K key) {
+    return stripes[stripeIndex(key)];
+  }
+
+  private Lock writeLocks(final Collection<K> keys) {
+    final int[] indices = keys.stream()
+        .mapToInt(this::stripeIndex)
+        .sorted()
+        .distinct()
+        .toArray();
+    final Lock[] writeLocks = Arrays.stream(indices)
+        .mapToObj(index -> locks[index].writeLock())
+        .toArray(Lock[]::new);
+    return new OrderedLock(writeLocks);
+  }
+
+  public static <K> StripedReadWriteLock<K> newInstance(final int stripes) {
+    return new StripedReadWriteLock<>(stripes);
+  }
+
+  /**
+   * Creates striped lock with the number of stripes being the lowest power of two not lower than
+   * {@value #STRIPES_PER_CORE} stripes per available processor.
+   *
+   * @param <K> key type.
+   * @return striped lock.
+   */
+  public static <K> StripedReadWriteLock<K> newInstance() {
+    final int stripes = STRIPES_PER_CORE * Runtime.getRuntime().availableProcessors();
+    return new StripedReadWriteLock<>(Integer.highestOneBit(stripes - 1) << 1);
+  }
+
+  /**
+   * {@link ReentrantReadWriteLock} padded with a cache line, so that its synchronizer (allocated
+   * right after the lock) is not placed next to the synchronizer of the previously allocated
+   * stripe.
+   */
+  @SuppressWarnings("unused")
+  private static final class PaddedReadWriteLock extends ReentrantReadWriteLock {
+
+    private static final long serialVersionUID = 3461218640264829154L;
+
+    private long p01, p02, p03, p04, p05, p06, p07, p08;
+  }
+}
@@ -17,7 +17,8 @@
 package com.tp.tools.concurrent.lock;
 
 import io.vavr.control.Try;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -65,16 +66,31 @@ public class TimeoutLockExecution<T> implements LockExecution<T> {
       return lockExecution.execute();
     } else if (lockExecution instanceof LockExecutionSome) {
       final LockExecutionSome<T> some = (LockExecutionSome<T>) lockExecution;
-      final Lock lock = some.lock();
-      return Try.of(() -> lock.tryLock(timeout.getTimeout(), timeout.getUnit()))
-          .filter(locked -> locked)
-          .map(ignore -> some.action().apply(null))
-          .andFinally(lock::unlock);
+      return some.guard().withAcquisition(AcquisitionStrategies.timeout(timeout))
+          .execute(some.stage(), null);
     } else {
       return Try.failure(new IllegalArgumentException("Unsupported LockExecution type"));
     }
   }
 
+  @Override
+  public CompiledLockExecution<Void, T> compile() {
+    return lockExecution.compile().withAcquisition(AcquisitionStrategies.timeout(timeout));
+  }
+
+  @Override
+  public CompletableFuture<T> executeAsync(final Executor executor) {
+    return compile().executeAsync(executor);
+  }
+
+  LockTimeout timeout() {
+    return timeout;
+  }
+
+  LockExecution<T> lockExecution() {
+    return lockExecution;
+  }
+
   static <T> TimeoutLockExecutionBuilder<T> builder(final LockExecution<T> lockExecution) {
     return new TimeoutLockExecutionBuilder<>(lockExecution);
   }
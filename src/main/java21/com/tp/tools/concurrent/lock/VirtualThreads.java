@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+/**
+ * Virtual threads support for Java 21+ (multi-release JAR version).
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {
+    throw new UnsupportedOperationException("Cannot instantiate utility class.");
+  }
+
+  static boolean isSupported() {
+    return true;
+  }
+
+  static Thread newThread(final Runnable runnable, final String name) {
+    return Thread.ofVirtual().name(name).unstarted(runnable);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.collection.HashMap;
+import io.vavr.collection.List;
+import io.vavr.collection.Map;
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CopyOnWriteStateTest {
+
+  @Test
+  void shouldReadPublishedSnapshot() {
+    // given state with empty map
+    final CopyOnWriteState<Map<String, Integer>> state =
+        CopyOnWriteState.newInstance(HashMap.empty());
+
+    // when updated with a new entry
+    final Try<Map<String, Integer>> result = state.update(current -> current.put("A", 1))
+        .execute();
+
+    // then published snapshot is returned
+    assertThat(result.get().get("A").get()).isEqualTo(1);
+    // and read by readers
+    assertThat(state.get()).isSameAs(result.get());
+  }
+
+  @Test
+  void shouldKeepReaderSnapshotWhenUpdatedDuringRead() {
+    // given state with list of 2 items
+    final CopyOnWriteState<List<String>> state = CopyOnWriteState.newInstance(List.of("A1", "A2"));
+
+    // when updated by another thread during read
+    final int readSize = state.read(snapshot -> {
+      CompletableFuture.runAsync(() -> state.update(current -> current.append("A3")).execute())
+          .join();
+      return snapshot.size();
+    });
+
+    // then reader has seen the snapshot taken before the update
+    assertThat(readSize).isEqualTo(2);
+    // and update has been published
+    assertThat(state.get()).containsExactly("A1", "A2", "A3");
+  }
+
+  @Test
+  void shouldNotLoseConcurrentUpdates() {
+    // given state with empty list
+    final CopyOnWriteState<List<Integer>> state = CopyOnWriteState.newInstance(List.empty());
+    // and executor service
+    final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    // when 400 elements appended concurrently
+    final CompletableFuture<?>[] updates = IntStream.range(0, 400)
+        .mapToObj(i -> CompletableFuture.runAsync(
+            () -> state.update(current -> current.append(i)).execute(), executorService))
+        .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(updates).join();
+    executorService.shutdown();
+
+    // then all the elements have been published
+    assertThat(state.get().size()).isEqualTo(400);
+    assertThat(state.get().distinct().size()).isEqualTo(400);
+  }
+
+  @Test
+  void shouldNotPublishWhenUpdateFailed() {
+    // given state with list of 2 items
+    final CopyOnWriteState<List<String>> state = CopyOnWriteState.newInstance(List.of("A1", "A2"));
+    final List<String> initial = state.get();
+
+    // when update fails
+    final Try<List<String>> result = state.update(current -> {
+      throw new IllegalStateException("Update failed");
+    }).execute();
+
+    // then failure is returned
+    assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    // and snapshot has not been changed
+    assertThat(state.get()).isSameAs(initial);
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.tp.tools.concurrent.lock.AcquisitionStrategies.Adaptive;
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class AcquisitionStrategyTest {
+
+  @Test
+  void shouldBlockAfterSpinningWhenLockIsHeld() {
+    // given lock held for 100 ms by the other thread
+    final ReentrantLock lock = new ReentrantLock();
+    CompletableFuture.runAsync(() -> LockExecution.withLock(lock)
+        .execute(() -> sleep(100L))
+        .execute(), TestUtils.fixedThreadPoolExecutor(1));
+    sleep(20L);
+    // and lock execution with spinning acquisition
+    final LockExecution<Integer> execution = LockExecution
+        .<Integer>withLock(lock, AcquisitionStrategy.spinning(100))
+        .execute(() -> 1);
+
+    // when executed
+    final Try<Integer> result = execution.execute();
+
+    // then execution waited for the lock
+    assertThat(result.get()).isEqualTo(1);
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldMeasureHoldTimeWhenAdaptive() {
+    // given adaptive acquisition
+    final AcquisitionStrategy acquisition = AcquisitionStrategy.adaptive();
+    // and lock execution holding the lock for at least 5 ms
+    final LockExecution<Void> execution = LockExecution
+        .<Void>withLock(new ReentrantLock(), acquisition)
+        .execute(() -> sleep(5L));
+
+    // when executed multiple times
+    for (int i = 0; i < 20; i++) {
+      execution.execute();
+    }
+
+    // then average hold time has been adjusted towards measured hold times
+    assertThat(((Adaptive) acquisition).averageHoldNanos())
+        .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4L));
+  }
+
+  @Test
+  void shouldMeasureHoldTimeWhenAdaptiveWithLockTimeoutOrDeadline() {
+    // given adaptive acquisitions
+    final AcquisitionStrategy withTimeout = AcquisitionStrategy.adaptive();
+    final AcquisitionStrategy withDeadline = AcquisitionStrategy.adaptive();
+    // and lock executions holding the lock for at least 5 ms with lock timeout and with deadline
+    final LockExecution<Void> timeoutExecution = LockExecution
+        .<Void>withLock(new ReentrantLock(), withTimeout)
+        .execute(() -> sleep(5L))
+        .withLockTimeout()
+        .seconds(1L);
+    final LockExecution<Void> deadlineExecution = LockExecution
+        .<Void>withLock(new ReentrantLock(), withDeadline)
+        .execute(() -> sleep(5L))
+        .withDeadline(Duration.ofSeconds(1L));
+
+    // when executed multiple times
+    for (int i = 0; i < 20; i++) {
+      timeoutExecution.execute();
+      deadlineExecution.execute();
+    }
+
+    // then average hold times have been adjusted towards measured hold times
+    assertThat(((Adaptive) withTimeout).averageHoldNanos())
+        .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4L));
+    assertThat(((Adaptive) withDeadline).averageHoldNanos())
+        .isGreaterThan(TimeUnit.MILLISECONDS.toNanos(4L));
+  }
+
+  @Test
+  void shouldBlockWithoutSpinningWhenAverageHoldTimeExceedsMaxSpinTime() {
+    // given adaptive acquisition with average hold time exceeding max spin time
+    final AcquisitionStrategy acquisition = AcquisitionStrategy
+        .adaptive(1L, TimeUnit.MICROSECONDS);
+    acquisition.released(TimeUnit.MILLISECONDS.toNanos(10L));
+    // and lock held for 100 ms by the other thread
+    final ReentrantLock lock = new ReentrantLock();
+    CompletableFuture.runAsync(() -> LockExecution.withLock(lock, acquisition)
+        .execute(() -> sleep(100L))
+        .execute(), TestUtils.fixedThreadPoolExecutor(1));
+    sleep(20L);
+
+    // when executed
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock, acquisition)
+        .execute(() -> 1)
+        .execute();
+
+    // then execution waited for the lock
+    assertThat(result.get()).isEqualTo(1);
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldExecuteReadAndWriteWithAdaptiveReadWriteLock() {
+    // given adaptive read write lock
+    final ReadWriteLock lock = ReadWriteLock.newAdaptive();
+    final int[] value = {0};
+
+    // when written and read
+    final Try<Void> write = lock.write(() -> {
+      value[0] = 5;
+    }).execute();
+    final Try<Integer> read = lock.read(() -> value[0]).execute();
+
+    // then both executed
+    assertThat(write.isSuccess()).isTrue();
+    assertThat(read.get()).isEqualTo(5);
+  }
+
+  @Test
+  void shouldRejectInvalidArguments() {
+    assertThatThrownBy(() -> AcquisitionStrategy.spinning(-1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> AcquisitionStrategy.adaptive(-1L, TimeUnit.MICROSECONDS))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class AsyncLockTest {
+
+  @Test
+  void shouldNotUseAnyThreadWhileWaitingForLock() {
+    // given async lock
+    final AsyncLock lock = new AsyncLock();
+    // and counter
+    final int[] counter = new int[1];
+    // and executor service with 2 threads
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+
+    // when lock is held
+    lock.lock();
+    // and 10 000 executions are waiting for the lock
+    final List<CompletableFuture<Integer>> futures = IntStream.range(0, 10_000)
+        .mapToObj(i -> LockExecution.<Integer>withLock(lock)
+            .execute(() -> ++counter[0])
+            .executeAsync(executorService))
+        .collect(Collectors.toList());
+
+    // then executor threads are not blocked
+    assertThat(CompletableFuture.supplyAsync(() -> "free", executorService))
+        .succeedsWithin(1L, TimeUnit.SECONDS);
+    // and no execution completed
+    assertThat(futures).noneMatch(CompletableFuture::isDone);
+
+    // when lock is released
+    lock.unlock();
+
+    // then all executions completed exclusively
+    assertThat(CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])))
+        .succeedsWithin(10L, TimeUnit.SECONDS);
+    assertThat(counter[0]).isEqualTo(10_000);
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldHandOverLockInFifoOrder() {
+    // given async lock
+    final AsyncLock lock = new AsyncLock();
+    // and list
+    final List<Integer> list = new ArrayList<>();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+
+    // when lock is held
+    lock.lock();
+    // and executions are waiting for the lock
+    final CompletableFuture<?>[] futures = IntStream.range(0, 100)
+        .mapToObj(i -> LockExecution.<Boolean>withLock(lock)
+            .execute(() -> list.add(i))
+            .executeAsync(executorService))
+        .toArray(CompletableFuture[]::new);
+    // and lock is released
+    lock.unlock();
+
+    // then executions acquired the lock in order
+    assertThat(CompletableFuture.allOf(futures)).succeedsWithin(5L, TimeUnit.SECONDS);
+    assertThat(list).isEqualTo(IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+  }
+
+  @Test
+  void shouldCompleteExceptionallyAndReleaseLockWhenExecutionFails() {
+    // given async lock
+    final AsyncLock lock = new AsyncLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+
+    // when execute failing chain asynchronously
+    final CompletableFuture<Integer> future = LockExecution.<Integer>withLock(lock)
+        .execute(() -> {
+          throw new IllegalStateException();
+        })
+        .executeAsync(executorService);
+
+    // then future completed exceptionally
+    assertThatThrownBy(() -> future.get(1L, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldSkipAbandonedWaiterWhenTimedOut() throws InterruptedException {
+    // given async lock
+    final AsyncLock lock = new AsyncLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and task holding lock for 250 ms
+    final LockExecution<Void> lockingTask = LockExecution.<Void>withLock(lock)
+        .execute(() -> sleep(250L));
+
+    // when run locking task
+    final CompletableFuture<Try<Void>> lockingFuture = CompletableFuture
+        .supplyAsync(lockingTask::execute, executorService);
+    // and 50 ms later try to acquire the lock with 50 ms timeout
+    sleep(50L);
+    final boolean acquired = lock.tryLock(50L, TimeUnit.MILLISECONDS);
+
+    // then lock was not acquired
+    assertThat(acquired).isFalse();
+    // and locking task succeeded
+    assertThat(lockingFuture.join().isSuccess()).isTrue();
+    // and lock is free
+    assertThat(lock.isLocked()).isFalse();
+    assertThat(lock.tryLock()).isTrue();
+  }
+
+  @Test
+  void shouldBlockSynchronousExecutionsUntilLockReleased() {
+    // given async lock
+    final AsyncLock lock = new AsyncLock();
+    // and list
+    final List<String> list = new ArrayList<>();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and asynchronous task adding element and sleeping 250 ms holding the lock
+    final CompletableFuture<Void> writeFuture = LockExecution.<Boolean>withLock(lock)
+        .execute(() -> list.add("A1"))
+        .run(() -> sleep(250L))
+        .executeAsync(executorService);
+
+    // when 50 ms later synchronous task reads list size
+    sleep(50L);
+    final Try<Integer> size = LockExecution.<Integer>withLock(lock)
+        .execute(list::size)
+        .execute();
+
+    // then asynchronous task succeeded
+    assertThat(writeFuture).succeedsWithin(1L, TimeUnit.SECONDS);
+    // and synchronous task waited for the lock
+    assertThat(size.get()).isEqualTo(1);
+  }
+}
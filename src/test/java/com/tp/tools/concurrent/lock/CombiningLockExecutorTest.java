@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.await;
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CombiningLockExecutorTest {
+
+  @Test
+  void shouldExecuteAllChainsExclusively() {
+    // given combining executor
+    final CombiningLockExecutor executor = CombiningLockExecutor.newInstance();
+    // and not thread safe counter
+    final long[] counter = {0L};
+    // and multiple threads
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(8);
+
+    // when each thread increments the counter multiple times
+    final List<CompletableFuture<Long>> results = IntStream.range(0, 8)
+        .mapToObj(thread -> CompletableFuture.supplyAsync(() -> {
+          long succeeded = 0L;
+          for (int i = 0; i < 10_000; i++) {
+            if (executor.execute(() -> ++counter[0]).execute().isSuccess()) {
+              succeeded++;
+            }
+          }
+          return succeeded;
+        }, executorService))
+        .collect(Collectors.toList());
+
+    // then all the increments succeeded
+    assertThat(results.stream().mapToLong(CompletableFuture::join).sum()).isEqualTo(80_000L);
+    // and none of them has been lost
+    assertThat(executor.execute(() -> counter[0]).execute().get()).isEqualTo(80_000L);
+  }
+
+  @Test
+  void shouldCompleteEachChainWithItsOwnResult() {
+    // given combining executor
+    final CombiningLockExecutor executor = CombiningLockExecutor.newInstance();
+    // and multiple threads
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+
+    // when chains returning their input or failing for odd inputs are executed concurrently
+    final List<CompletableFuture<Try<Integer>>> results = IntStream.range(0, 1_000)
+        .mapToObj(i -> CompletableFuture.supplyAsync(() -> executor.execute(() -> i)
+            .filter(value -> value % 2 == 0)
+            .map(value -> {
+              if (value % 4 == 2) {
+                throw new IllegalArgumentException(String.valueOf(value));
+              }
+              return value;
+            })
+            .execute(), executorService))
+        .collect(Collectors.toList());
+
+    // then each chain got its own result
+    for (int i = 0; i < results.size(); i++) {
+      final Try<Integer> result = results.get(i).join();
+      if (i % 2 == 1) {
+        assertThat(result.get()).isNull();
+      } else if (i % 4 == 2) {
+        assertThat(result.getCause()).isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(String.valueOf(i));
+      } else {
+        assertThat(result.get()).isEqualTo(i);
+      }
+    }
+  }
+
+  @Test
+  void shouldCombineChainsPublishedWhileLockIsHeld() {
+    // given combining executor
+    final ReentrantLock lock = new ReentrantLock();
+    final CombiningLockExecutor executor = new CombiningLockExecutor(lock);
+    // and chain holding the lock for 100 ms
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+    final CompletableFuture<Try<String>> holder = CompletableFuture.supplyAsync(
+        () -> executor.execute(() -> sleep(100L)).supply(() -> "holder").execute(),
+        executorService);
+    sleep(20L);
+
+    // when chains are published while the lock is held
+    final List<CompletableFuture<Try<String>>> results = IntStream.range(0, 3)
+        .mapToObj(i -> CompletableFuture.supplyAsync(
+            () -> executor.execute(() -> Thread.currentThread().getName()).execute(),
+            executorService))
+        .collect(Collectors.toList());
+
+    // then all chains succeeded
+    assertThat(holder.join().get()).isEqualTo("holder");
+    assertThat(results).allSatisfy(result -> assertThat(result.join().isSuccess()).isTrue());
+    // and lock is free
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldNotWaitForCombinerInNonBlockingThread() {
+    // given combining executor
+    final ReentrantLock lock = new ReentrantLock();
+    final CombiningLockExecutor executor = new CombiningLockExecutor(lock);
+    // and non-blocking executors with fail and offload policies
+    final ExecutorService blockingExecutor = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("blocking", Thread.NORM_PRIORITY, false));
+    final ExecutorService failing = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("failing", Thread.NORM_PRIORITY,
+            NonBlockingThreadPolicy.fail()));
+    final ExecutorService offloading = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("offloading", Thread.NORM_PRIORITY,
+            NonBlockingThreadPolicy.offload(blockingExecutor)));
+    // and chain returning thread name
+    final LockExecution<String> execution = executor.execute(
+        () -> Thread.currentThread().getName());
+    // and chain holding the lock
+    final CountDownLatch latch = new CountDownLatch(1);
+    final CompletableFuture<Try<Boolean>> holder = CompletableFuture.supplyAsync(
+        () -> executor.execute(() -> await(latch)).execute(),
+        TestUtils.fixedThreadPoolExecutor(1));
+    sleep(50L);
+
+    // when executed by non-blocking threads while the lock is held
+    final Try<String> failed = CompletableFuture.supplyAsync(execution::execute, failing).join();
+    final CompletableFuture<String> offloaded = execution.executeAsync(offloading);
+    sleep(50L);
+    // and lock is released
+    latch.countDown();
+    holder.join();
+    // and executed by non-blocking thread once the lock is free
+    final Try<String> free = CompletableFuture.supplyAsync(execution::execute, failing).join();
+
+    // then execution failed without waiting for the combiner
+    assertThat(failed.getCause()).isInstanceOf(NonBlockingThreadException.class);
+    // and asynchronous execution has been offloaded to blocking executor
+    assertThat(offloaded).succeedsWithin(1L, TimeUnit.SECONDS);
+    assertThat(offloaded.join()).startsWith("blocking-");
+    // and execution with free lock has been executed by non-blocking thread
+    assertThat(free.get()).startsWith("failing-");
+  }
+
+  @Test
+  void shouldExecuteCompiledAndTimeoutChains() {
+    // given combining executor
+    final CombiningLockExecutor executor = CombiningLockExecutor.newInstance();
+    // and compiled chain
+    final CompiledLockExecution<Integer, Integer> doubled = executor.<Integer, Integer>compile(
+        value -> value * 2);
+    // and chain with timeout
+    final LockExecution<Integer> timeout = executor.execute(() -> 3)
+        .withLockTimeout()
+        .millis(100L);
+
+    // when executed
+    final Try<Integer> doubledResult = doubled.execute(21);
+    final Try<Integer> timeoutResult = timeout.execute();
+
+    // then
+    assertThat(doubledResult.get()).isEqualTo(42);
+    assertThat(timeoutResult.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldRecordMetricsWhenInstrumented() {
+    // given instrumented combining executor
+    final LockMetrics metrics = LockMetrics.newInstance();
+    final CombiningLockExecutor executor = CombiningLockExecutor.newInstance()
+        .instrumented(metrics);
+
+    // when chains executed
+    executor.execute(() -> 1).execute();
+    executor.execute(() -> {
+      throw new IllegalStateException("failure");
+    }).execute();
+
+    // then metrics recorded
+    final LockMetricsSnapshot snapshot = metrics.snapshot();
+    assertThat(snapshot.holdTime().count()).isEqualTo(2L);
+    assertThat(snapshot.waitTime().count()).isEqualTo(2L);
+    assertThat(snapshot.failures()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CompiledLockExecutionTest {
+
+  @Test
+  void shouldExecuteCompiledChainWithGivenInputManyTimes() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and list
+    final List<String> list = new ArrayList<>();
+    // and compiled execution adding input to the list and returning list size
+    final CompiledLockExecution<String, Integer> addElement = LockExecution.<Boolean>withLock(lock)
+        .<String>compile(list::add)
+        .map(ignore -> lock.isHeldByCurrentThread())
+        .filter(locked -> locked)
+        .supply(list::size);
+
+    // when executed with different inputs
+    final Try<Integer> first = addElement.execute("A1");
+    final Try<Integer> second = addElement.execute("A2");
+    final Try<Integer> third = addElement.execute("A3");
+
+    // then each execution returns current list size
+    assertThat(first.get()).isEqualTo(1);
+    assertThat(second.get()).isEqualTo(2);
+    assertThat(third.get()).isEqualTo(3);
+    // and list contains all the inputs
+    assertThat(list).containsExactly("A1", "A2", "A3");
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldSkipLaterStepsWhenFilterNotPassed() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counters of executed steps
+    final AtomicInteger firstStepCount = new AtomicInteger();
+    final AtomicInteger lastStepCount = new AtomicInteger();
+    // and compiled execution with filter
+    final CompiledLockExecution<Integer, Integer> execution = LockExecution.<Integer>withLock(lock)
+        .compile((Integer input) -> {
+          firstStepCount.incrementAndGet();
+          return input;
+        })
+        .filter(input -> input > 0)
+        .map(input -> {
+          lastStepCount.incrementAndGet();
+          return input * 2;
+        });
+
+    // when executed with input not passing the filter
+    final Try<Integer> filtered = execution.execute(-1);
+    // and executed with input passing the filter
+    final Try<Integer> passed = execution.execute(2);
+
+    // then filtered execution succeeded with null result
+    assertThat(filtered.isSuccess()).isTrue();
+    assertThat(filtered.get()).isNull();
+    // and passed execution returned mapped result
+    assertThat(passed.get()).isEqualTo(4);
+    // and first step was executed once per execution
+    assertThat(firstStepCount.get()).isEqualTo(2);
+    // and last step was executed only for passed execution
+    assertThat(lastStepCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReleaseLockWhenStepFails() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and compiled execution failing in the last step
+    final CompiledLockExecution<Void, Integer> execution = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .map(ignore -> {
+          throw new IllegalStateException();
+        })
+        .map(ignore -> 2)
+        .compile();
+
+    // when executed
+    final Try<Integer> result = execution.execute();
+
+    // then execution failed
+    assertThat(result.isFailure()).isTrue();
+    assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldKeepLockTimeoutWhenCompiled() {
+    // given lock
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and task holding write lock for 500 ms
+    final LockExecution<Void> lockingTask = LockExecution.<Void>withLock(lock.writeLock())
+        .execute(() -> sleep(500L));
+    // and compiled task with 100 ms lock timeout
+    final CompiledLockExecution<Void, Integer> awaitingTask = LockExecution.<Integer>withLock(
+        lock.readLock())
+        .execute(() -> 1)
+        .withLockTimeout()
+        .millis(100L)
+        .compile();
+
+    // when run locking task future
+    final CompletableFuture<Try<Void>> lockingFuture = CompletableFuture
+        .supplyAsync(lockingTask::execute, executorService);
+    // and 50 ms later execute awaiting task
+    sleep(50L);
+    final Try<Integer> result = awaitingTask.execute();
+
+    // then awaiting task failed
+    assertThat(result.isFailure()).isTrue();
+    // and locking task succeeded
+    assertThat(lockingFuture.join().isSuccess()).isTrue();
+  }
+
+  @Test
+  void shouldNotExecuteCompiledNone() {
+    // given compiled none execution
+    final CompiledLockExecution<Void, Integer> execution = LockExecution.<Integer>none()
+        .map(ignore -> 1)
+        .compile();
+
+    // when executed
+    final Try<Integer> result = execution.execute();
+
+    // then execution succeeded with null result
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.get()).isNull();
+  }
+
+  @Test
+  void shouldPassInputToEveryStepOfTemplate() {
+    // given read write lock
+    final ReentrantReadWriteLock reentrantLock = new ReentrantReadWriteLock();
+    final ReadWriteLock lock = new ReadWriteLock(reentrantLock);
+    // and store with price of item A1
+    final Map<String, Integer> prices = new HashMap<>();
+    prices.put("A1", 10);
+    // and template updating price of an existing item by the input
+    final CompiledLockExecution<Update, Integer> updateIfExists = lock
+        .compileWrite((Update update) -> Optional.ofNullable(prices.get(update.item)))
+        .filter(Optional::isPresent)
+        .map((update, price) -> price.get() + update.change)
+        .filter((update, price) -> price >= 0 && reentrantLock.isWriteLockedByCurrentThread())
+        .map((update, price) -> {
+          prices.put(update.item, price);
+          return price;
+        });
+
+    // when executed with different inputs
+    final Try<Integer> increased = updateIfExists.execute(new Update("A1", 5));
+    final Try<Integer> decreasedBelowZero = updateIfExists.execute(new Update("A1", -20));
+    final Try<Integer> missing = updateIfExists.execute(new Update("A2", 5));
+
+    // then only valid update of an existing item has been stored
+    assertThat(increased.get()).isEqualTo(15);
+    assertThat(decreasedBelowZero.get()).isNull();
+    assertThat(missing.get()).isNull();
+    assertThat(prices).containsOnlyKeys("A1").containsEntry("A1", 15);
+  }
+
+  @Test
+  void shouldSupplyFromInput() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and list
+    final List<String> list = new ArrayList<>();
+    // and template clearing the list and adding the upper case input
+    final CompiledLockExecution<String, Boolean> replace = LockExecution.<Void>withLock(lock)
+        .<String>compile(ignore -> {
+          list.clear();
+          return null;
+        })
+        .supply(String::toUpperCase)
+        .flatMap((input, upperCase) -> LockExecution.<Boolean>withLock(lock)
+            .execute(() -> list.add(upperCase) && list.add(input)));
+
+    // when executed
+    final Try<Boolean> result = replace.execute("a1");
+
+    // then both input and supplied value have been added
+    assertThat(result.get()).isTrue();
+    assertThat(list).containsExactly("A1", "a1");
+  }
+
+  @Test
+  void shouldExecuteBatchWithinSingleAcquisition() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of lock acquisitions
+    final AtomicInteger acquisitions = new AtomicInteger();
+    final AcquisitionStrategy counting = acquired -> {
+      acquisitions.incrementAndGet();
+      acquired.lock();
+      return true;
+    };
+    // and template parsing the input, failing for non-numbers and filtering negative numbers
+    final CompiledLockExecution<String, Integer> parse = LockExecution
+        .<Integer>withLock(lock, counting)
+        .<String>compile(Integer::parseInt)
+        .filter(number -> number >= 0)
+        .filter((input, number) -> lock.isHeldByCurrentThread());
+
+    // when executed for a batch of inputs
+    final BatchResult<Integer> result = parse.executeAll(Arrays.asList("1", "x", "-3", "4", "y"));
+
+    // then lock has been acquired once
+    assertThat(acquisitions.get()).isEqualTo(1);
+    // and results are indexed as the inputs
+    assertThat(result.size()).isEqualTo(5);
+    assertThat(result.isSuccess()).isFalse();
+    assertThat(result.results()).containsExactly(1, null, null, 4, null);
+    assertThat(result.result(2).isSuccess()).isTrue();
+    assertThat(result.result(2).get()).isNull();
+    // and failures are indexed as the failed inputs
+    assertThat(result.failures()).containsOnlyKeys(1, 4);
+    assertThat(result.failures().get(1)).isInstanceOf(NumberFormatException.class);
+    assertThat(result.result(4).getCause()).isInstanceOf(NumberFormatException.class);
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldAcquireLockOncePerChunk() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of lock acquisitions
+    final AtomicInteger acquisitions = new AtomicInteger();
+    final AcquisitionStrategy counting = acquired -> {
+      acquisitions.incrementAndGet();
+      acquired.lock();
+      return true;
+    };
+    // and template doubling the input
+    final CompiledLockExecution<Integer, Integer> doubled = LockExecution
+        .<Integer>withLock(lock, counting)
+        .compile((Integer input) -> input * 2);
+    // and 25 inputs
+    final List<Integer> inputs = IntStream.range(0, 25).boxed().collect(Collectors.toList());
+
+    // when executed in chunks of 10 inputs
+    final BatchResult<Integer> result = doubled.executeAll(inputs, 10);
+
+    // then lock has been acquired once per chunk
+    assertThat(acquisitions.get()).isEqualTo(3);
+    // and all the inputs have been processed
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.results())
+        .isEqualTo(inputs.stream().map(input -> input * 2).collect(Collectors.toList()));
+  }
+
+  @Test
+  void shouldFailWholeChunkWhenLockNotAcquired() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and lock held by another thread for 300 ms
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    final CompletableFuture<Try<Void>> lockingFuture = CompletableFuture.supplyAsync(
+        LockExecution.<Void>withLock(lock).execute(() -> sleep(300L))::execute, executorService);
+    sleep(50L);
+    // and template acquiring the lock with 50 ms timeout
+    final CompiledLockExecution<Integer, Integer> doubled = LockExecution
+        .<Integer>withLock(lock, acquired -> acquired.tryLock(50L, TimeUnit.MILLISECONDS))
+        .compile((Integer input) -> input * 2);
+
+    // when executed for a batch of inputs
+    final BatchResult<Integer> result = doubled.executeAll(Arrays.asList(1, 2, 3), 2);
+
+    // then executions of all the inputs failed with lock timeout
+    assertThat(result.size()).isEqualTo(3);
+    assertThat(result.failures()).containsOnlyKeys(0, 1, 2);
+    assertThat(result.failures().values()).allMatch(LockTimeoutException.class::isInstance);
+    // and locking task succeeded
+    assertThat(lockingFuture.join().isSuccess()).isTrue();
+  }
+
+  private static final class Update {
+
+    private final String item;
+    private final int change;
+
+    private Update(final String item, final int change) {
+      this.item = item;
+      this.change = change;
+    }
+  }
+}
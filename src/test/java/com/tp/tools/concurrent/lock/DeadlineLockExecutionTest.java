@@ -0,0 +1,245 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class DeadlineLockExecutionTest {
+
+  @Test
+  void shouldAcquireNestedLock() {
+    // given outer and inner locks
+    final ReentrantLock outer = new ReentrantLock();
+    final ReentrantLock inner = new ReentrantLock();
+
+    // when chain flat mapped to the execution with inner lock is executed with deadline
+    final Try<Boolean> result = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Boolean>withLock(inner)
+            .execute(() -> outer.isHeldByCurrentThread() && inner.isHeldByCurrentThread()))
+        .withDeadline(Duration.ofSeconds(1L))
+        .execute();
+
+    // then both locks have been held by the nested execution
+    assertThat(result.get()).isTrue();
+    // and released afterwards
+    assertThat(outer.isLocked()).isFalse();
+    assertThat(inner.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldFailWhenNestedLockIsNotAcquiredBeforeDeadline() {
+    // given outer lock
+    final ReentrantLock outer = new ReentrantLock();
+    // and inner lock held for 300 ms by the other thread
+    final ReentrantLock inner = new ReentrantLock();
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    CompletableFuture.runAsync(() -> LockExecution.withLock(inner)
+        .execute(() -> sleep(300L))
+        .execute(), executorService);
+    sleep(50L);
+    // and chain with nested execution
+    final int[] innerExecutions = {0};
+    final LockExecution<Integer> execution = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Integer>withLock(inner)
+            .execute(() -> ++innerExecutions[0]));
+
+    // when executed with deadline
+    final long start = System.nanoTime();
+    final Try<Integer> result = execution
+        .withDeadline(Instant.now().plusMillis(100L))
+        .execute();
+    final long elapsed = System.nanoTime() - start;
+
+    // then execution timed out
+    assertThat(LockTimeoutException.isLockTimeout(result)).isTrue();
+    assertThat(innerExecutions[0]).isZero();
+    assertThat(elapsed).isLessThan(TimeUnit.MILLISECONDS.toNanos(250L));
+    // and outer lock has been released
+    assertThat(outer.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldShareBudgetBetweenAllLocks() {
+    // given outer lock held for 100 ms by the other thread
+    final ReentrantLock outer = new ReentrantLock();
+    final ReentrantLock inner = new ReentrantLock();
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    CompletableFuture.runAsync(() -> LockExecution.withLock(outer)
+        .execute(() -> sleep(100L))
+        .execute(), executorService);
+    // and inner lock held for 250 ms by the other thread
+    CompletableFuture.runAsync(() -> LockExecution.withLock(inner)
+        .execute(() -> sleep(250L))
+        .execute(), executorService);
+    sleep(20L);
+
+    // when executed with 200 ms budget, which is enough to acquire each lock separately
+    final Try<Integer> result = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Integer>withLock(inner).execute(() -> value + 1))
+        .withDeadline(Duration.ofMillis(200L))
+        .execute();
+
+    // then execution timed out, as the budget is shared
+    assertThat(LockTimeoutException.isLockTimeout(result)).isTrue();
+  }
+
+  @Test
+  void shouldNotDeadlockWhenNestedLocksAreAcquiredInOppositeOrder() {
+    // given two locks
+    final ReentrantLock first = new ReentrantLock();
+    final ReentrantLock second = new ReentrantLock();
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+
+    // when chains nesting the locks in the opposite order are executed concurrently
+    final CompletableFuture<Try<Integer>> firstResult = CompletableFuture.supplyAsync(
+        () -> nested(first, second).withDeadline(Duration.ofMillis(200L)).execute(),
+        executorService);
+    final CompletableFuture<Try<Integer>> secondResult = CompletableFuture.supplyAsync(
+        () -> nested(second, first).withDeadline(Duration.ofMillis(200L)).execute(),
+        executorService);
+
+    // then both chains completed
+    assertThat(firstResult).succeedsWithin(1L, TimeUnit.SECONDS);
+    assertThat(secondResult).succeedsWithin(1L, TimeUnit.SECONDS);
+    // and at least one of them timed out
+    assertThat(LockTimeoutException.isLockTimeout(firstResult.join())
+        || LockTimeoutException.isLockTimeout(secondResult.join())).isTrue();
+    // and all the locks have been released
+    assertThat(first.isLocked()).isFalse();
+    assertThat(second.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldStartBudgetWithEachCompiledExecution() {
+    // given compiled chain with 100 ms budget
+    final ReentrantLock lock = new ReentrantLock();
+    final CompiledLockExecution<Void, Integer> execution = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .withDeadline(Duration.ofMillis(100L))
+        .compile();
+
+    // when executed after the budget would have been exceeded
+    sleep(150L);
+    final Try<Integer> result = execution.execute();
+
+    // then execution succeeded
+    assertThat(result.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldAcquireNestedLockOfChainWithDeadline() {
+    // given outer and inner locks
+    final ReentrantLock outer = new ReentrantLock();
+    final ReentrantLock inner = new ReentrantLock();
+
+    // when chain flat mapped to the execution with deadline is executed with deadline
+    final Try<Boolean> result = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Boolean>withLock(inner)
+            .execute(() -> outer.isHeldByCurrentThread() && inner.isHeldByCurrentThread())
+            .withDeadline(Duration.ofSeconds(1L)))
+        .withDeadline(Duration.ofSeconds(1L))
+        .execute();
+
+    // then both locks have been held by the nested execution
+    assertThat(result.get()).isTrue();
+    // and released afterwards
+    assertThat(outer.isLocked()).isFalse();
+    assertThat(inner.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldAcquireNestedLockWithinEarlierDeadline() {
+    // given outer lock
+    final ReentrantLock outer = new ReentrantLock();
+    // and inner lock held for 300 ms by the other thread
+    final ReentrantLock inner = new ReentrantLock();
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    CompletableFuture.runAsync(() -> LockExecution.withLock(inner)
+        .execute(() -> sleep(300L))
+        .execute(), executorService);
+    sleep(50L);
+
+    // when chain with 1 s deadline flat mapped to the executions with 50 ms deadline and timeout
+    final long start = System.nanoTime();
+    final Try<Integer> withDeadline = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Integer>withLock(inner)
+            .execute(() -> value + 1)
+            .withDeadline(Duration.ofMillis(50L)))
+        .withDeadline(Duration.ofSeconds(1L))
+        .execute();
+    final Try<Integer> withTimeout = LockExecution.<Integer>withLock(outer)
+        .execute(() -> 1)
+        .flatMap(value -> LockExecution.<Integer>withLock(inner)
+            .execute(() -> value + 1)
+            .withLockTimeout()
+            .millis(50L))
+        .withDeadline(Duration.ofSeconds(1L))
+        .execute();
+    final long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+    // then both executions failed with lock timeout
+    assertThat(withDeadline.getCause()).isInstanceOf(LockTimeoutException.class);
+    assertThat(withTimeout.getCause()).isInstanceOf(LockTimeoutException.class);
+    // and have not waited for the outer deadline
+    assertThat(elapsedMillis).isLessThan(200L);
+    // and outer lock is released
+    assertThat(outer.isLocked()).isFalse();
+    executorService.shutdown();
+  }
+
+  @Test
+  void shouldExecuteNestedSerializedExecution() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and serialized execution
+    final SerializedExecution serialized = SerializedExecution.newInstance();
+
+    // when chain flat mapped to the serialized execution is executed with deadline
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .flatMap(value -> serialized.<Integer>execute(() -> value + 1))
+        .withDeadline(Duration.ofSeconds(1L))
+        .execute();
+
+    // then execution succeeded
+    assertThat(result.get()).isEqualTo(2);
+  }
+
+  private static LockExecution<Integer> nested(final ReentrantLock outer,
+      final ReentrantLock inner) {
+    return LockExecution.<Integer>withLock(outer)
+        .execute(() -> {
+          sleep(50L);
+          return 1;
+        })
+        .flatMap(value -> LockExecution.<Integer>withLock(inner).execute(() -> value + 1));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FastLockTest {
+
+  @Test
+  void shouldNotAcquireLockHeldByAnotherExecution() {
+    // given lock
+    final FastLock lock = new FastLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+
+    // when lock is held by an execution
+    final Try<Boolean> result = LockExecution.<Boolean>withLock(lock)
+        .execute(() -> CompletableFuture.supplyAsync(lock::tryLock, executorService).join())
+        .execute();
+
+    // then lock could not be acquired by another thread
+    assertThat(result.get()).isFalse();
+    // and lock has been released after the execution
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldExecuteChainsExclusively() {
+    // given lock
+    final FastLock lock = new FastLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+    // and counter
+    final long[] counter = new long[1];
+
+    // when counter incremented 4 000 times concurrently
+    final CompletableFuture<?>[] increments = IntStream.range(0, 4_000)
+        .mapToObj(i -> CompletableFuture.runAsync(
+            () -> LockExecution.<Void>withLock(lock).execute(() -> counter[0]++).execute(),
+            executorService))
+        .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(increments).join();
+
+    // then no increment has been lost
+    assertThat(counter[0]).isEqualTo(4_000L);
+  }
+
+  @Test
+  void shouldFailWhenUnlockedNotHeldLock() {
+    // given lock
+    final FastLock lock = new FastLock();
+
+    // when unlocked, then exception is thrown
+    assertThatThrownBy(lock::unlock).isInstanceOf(IllegalMonitorStateException.class);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+  @Test
+  void shouldMapValuesToBucketsWithBoundedError() {
+    // given values from all ranges
+    for (int bit = 0; bit < 63; bit++) {
+      for (final long value : new long[]{1L << bit, (1L << bit) + 7L, (1L << (bit + 1)) - 1L}) {
+        // when mapped to a bucket
+        final int index = Histogram.index(value);
+
+        // then bucket contains the value
+        assertThat(index).isBetween(0, Histogram.BUCKETS - 1);
+        assertThat(Histogram.highestValue(index)).isGreaterThanOrEqualTo(value);
+        assertThat(index == 0 || Histogram.highestValue(index - 1) < value).isTrue();
+        // and bucket is not wider than ~3% of the value
+        assertThat(Histogram.highestValue(index) - value)
+            .isLessThanOrEqualTo(value / Histogram.SUB_BUCKETS);
+      }
+    }
+  }
+
+  @Test
+  void shouldComputePercentiles() {
+    // given histogram with values 1..1000
+    final Histogram histogram = new Histogram();
+    for (long i = 1; i <= 1_000; i++) {
+      histogram.record(i);
+    }
+
+    // when snapshot taken
+    final HistogramSnapshot snapshot = histogram.snapshot();
+
+    // then statistics are computed
+    assertThat(snapshot.count()).isEqualTo(1_000L);
+    assertThat(snapshot.max()).isEqualTo(1_000L);
+    assertThat(snapshot.mean()).isEqualTo(500.5);
+    assertThat(snapshot.valueAtPercentile(50.0)).isBetween(500L, 515L);
+    assertThat(snapshot.valueAtPercentile(99.0)).isBetween(990L, 1_000L);
+    assertThat(snapshot.valueAtPercentile(100.0)).isEqualTo(1_000L);
+    assertThat(snapshot.valueAtPercentile(0.0)).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldHandleEmptyHistogramAndInvalidPercentiles() {
+    // given empty histogram snapshot
+    final HistogramSnapshot snapshot = new Histogram().snapshot();
+
+    // then
+    assertThat(snapshot.count()).isZero();
+    assertThat(snapshot.mean()).isZero();
+    assertThat(snapshot.valueAtPercentile(99.0)).isZero();
+    assertThatThrownBy(() -> snapshot.valueAtPercentile(101.0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class LockExecutionProcessorTest {
+
+  @Test
+  void shouldPublishResultsOnlyAsRequested() throws InterruptedException {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and processor doubling elements under the lock
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor
+        .newInstance(LockExecution.<Integer>withLock(lock)
+            .compile((Integer element) -> element * 2), 4, executorService);
+    // and subscriber requesting 2 results
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    subscriber.request(2L);
+    // and publisher of 10 elements
+    final SubmissionPublisher<Integer> publisher = new SubmissionPublisher<>(executorService, 16);
+    publisher.subscribe(processor);
+
+    // when elements published
+    for (int i = 1; i <= 10; i++) {
+      publisher.submit(i);
+    }
+    publisher.close();
+    sleep(200L);
+
+    // then only 2 results have been published
+    assertThat(subscriber.results).containsExactly(2, 4);
+    assertThat(subscriber.completed.getCount()).isEqualTo(1L);
+
+    // when requested remaining results
+    subscriber.request(Long.MAX_VALUE);
+
+    // then all the results have been published in order
+    assertThat(subscriber.completed.await(1L, TimeUnit.SECONDS)).isTrue();
+    assertThat(subscriber.results).containsExactly(2, 4, 6, 8, 10, 12, 14, 16, 18, 20);
+    executorService.shutdown();
+  }
+
+  @Test
+  void shouldProcessBufferedElementsInBatches() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of lock acquisitions
+    final AtomicInteger acquisitions = new AtomicInteger();
+    final AcquisitionStrategy counting = acquired -> {
+      acquisitions.incrementAndGet();
+      acquired.lock();
+      return true;
+    };
+    // and processor processing elements in batches of 8 by the calling thread
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newBatching(
+        LockExecution.<Integer>withLock(lock, counting).compile((Integer element) -> element),
+        8, Duration.ofSeconds(1L), 32, Runnable::run);
+    // and subscriber
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    // and upstream subscription
+    final TestSubscription upstream = new TestSubscription();
+    processor.onSubscribe(upstream);
+
+    // when 20 elements received before any result has been requested
+    for (int i = 0; i < 20; i++) {
+      processor.onNext(i);
+    }
+    processor.onComplete();
+    // and all the results requested
+    subscriber.request(Long.MAX_VALUE);
+
+    // then all the results have been published
+    assertThat(subscriber.results).hasSize(20);
+    assertThat(subscriber.completed.getCount()).isEqualTo(0L);
+    // and lock has been acquired once per batch
+    assertThat(acquisitions.get()).isEqualTo(3);
+    // and upstream has been requested the buffer size and then the processed elements
+    assertThat(upstream.requested.get()).isEqualTo(32L + 20L);
+  }
+
+  @Test
+  void shouldReleaseLockWhenBatchHeldTooLong() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of lock acquisitions
+    final AtomicInteger acquisitions = new AtomicInteger();
+    final AcquisitionStrategy counting = acquired -> {
+      acquisitions.incrementAndGet();
+      acquired.lock();
+      return true;
+    };
+    // and processor holding the lock for 100 ms at most, processing an element for 40 ms
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newBatching(
+        LockExecution.<Integer>withLock(lock, counting).compile((Integer element) -> {
+          sleep(40L);
+          return element;
+        }), 10, Duration.ofMillis(100L), 10, Runnable::run);
+    // and subscriber
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    processor.onSubscribe(new TestSubscription());
+
+    // when 6 elements received before any result has been requested
+    for (int i = 0; i < 6; i++) {
+      processor.onNext(i);
+    }
+    // and all the results requested
+    subscriber.request(Long.MAX_VALUE);
+
+    // then all the results have been published in order
+    assertThat(subscriber.results).containsExactly(0, 1, 2, 3, 4, 5);
+    // and lock has been released between the batches
+    assertThat(acquisitions.get()).isGreaterThan(1);
+  }
+
+  @Test
+  void shouldSkipFilteredResults() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and processor passing even elements only
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newInstance(
+        LockExecution.<Integer>withLock(lock)
+            .compile((Integer element) -> element)
+            .filter(element -> element % 2 == 0), 8, Runnable::run);
+    // and subscriber requesting 2 results
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    processor.onSubscribe(new TestSubscription());
+    subscriber.request(2L);
+
+    // when 6 elements received
+    for (int i = 1; i <= 6; i++) {
+      processor.onNext(i);
+    }
+
+    // then filtered elements have not consumed the requested results
+    assertThat(subscriber.results).containsExactly(2, 4);
+  }
+
+  @Test
+  void shouldCancelUpstreamWhenExecutionFails() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and processor failing for negative elements
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newInstance(
+        LockExecution.<Integer>withLock(lock).compile((Integer element) -> {
+          if (element < 0) {
+            throw new IllegalArgumentException("Negative element");
+          }
+          return element;
+        }), 8, Runnable::run);
+    // and subscriber
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    final TestSubscription upstream = new TestSubscription();
+    processor.onSubscribe(upstream);
+    subscriber.request(Long.MAX_VALUE);
+
+    // when elements received
+    processor.onNext(1);
+    processor.onNext(-1);
+    processor.onNext(2);
+
+    // then results before the failure have been published
+    assertThat(subscriber.results).containsExactly(1);
+    // and subscriber failed
+    assertThat(subscriber.failure.get()).isInstanceOf(IllegalArgumentException.class);
+    // and upstream has been cancelled
+    assertThat(upstream.cancelled.get()).isTrue();
+    // and lock is released
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldPropagateUpstreamCompletionAfterResults() {
+    // given processor
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newInstance(
+        LockExecution.<Integer>withLock(new ReentrantLock())
+            .compile((Integer element) -> element), 8, Runnable::run);
+    // and subscriber requesting 1 result
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    processor.onSubscribe(new TestSubscription());
+    subscriber.request(1L);
+
+    // when 2 elements received and upstream completed
+    processor.onNext(1);
+    processor.onNext(2);
+    processor.onComplete();
+
+    // then completion has not been propagated before all the results
+    assertThat(subscriber.results).containsExactly(1);
+    assertThat(subscriber.completed.getCount()).isEqualTo(1L);
+
+    // when remaining result requested
+    subscriber.request(1L);
+
+    // then completion has been propagated
+    assertThat(subscriber.results).containsExactly(1, 2);
+    assertThat(subscriber.completed.getCount()).isEqualTo(0L);
+  }
+
+  @Test
+  void shouldPropagateUpstreamFailure() {
+    // given processor
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newInstance(
+        LockExecution.<Integer>withLock(new ReentrantLock())
+            .compile((Integer element) -> element), 8, Runnable::run);
+    // and subscriber
+    final TestSubscriber<Integer> subscriber = new TestSubscriber<>();
+    processor.subscribe(subscriber);
+    processor.onSubscribe(new TestSubscription());
+    subscriber.request(Long.MAX_VALUE);
+
+    // when element received and upstream failed
+    processor.onNext(1);
+    processor.onError(new IllegalStateException("Upstream failed"));
+
+    // then result has been published
+    assertThat(subscriber.results).containsExactly(1);
+    // and subscriber failed with the upstream failure
+    assertThat(subscriber.failure.get()).isInstanceOf(IllegalStateException.class)
+        .hasMessage("Upstream failed");
+    assertThat(subscriber.completed.getCount()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldRejectSecondSubscriber() {
+    // given processor
+    final LockExecutionProcessor<Integer, Integer> processor = LockExecutionProcessor.newInstance(
+        LockExecution.<Integer>withLock(new ReentrantLock())
+            .compile((Integer element) -> element), 8, Runnable::run);
+    // and first subscriber
+    final TestSubscriber<Integer> first = new TestSubscriber<>();
+    processor.subscribe(first);
+    final TestSubscription upstream = new TestSubscription();
+    processor.onSubscribe(upstream);
+
+    // when second subscriber subscribes
+    final TestSubscriber<Integer> second = new TestSubscriber<>();
+    processor.subscribe(second);
+
+    // then second subscriber failed
+    assertThat(second.failure.get()).isInstanceOf(IllegalStateException.class);
+
+    // when second subscriber requests results and cancels its subscription
+    second.request(Long.MAX_VALUE);
+    second.subscription.cancel();
+    // and element received
+    processor.onNext(1);
+
+    // then upstream has not been cancelled
+    assertThat(upstream.cancelled.get()).isFalse();
+    // and no result has been published, as the first subscriber has not requested any
+    assertThat(first.results).isEmpty();
+    assertThat(second.results).isEmpty();
+
+    // when first subscriber requests results
+    first.request(1L);
+
+    // then result has been published to the first subscriber
+    assertThat(first.results).containsExactly(1);
+  }
+
+  private static final class TestSubscriber<T> implements Subscriber<T> {
+
+    private final List<T> results = new CopyOnWriteArrayList<>();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile Subscription subscription;
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(final T item) {
+      results.add(item);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      failure.set(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completed.countDown();
+    }
+
+    private void request(final long n) {
+      subscription.request(n);
+    }
+  }
+
+  private static final class TestSubscription implements Subscription {
+
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    @Override
+    public void request(final long n) {
+      requested.addAndGet(n);
+    }
+
+    @Override
+    public void cancel() {
+      cancelled.set(true);
+    }
+  }
+}
@@ -21,12 +21,18 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import io.vavr.control.Try;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import org.junit.jupiter.api.Test;
 
@@ -144,4 +150,255 @@ class LockExecutionTest {
     // and latch not yet finished counting down
     assertThat(latch.getCount()).isGreaterThan(0L);
   }
+
+  @Test
+  void shouldExecutePreviousStepsOnceWhenFilterPassed() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of first step executions
+    final AtomicInteger firstStepCount = new AtomicInteger();
+    // and counter of lock acquisitions
+    final AtomicInteger holdCount = new AtomicInteger();
+
+    // when execute chain with passing filter
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock)
+        .execute(firstStepCount::incrementAndGet)
+        .run(() -> holdCount.set(lock.getHoldCount()))
+        .supply(firstStepCount::get)
+        .filter(count -> count > 0)
+        .map(count -> count * 10)
+        .execute();
+
+    // then result is mapped
+    assertThat(result.get()).isEqualTo(10);
+    // and first step was executed once
+    assertThat(firstStepCount.get()).isEqualTo(1);
+    // and lock was acquired once
+    assertThat(holdCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldSkipFollowingStepsWhenFilterNotPassed() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counters of executed steps
+    final AtomicInteger firstStepCount = new AtomicInteger();
+    final AtomicInteger followingStepsCount = new AtomicInteger();
+
+    // when execute chain with not passing filter
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock)
+        .execute(firstStepCount::incrementAndGet)
+        .filter(count -> count < 0)
+        .run(followingStepsCount::incrementAndGet)
+        .flatMap(ignore -> LockExecution.<Integer>withLock(lock)
+            .execute(followingStepsCount::incrementAndGet))
+        .map(count -> count * 10)
+        .execute();
+
+    // then execution succeeded with null result
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.get()).isNull();
+    // and first step was executed once
+    assertThat(firstStepCount.get()).isEqualTo(1);
+    // and following steps were not executed
+    assertThat(followingStepsCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldSkipFollowingStepsWhenFlatMappedToNone() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and counter of following steps executions
+    final AtomicInteger followingStepsCount = new AtomicInteger();
+
+    // when execute chain flat mapped to none
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .flatMap(ignore -> LockExecution.<Integer>none())
+        .map(ignore -> followingStepsCount.incrementAndGet())
+        .execute();
+
+    // then execution succeeded with null result
+    assertThat(result.isSuccess()).isTrue();
+    assertThat(result.get()).isNull();
+    // and following steps were not executed
+    assertThat(followingStepsCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldExecuteIndependentExecutionsInParallel() {
+    // given locks
+    final ReentrantLock first = new ReentrantLock();
+    final ReentrantLock second = new ReentrantLock();
+    final ReentrantLock third = new ReentrantLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and executions, each holding its own lock for 200 ms
+    final List<LockExecution<String>> executions = Arrays.asList(
+        LockExecution.<String>withLock(first).execute(() -> held(first, "A1")),
+        LockExecution.<String>withLock(second).execute(() -> held(second, "A2")),
+        LockExecution.<String>withLock(third).execute(() -> held(third, "A3")));
+
+    // when executed in parallel
+    final long start = System.nanoTime();
+    final Try<List<String>> result = LockExecution.parallel(executions, executorService);
+    final long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+    // then results are in the executions' order
+    assertThat(result.get()).containsExactly("A1", "A2", "A3");
+    // and executions have not been executed one after another
+    assertThat(elapsedMillis).isLessThan(500L);
+    executorService.shutdown();
+  }
+
+  @Test
+  void shouldFailFastWhenParallelExecutionFails() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and single thread executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and counter of started executions
+    final AtomicInteger started = new AtomicInteger();
+    // and execution failing after 50 ms, followed by executions holding the lock for 300 ms
+    final List<LockExecution<Integer>> executions = new ArrayList<>();
+    executions.add(LockExecution.<Integer>withLock(new ReentrantLock()).execute(() -> {
+      started.incrementAndGet();
+      sleep(50L);
+      throw new IllegalStateException("failed");
+    }));
+    for (int i = 0; i < 5; i++) {
+      executions.add(LockExecution.<Integer>withLock(lock).execute(() -> {
+        sleep(300L);
+        return started.incrementAndGet();
+      }));
+    }
+
+    // when executed in parallel
+    final long start = System.nanoTime();
+    final Try<List<Integer>> result = LockExecution.parallel(executions, executorService);
+    final long elapsedMillis = (System.nanoTime() - start) / 1_000_000L;
+
+    // then execution failed with the first failure
+    assertThat(result.isFailure()).isTrue();
+    assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    // and has not waited for all the executions
+    assertThat(elapsedMillis).isLessThan(1000L);
+    // and executions not started before the failure have been skipped
+    sleep(400L);
+    assertThat(started.get()).isEqualTo(2);
+    executorService.shutdown();
+  }
+
+  @Test
+  void shouldFailParallelExecutionWhenExecutionThrows() {
+    // given executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and custom executions throwing instead of returning a failure
+    final List<LockExecution<Integer>> executions = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      executions.add(new CustomLockExecution<>(() -> {
+        throw new IllegalStateException("thrown");
+      }));
+    }
+
+    // when executed in parallel
+    final Try<List<Integer>> result = CompletableFuture
+        .supplyAsync(() -> LockExecution.parallel(executions, executorService))
+        .orTimeout(1L, TimeUnit.SECONDS)
+        .join();
+
+    // then execution failed with the thrown exception
+    assertThat(result.isFailure()).isTrue();
+    assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    executorService.shutdown();
+  }
+
+  private static String held(final ReentrantLock lock, final String value) {
+    sleep(200L);
+    return lock.isHeldByCurrentThread() ? value : null;
+  }
+
+  @Test
+  void shouldExecuteCustomExecutionAsynchronously() {
+    // given executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and custom executions implementing only the chain methods
+    final LockExecution<Integer> succeeding = new CustomLockExecution<>(() -> Try.success(1));
+    final LockExecution<Integer> failing = new CustomLockExecution<>(
+        () -> Try.failure(new IllegalStateException("failed")));
+
+    // when executed asynchronously
+    final CompletableFuture<Integer> succeeded = succeeding.executeAsync(executorService);
+    final CompletableFuture<Integer> failed = failing.executeAsync(executorService);
+
+    // then futures completed with the execution results
+    assertThat(succeeded.join()).isEqualTo(1);
+    assertThat(failed.handle((value, failure) -> failure).join())
+        .isInstanceOf(IllegalStateException.class);
+    executorService.shutdown();
+  }
+
+  @Test
+  void shouldCompileCustomExecutionCallingItsExecute() {
+    // given custom executions implementing only the chain methods
+    final LockExecution<Integer> succeeding = new CustomLockExecution<>(() -> Try.success(1));
+    final LockExecution<Integer> failing = new CustomLockExecution<>(
+        () -> Try.failure(new IllegalStateException("failed")));
+
+    // when compiled executions are executed
+    final Try<Integer> succeeded = succeeding.compile().map(value -> value + 1).execute();
+    final Try<Integer> failed = failing.compile().execute();
+    // and compiled execution with lock timeout is executed
+    final Try<Integer> timeout = succeeding.withLockTimeout().millis(100L).compile().execute();
+
+    // then compiled executions completed with the execution results
+    assertThat(succeeded.get()).isEqualTo(2);
+    assertThat(failed.getCause()).isInstanceOf(IllegalStateException.class);
+    // and lock timeout is not supported
+    assertThat(timeout.getCause()).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  /**
+   * Execution implemented outside the library, using {@link LockExecution}'s default methods.
+   */
+  private static final class CustomLockExecution<T> implements LockExecution<T> {
+
+    private final Supplier<Try<T>> execution;
+
+    private CustomLockExecution(final Supplier<Try<T>> execution) {
+      this.execution = execution;
+    }
+
+    @Override
+    public <K> LockExecution<K> map(final Function<T, K> mapper) {
+      return new CustomLockExecution<>(() -> execute().map(mapper::apply));
+    }
+
+    @Override
+    public <K> LockExecution<K> flatMap(final Function<T, LockExecution<K>> mapper) {
+      return new CustomLockExecution<>(() -> execute().flatMap(value -> mapper.apply(value)
+          .execute()));
+    }
+
+    @Override
+    public LockExecution<Void> run(final Runnable runnable) {
+      return new CustomLockExecution<>(() -> execute().andThen(runnable).map(ignore -> null));
+    }
+
+    @Override
+    public <K> LockExecution<K> supply(final Supplier<K> supplier) {
+      return new CustomLockExecution<>(() -> execute().map(ignore -> supplier.get()));
+    }
+
+    @Override
+    public LockExecution<T> filter(final Predicate<T> predicate) {
+      return new CustomLockExecution<>(() -> execute()
+          .map(value -> value != null && predicate.test(value) ? value : null));
+    }
+
+    @Override
+    public Try<T> execute() {
+      return execution.get();
+    }
+  }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.tp.tools.concurrent.lock.LockExecutionThreadFactory.LockExecutionThread;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class LockExecutionThreadFactoryTest {
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  @Test
+  void shouldCreateNonBlockingDaemonThreads() {
+    // given non-blocking thread factory
+    final LockExecutionThreadFactory factory = new LockExecutionThreadFactory("test", 3, true);
+
+    // when create threads
+    final Thread first = factory.newThread(() -> {
+    });
+    final Thread second = factory.newThread(() -> {
+    });
+
+    // then threads are named with sequence number
+    assertThat(first.getName()).isEqualTo("test-1");
+    assertThat(second.getName()).isEqualTo("test-2");
+    // and threads are non-blocking daemon threads with given priority
+    assertThat(first).isInstanceOf(LockExecutionThread.class);
+    assertThat(first.isDaemon()).isTrue();
+    assertThat(first.getPriority()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldFailCreatingVirtualThreadFactoryWhenNotSupported() {
+    assumeFalse(LockExecutionThreadFactory.isVirtualSupported());
+
+    assertThatThrownBy(() -> LockExecutionThreadFactory.virtual("test"))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void shouldCreateVirtualThreads() throws InterruptedException {
+    assumeTrue(LockExecutionThreadFactory.isVirtualSupported());
+    // given virtual thread factory
+    final LockExecutionThreadFactory factory = LockExecutionThreadFactory.virtual("test");
+    // and latch
+    final CountDownLatch latch = new CountDownLatch(1);
+
+    // when create and start thread
+    final Thread thread = factory.newThread(latch::countDown);
+    thread.start();
+
+    // then thread is executed
+    assertThat(latch.await(1L, TimeUnit.SECONDS)).isTrue();
+    // and thread is a daemon thread
+    assertThat(thread.getName()).isEqualTo("test-1");
+    assertThat(thread.isDaemon()).isTrue();
+  }
+
+  @Test
+  void shouldDetectPinnedCarrierThread() throws IOException, InterruptedException {
+    assumeTrue(LockExecutionThreadFactory.isVirtualSupported());
+    // given virtual thread factory
+    final LockExecutionThreadFactory factory = LockExecutionThreadFactory.virtual("test");
+    // and monitor
+    final Object monitor = new Object();
+
+    // when park virtual thread holding the monitor
+    final List<RecordedEvent> pinnedEvents = recordPinnedEvents(() -> {
+      final Thread thread = factory.newThread(() -> {
+        synchronized (monitor) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10L));
+        }
+      });
+      thread.start();
+      join(thread);
+    });
+
+    // then pinning has been detected
+    assertThat(pinnedEvents).isNotEmpty();
+  }
+
+  @Test
+  void shouldNotPinCarrierThreadWhenExecutingContendedLockExecutions()
+      throws IOException, InterruptedException {
+    assumeTrue(LockExecutionThreadFactory.isVirtualSupported());
+    // given virtual thread factory
+    final LockExecutionThreadFactory factory = LockExecutionThreadFactory.virtual("test");
+    // and lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and async lock
+    final AsyncLock asyncLock = new AsyncLock();
+    // and counters guarded by the lock (0) and async lock (1)
+    final int[] counters = new int[2];
+
+    // when run 10 000 virtual threads executing contended lock executions
+    final List<RecordedEvent> pinnedEvents = recordPinnedEvents(() -> {
+      final List<Thread> threads = IntStream.range(0, 10_000)
+          .mapToObj(i -> factory.newThread(() -> {
+            LockExecution.<Integer>withLock(i % 2 == 0 ? lock : asyncLock)
+                .execute(() -> counters[i % 2]++)
+                .run(() -> LockSupport.parkNanos(1_000L))
+                .withLockTimeout()
+                .seconds(10L)
+                .execute();
+            LockExecution.<Integer>withLock(lock)
+                .execute(() -> counters[0]++)
+                .execute();
+          }))
+          .collect(Collectors.toList());
+      threads.forEach(Thread::start);
+      threads.forEach(LockExecutionThreadFactoryTest::join);
+    });
+
+    // then all executions were executed exclusively
+    assertThat(counters[0] + counters[1]).isEqualTo(20_000);
+    // and carrier threads were never pinned
+    assertThat(pinnedEvents).isEmpty();
+  }
+
+  private static List<RecordedEvent> recordPinnedEvents(final Runnable runnable)
+      throws IOException {
+    final Path file = Files.createTempFile("pinned", ".jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO);
+      recording.start();
+      runnable.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> PINNED_EVENT.equals(event.getEventType().getName()))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static void join(final Thread thread) {
+    try {
+      thread.join();
+    } catch (final InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class LockMetricsTest {
+
+  @Test
+  void shouldRecordHoldTimeAndFailures() {
+    // given metrics
+    final LockMetrics metrics = LockMetrics.newInstance();
+    // and instrumented lock executions
+    final ReentrantLock lock = new ReentrantLock();
+    final LockExecution<Void> sleeping = LockExecution.<Void>withLock(lock)
+        .instrumented(metrics)
+        .execute(() -> sleep(10L));
+    final LockExecution<Integer> failing = LockExecution.<Integer>withLock(lock)
+        .instrumented(metrics)
+        .execute(() -> {
+          throw new IllegalStateException("failure");
+        });
+
+    // when executed
+    sleeping.execute();
+    sleeping.execute();
+    final Try<Integer> result = failing.execute();
+
+    // then execution failed
+    assertThat(result.getCause()).isInstanceOf(IllegalStateException.class);
+    // and metrics recorded
+    final LockMetricsSnapshot snapshot = metrics.snapshot();
+    assertThat(snapshot.holdTime().count()).isEqualTo(3L);
+    assertThat(snapshot.holdTime().max()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(10L));
+    assertThat(snapshot.holdTime().valueAtPercentile(50.0))
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(9L));
+    assertThat(snapshot.waitTime().count()).isEqualTo(3L);
+    assertThat(snapshot.queueLength().max()).isZero();
+    assertThat(snapshot.failures()).isEqualTo(1L);
+    assertThat(snapshot.timeouts()).isZero();
+  }
+
+  @Test
+  void shouldRecordWaitTimeQueueLengthAndTimeouts() {
+    // given metrics
+    final LockMetrics metrics = LockMetrics.newInstance();
+    // and instrumented read write lock
+    final ReadWriteLock lock = ReadWriteLock.newInstance()
+        .instrumented(LockMetrics.newInstance(), metrics);
+    // and write lock held for 200 ms by the other thread
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    final CompletableFuture<Try<Void>> holder = CompletableFuture.supplyAsync(
+        () -> lock.write(() -> sleep(200L)).execute(), executorService);
+    sleep(50L);
+    // and the other thread waiting for the write lock
+    final CompletableFuture<Try<Integer>> waiting = CompletableFuture.supplyAsync(
+        () -> lock.write(() -> 1).execute(), executorService);
+    sleep(50L);
+
+    // when executed with timeout
+    final Try<Integer> result = lock.write(() -> 2).withLockTimeout().millis(10L).execute();
+
+    // then execution timed out
+    assertThat(result.isFailure()).isTrue();
+    // and the other executions succeeded
+    assertThat(holder.join().isSuccess()).isTrue();
+    assertThat(waiting.join().get()).isEqualTo(1);
+    // and metrics recorded
+    final LockMetricsSnapshot snapshot = metrics.snapshot();
+    assertThat(snapshot.timeouts()).isEqualTo(1L);
+    assertThat(snapshot.failures()).isZero();
+    assertThat(snapshot.holdTime().count()).isEqualTo(2L);
+    assertThat(snapshot.waitTime().count()).isEqualTo(3L);
+    assertThat(snapshot.waitTime().max()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50L));
+    assertThat(snapshot.queueLength().max()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNotRecordNotInstrumentedExecutions() {
+    // given metrics
+    final LockMetrics metrics = LockMetrics.newInstance();
+    // and instrumented and not instrumented executions
+    final ReentrantLock lock = new ReentrantLock();
+    final LockExecution<Integer> instrumented = LockExecution.<Integer>withLock(lock)
+        .instrumented(metrics)
+        .execute(() -> 1);
+    final LockExecution<Integer> notInstrumented = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 2);
+
+    // when executed
+    instrumented.compile().execute();
+    notInstrumented.execute();
+
+    // then only instrumented execution has been recorded
+    assertThat(metrics.snapshot().holdTime().count()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.junit.jupiter.api.Test;
+
+class LockWatchdogTest {
+
+  @Test
+  void shouldReportExecutionExceedingBudget() throws InterruptedException {
+    // given reports
+    final BlockingQueue<LockHoldReport> reports = new LinkedBlockingQueue<>();
+    // and watchdog checking executions every 10 ms
+    try (LockWatchdog watchdog = LockWatchdog.newInstance(Duration.ofMillis(10L), reports::add)) {
+
+      // when executed chain holding the lock for 250 ms in its second stage, with 50 ms budget
+      final Try<Integer> result = LockExecution.<Integer>withLock(new ReentrantLock())
+          .holdBudget(watchdog, Duration.ofMillis(50L))
+          .execute(() -> 1)
+          .map(value -> {
+            sleep(250L);
+            return value;
+          })
+          .map(value -> value + 1)
+          .execute();
+
+      // then execution succeeded
+      assertThat(result.get()).isEqualTo(2);
+      // and it has been reported once
+      final LockHoldReport report = reports.poll(1L, TimeUnit.SECONDS);
+      assertThat(report).isNotNull();
+      assertThat(reports).isEmpty();
+      // and report contains the holder, its stage and stack trace
+      assertThat(report.thread()).isSameAs(Thread.currentThread());
+      assertThat(report.stage()).isEqualTo(2);
+      assertThat(report.stages()).isEqualTo(3);
+      assertThat(report.holdTime()).isGreaterThan(Duration.ofMillis(50L));
+      assertThat(Arrays.stream(report.stackTrace()))
+          .anyMatch(element -> "sleep".equals(element.getMethodName()));
+      assertThat(report.interrupted()).isFalse();
+    }
+  }
+
+  @Test
+  void shouldReportStageOfExecutionStalledInNestedChain() throws InterruptedException {
+    // given reports
+    final BlockingQueue<LockHoldReport> reports = new LinkedBlockingQueue<>();
+    // and watchdog checking executions every 10 ms
+    try (LockWatchdog watchdog = LockWatchdog.newInstance(Duration.ofMillis(10L), reports::add)) {
+
+      // when executed chain holding the lock for 250 ms in its flat mapped chain, with 50 ms
+      // budget
+      final Try<Integer> result = LockExecution.<Integer>withLock(new ReentrantLock())
+          .holdBudget(watchdog, Duration.ofMillis(50L))
+          .execute(() -> 1)
+          .flatMap(value -> LockExecution.<Integer>withLock(new ReentrantLock())
+              .execute(() -> value)
+              .map(nested -> nested * 10)
+              .map(nested -> {
+                sleep(250L);
+                return nested;
+              })
+              .map(nested -> nested + 1))
+          .map(value -> value + 1)
+          .execute();
+
+      // then execution succeeded
+      assertThat(result.get()).isEqualTo(12);
+      // and report contains the flat mapping stage
+      final LockHoldReport report = reports.poll(1L, TimeUnit.SECONDS);
+      assertThat(report).isNotNull();
+      assertThat(report.stage()).isEqualTo(2);
+      assertThat(report.stages()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void shouldNotReportExecutionWithinBudget() throws InterruptedException {
+    // given reports
+    final BlockingQueue<LockHoldReport> reports = new LinkedBlockingQueue<>();
+    // and watchdog checking executions every 10 ms
+    try (LockWatchdog watchdog = LockWatchdog.newInstance(Duration.ofMillis(10L), reports::add)) {
+
+      // when executed chain holding the lock for 20 ms, with 1 s budget
+      LockExecution.<Void>withLock(new ReentrantLock())
+          .holdBudget(watchdog, Duration.ofSeconds(1L))
+          .execute(() -> sleep(20L))
+          .execute();
+
+      // then no execution has been reported
+      assertThat(reports.poll(100L, TimeUnit.MILLISECONDS)).isNull();
+    }
+  }
+
+  @Test
+  void shouldInterruptHolderExceedingBudget() throws InterruptedException {
+    // given reports
+    final BlockingQueue<LockHoldReport> reports = new LinkedBlockingQueue<>();
+    // and interrupting watchdog checking executions every 10 ms
+    try (LockWatchdog watchdog =
+        LockWatchdog.newInterrupting(Duration.ofMillis(10L), reports::add)) {
+      // and lock
+      final ReentrantLock lock = new ReentrantLock();
+
+      // when executed chain holding the lock for 10 s, with 50 ms budget
+      final Try<Void> result = LockExecution.<Void>withLock(lock)
+          .holdBudget(watchdog, Duration.ofMillis(50L))
+          .execute(() -> sleep(10_000L))
+          .execute();
+
+      // then execution failed
+      assertThat(result.getCause()).hasCauseInstanceOf(InterruptedException.class);
+      // and lock has been released
+      assertThat(lock.isLocked()).isFalse();
+      // and interrupted holder has been reported
+      final LockHoldReport report = reports.poll(1L, TimeUnit.SECONDS);
+      assertThat(report).isNotNull();
+      assertThat(report.interrupted()).isTrue();
+    }
+  }
+
+  @Test
+  void shouldReportWriteExceedingBudget() throws InterruptedException {
+    // given reports
+    final BlockingQueue<LockHoldReport> reports = new LinkedBlockingQueue<>();
+    // and watchdog checking executions every 10 ms
+    try (LockWatchdog watchdog = LockWatchdog.newInstance(Duration.ofMillis(10L), reports::add)) {
+      // and read write lock with 50 ms budget
+      final ReadWriteLock lock = new ReadWriteLock(new ReentrantReadWriteLock())
+          .holdBudget(watchdog, Duration.ofMillis(50L));
+
+      // when written for 250 ms
+      lock.write(() -> sleep(250L)).execute();
+
+      // then write has been reported
+      final LockHoldReport report = reports.poll(1L, TimeUnit.SECONDS);
+      assertThat(report).isNotNull();
+      assertThat(report.stage()).isEqualTo(1);
+    }
+  }
+}
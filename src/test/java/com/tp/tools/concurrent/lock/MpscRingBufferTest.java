@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class MpscRingBufferTest {
+
+  @Test
+  void shouldPollElementsInOfferOrderUntilEmpty() {
+    // given ring buffer
+    final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+
+    // when filled over multiple laps
+    for (int lap = 0; lap < 3; lap++) {
+      for (int i = 0; i < 4; i++) {
+        assertThat(buffer.offer(lap * 4 + i)).isTrue();
+      }
+      // then full buffer rejects elements
+      assertThat(buffer.offer(-1)).isFalse();
+      assertThat(buffer.isEmpty()).isFalse();
+      // and elements are polled in offer order
+      assertThat(buffer.peek()).isEqualTo(lap * 4);
+      for (int i = 0; i < 4; i++) {
+        assertThat(buffer.poll()).isEqualTo(lap * 4 + i);
+      }
+      assertThat(buffer.poll()).isNull();
+      assertThat(buffer.peek()).isNull();
+      assertThat(buffer.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  void shouldNotLoseElementsOfferedConcurrently() {
+    // given ring buffer
+    final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+    // and multiple producers
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+
+    // when producers offer elements concurrently
+    final List<CompletableFuture<Void>> producers = IntStream.range(0, 4)
+        .mapToObj(producer -> CompletableFuture.runAsync(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            while (!buffer.offer(producer * 10_000 + i)) {
+              Thread.onSpinWait();
+            }
+          }
+        }, executorService))
+        .collect(Collectors.toList());
+    // and single consumer polls them
+    final Set<Integer> polled = new HashSet<>();
+    while (polled.size() < 40_000) {
+      final Integer element = buffer.poll();
+      if (element != null) {
+        polled.add(element);
+      }
+    }
+
+    // then all elements have been polled
+    producers.forEach(CompletableFuture::join);
+    assertThat(polled).hasSize(40_000);
+    assertThat(buffer.isEmpty()).isTrue();
+  }
+
+  @Test
+  void shouldRejectCapacityNotBeingPowerOfTwo() {
+    assertThatThrownBy(() -> new MpscRingBuffer<>(3))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class NonBlockingThreadPolicyTest {
+
+  @Test
+  void shouldFailWhenLockIsHeldAndPolicyIsFail() {
+    // given lock held by the other thread
+    final ReentrantLock lock = givenLockHeldByOtherThread();
+    // and non-blocking executor with fail policy
+    final ExecutorService executorService = givenNonBlockingExecutor(
+        NonBlockingThreadPolicy.fail());
+    // and lock executions with and without timeout
+    final LockExecution<Integer> execution = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1);
+    final LockExecution<Integer> timeoutExecution = execution.withLockTimeout().seconds(10L);
+
+    // when executed by non-blocking thread
+    final Try<Integer> result = CompletableFuture
+        .supplyAsync(execution::execute, executorService)
+        .join();
+    final Try<Integer> timeoutResult = CompletableFuture
+        .supplyAsync(timeoutExecution::execute, executorService)
+        .join();
+
+    // then executions failed without waiting for the lock
+    assertThat(result.getCause()).isInstanceOf(NonBlockingThreadException.class);
+    assertThat(timeoutResult.getCause()).isInstanceOf(NonBlockingThreadException.class);
+  }
+
+  @Test
+  void shouldExecuteWhenLockIsFreeAndPolicyIsFail() {
+    // given free lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and non-blocking executor with fail policy
+    final ExecutorService executorService = givenNonBlockingExecutor(
+        NonBlockingThreadPolicy.fail());
+    // and lock execution
+    final LockExecution<Integer> execution = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1);
+
+    // when executed by non-blocking thread
+    final Try<Integer> result = CompletableFuture
+        .supplyAsync(execution::execute, executorService)
+        .join();
+
+    // then execution succeeded
+    assertThat(result.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldFailAfterSpinningWhenLockIsHeldAndPolicyIsSpin() {
+    // given lock held by the other thread
+    final ReentrantLock lock = givenLockHeldByOtherThread();
+    // and non-blocking executor with spin policy
+    final ExecutorService executorService = givenNonBlockingExecutor(
+        NonBlockingThreadPolicy.spin(1_000));
+    // and lock execution
+    final LockExecution<Integer> execution = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1);
+
+    // when executed by non-blocking thread
+    final Try<Integer> result = CompletableFuture
+        .supplyAsync(execution::execute, executorService)
+        .join();
+
+    // then execution failed
+    assertThat(result.getCause()).isInstanceOf(NonBlockingThreadException.class);
+  }
+
+  @Test
+  void shouldNotAffectOtherThreads() {
+    // given free lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and regular executor
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and lock held for 100 ms by the other thread
+    CompletableFuture.runAsync(() -> LockExecution.withLock(lock)
+        .execute(() -> sleep(100L))
+        .execute(), executorService);
+    sleep(20L);
+
+    // when executed by the current thread
+    final Try<Integer> result = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .execute();
+
+    // then execution waited for the lock
+    assertThat(result.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldOffloadAsyncExecutionToBlockingExecutorWhenLockIsHeld() {
+    // given lock
+    final ReentrantLock lock = new ReentrantLock();
+    // and blocking executor
+    final ExecutorService blockingExecutor = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("blocking", Thread.NORM_PRIORITY, false));
+    // and non-blocking executor with offload policy
+    final ExecutorService executorService = givenNonBlockingExecutor(
+        NonBlockingThreadPolicy.offload(blockingExecutor));
+    // and lock execution returning thread name
+    final LockExecution<String> execution = LockExecution.<String>withLock(lock)
+        .execute(() -> Thread.currentThread().getName());
+
+    // when lock is held for 200 ms by the other thread
+    final CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+      lock.lock();
+      try {
+        sleep(200L);
+      } finally {
+        lock.unlock();
+      }
+    });
+    sleep(50L);
+    // and executed asynchronously using non-blocking executor
+    final CompletableFuture<String> result = execution.executeAsync(executorService);
+    // and executed asynchronously using non-blocking executor once the lock is free
+    holder.join();
+    final CompletableFuture<String> freeLockResult = execution.executeAsync(executorService);
+
+    // then execution has been offloaded to blocking executor
+    assertThat(result).succeedsWithin(1L, TimeUnit.SECONDS);
+    assertThat(result.join()).startsWith("blocking-");
+    // and execution with free lock has been executed by non-blocking thread
+    assertThat(freeLockResult).succeedsWithin(1L, TimeUnit.SECONDS);
+    assertThat(freeLockResult.join()).startsWith("non-blocking-");
+  }
+
+  private static ExecutorService givenNonBlockingExecutor(final NonBlockingThreadPolicy policy) {
+    return Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("non-blocking", Thread.NORM_PRIORITY, policy));
+  }
+
+  private static ReentrantLock givenLockHeldByOtherThread() {
+    final ReentrantLock lock = new ReentrantLock();
+    final Thread holder = new Thread(lock::lock);
+    holder.start();
+    try {
+      holder.join();
+    } catch (final InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    return lock;
+  }
+}
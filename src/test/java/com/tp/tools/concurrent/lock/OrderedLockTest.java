@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.junit.jupiter.api.Test;
+
+class OrderedLockTest {
+
+  @Test
+  void shouldAcquireLocksInTheSameOrderRegardlessOfGivenOrder() {
+    // given locks recording acquisitions
+    final List<RecordingLock> acquisitions = new ArrayList<>();
+    final RecordingLock first = new RecordingLock(acquisitions);
+    final RecordingLock second = new RecordingLock(acquisitions);
+    final RecordingLock third = new RecordingLock(acquisitions);
+
+    // when locks are acquired in different orders
+    final OrderedLock lock = OrderedLock.ranked(first, second, third);
+    lock.lock();
+    lock.unlock();
+    final List<RecordingLock> firstOrder = new ArrayList<>(acquisitions);
+    acquisitions.clear();
+    final OrderedLock reversed = OrderedLock.ranked(third, second, first, second);
+    reversed.lock();
+    final int holdCount = second.getHoldCount();
+    reversed.unlock();
+
+    // then locks have been acquired in the same order
+    assertThat(acquisitions).isEqualTo(firstOrder).hasSize(3);
+    // and duplicated lock has been acquired once
+    assertThat(holdCount).isEqualTo(1);
+    // and all the locks have been released
+    assertThat(Arrays.asList(first, second, third)).noneMatch(ReentrantLock::isLocked);
+  }
+
+  @Test
+  void shouldNotDeadlockWhenLocksAreGivenInOppositeOrder() {
+    // given two locks
+    final ReentrantLock first = new ReentrantLock();
+    final ReentrantLock second = new ReentrantLock();
+    final long[] counter = {0L};
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+
+    // when executions with locks given in the opposite order are executed concurrently
+    final CompletableFuture<Void> firstFuture = CompletableFuture.runAsync(
+        () -> increment(counter, first, second), executorService);
+    final CompletableFuture<Void> secondFuture = CompletableFuture.runAsync(
+        () -> increment(counter, second, first), executorService);
+
+    // then both completed
+    assertThat(firstFuture).succeedsWithin(5L, TimeUnit.SECONDS);
+    assertThat(secondFuture).succeedsWithin(5L, TimeUnit.SECONDS);
+    // and no increment has been lost
+    assertThat(counter[0]).isEqualTo(20_000L);
+  }
+
+  @Test
+  void shouldReleaseAcquiredLocksWhileWaitingWithTimeout() throws InterruptedException {
+    // given locks
+    final ReentrantLock first = new ReentrantLock();
+    final ReentrantLock second = new ReentrantLock();
+    final OrderedLock lock = OrderedLock.ranked(first, second);
+    final ReentrantLock later = System.identityHashCode(first) <= System.identityHashCode(second)
+        ? second : first;
+    final ReentrantLock earlier = later == first ? second : first;
+    // and later lock held for 200 ms by the other thread
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    CompletableFuture.runAsync(() -> LockExecution.withLock(later)
+        .execute(() -> sleep(200L))
+        .execute(), executorService);
+    sleep(20L);
+
+    // when composite lock is acquired with timeout
+    final CompletableFuture<Boolean> earlierAcquired = CompletableFuture.supplyAsync(
+        () -> LockExecution.<Boolean>withLock(earlier)
+            .execute(() -> true)
+            .withLockTimeout()
+            .millis(100L)
+            .execute()
+            .getOrElse(false), executorService);
+    final boolean locked = lock.tryLock(1L, TimeUnit.SECONDS);
+    lock.unlock();
+
+    // then composite lock has been acquired
+    assertThat(locked).isTrue();
+    // and earlier lock has not been held while waiting for the later one
+    assertThat(earlierAcquired.join()).isTrue();
+  }
+
+  @Test
+  void shouldNotHoldAnyLockWhenTimedOut() throws InterruptedException {
+    // given locks
+    final ReentrantLock first = new ReentrantLock();
+    final ReentrantLock second = new ReentrantLock();
+    // and second lock held for 200 ms by the other thread
+    CompletableFuture.runAsync(() -> LockExecution.withLock(second)
+        .execute(() -> sleep(200L))
+        .execute(), TestUtils.fixedThreadPoolExecutor(1));
+    sleep(20L);
+
+    // when executed with timeout
+    final Try<Integer> result = LockExecution.<Integer>withLocks(first, second)
+        .execute(() -> 1)
+        .withLockTimeout()
+        .millis(50L)
+        .execute();
+
+    // then execution timed out
+    assertThat(LockTimeoutException.isLockTimeout(result)).isTrue();
+    // and no lock is held
+    assertThat(first.isLocked()).isFalse();
+  }
+
+  private static void increment(final long[] counter, final ReentrantLock first,
+      final ReentrantLock second) {
+    for (int i = 0; i < 10_000; i++) {
+      LockExecution.withLocks(first, second)
+          .execute(() -> {
+            counter[0]++;
+          })
+          .execute();
+    }
+  }
+
+  private static final class RecordingLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<RecordingLock> acquisitions;
+
+    private RecordingLock(final List<RecordingLock> acquisitions) {
+      this.acquisitions = acquisitions;
+    }
+
+    @Override
+    public void lock() {
+      super.lock();
+      acquisitions.add(this);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class PriorityLockTest {
+
+  @Test
+  void shouldGrantLockToHighPriorityWaiterFirst() {
+    // given priority lock
+    final PriorityLock lock = new PriorityLock(Duration.ofSeconds(10L));
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and list of granted priorities
+    final List<LockPriority> granted = new CopyOnWriteArrayList<>();
+    // and lock held
+    lock.lock();
+
+    // when low priority execution waits for the lock
+    final CompletableFuture<?> low = execute(lock, LockPriority.LOW, granted, executorService);
+    awaitQueueLength(lock, 1);
+    // and then high priority execution waits for the lock
+    final CompletableFuture<?> high = execute(lock, LockPriority.HIGH, granted, executorService);
+    awaitQueueLength(lock, 2);
+    // and lock is released
+    lock.unlock();
+    CompletableFuture.allOf(low, high).join();
+
+    // then high priority execution has been granted the lock first
+    assertThat(granted).containsExactly(LockPriority.HIGH, LockPriority.LOW);
+    // and lock has been released afterwards
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldGrantLockToHighPriorityTimedWaiterFirst() {
+    // given priority lock
+    final PriorityLock lock = new PriorityLock(Duration.ofSeconds(10L));
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+    // and list of granted priorities
+    final List<LockPriority> granted = new CopyOnWriteArrayList<>();
+    // and lock held
+    lock.lock();
+
+    // when low priority executions wait for the lock with timeout and with deadline
+    final CompletableFuture<?> lowTimeout = execute(lock, LockPriority.LOW, granted,
+        executorService, execution -> execution.withLockTimeout().seconds(10L));
+    awaitQueueLength(lock, 1);
+    final CompletableFuture<?> lowDeadline = execute(lock, LockPriority.LOW, granted,
+        executorService, execution -> execution.withDeadline(Duration.ofSeconds(10L)));
+    awaitQueueLength(lock, 2);
+    // and then high priority executions wait for the lock with timeout and with deadline
+    final CompletableFuture<?> highTimeout = execute(lock, LockPriority.HIGH, granted,
+        executorService, execution -> execution.withLockTimeout().seconds(10L));
+    awaitQueueLength(lock, 3);
+    final CompletableFuture<?> highDeadline = execute(lock, LockPriority.HIGH, granted,
+        executorService, execution -> execution.withDeadline(Duration.ofSeconds(10L)));
+    awaitQueueLength(lock, 4);
+    // and lock is released
+    lock.unlock();
+    CompletableFuture.allOf(lowTimeout, lowDeadline, highTimeout, highDeadline).join();
+
+    // then high priority executions have been granted the lock first
+    assertThat(granted).containsExactly(LockPriority.HIGH, LockPriority.HIGH, LockPriority.LOW,
+        LockPriority.LOW);
+    // and lock has been released afterwards
+    assertThat(lock.isLocked()).isFalse();
+  }
+
+  @Test
+  void shouldGrantLockToAgedLowPriorityWaiterFirst() {
+    // given priority lock with 10 ms aging
+    final PriorityLock lock = new PriorityLock(Duration.ofMillis(10L));
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and list of granted priorities
+    final List<LockPriority> granted = new CopyOnWriteArrayList<>();
+    // and lock held
+    lock.lock();
+
+    // when low priority execution waits for the lock for 100 ms
+    final CompletableFuture<?> low = execute(lock, LockPriority.LOW, granted, executorService);
+    awaitQueueLength(lock, 1);
+    sleep(100L);
+    // and then high priority execution waits for the lock
+    final CompletableFuture<?> high = execute(lock, LockPriority.HIGH, granted, executorService);
+    awaitQueueLength(lock, 2);
+    // and lock is released
+    lock.unlock();
+    CompletableFuture.allOf(low, high).join();
+
+    // then aged low priority execution has been granted the lock first
+    assertThat(granted).containsExactly(LockPriority.LOW, LockPriority.HIGH);
+  }
+
+  @Test
+  void shouldRecordWaitTimesPerPriority() {
+    // given priority lock
+    final PriorityLock lock = new PriorityLock();
+    // and metrics per priority
+    final LockMetrics highMetrics = LockMetrics.newInstance();
+    final LockMetrics lowMetrics = LockMetrics.newInstance();
+
+    // when executed with high priority
+    LockExecution.<Void>withLock(lock).instrumented(highMetrics).priority(LockPriority.HIGH)
+        .execute(() -> sleep(1L))
+        .execute();
+
+    // then only high priority metrics have been recorded
+    assertThat(highMetrics.snapshot().waitTime().count()).isEqualTo(1L);
+    assertThat(lowMetrics.snapshot().waitTime().count()).isZero();
+  }
+
+  @Test
+  void shouldLeaveQueueWhenTimedOut() throws InterruptedException {
+    // given priority lock
+    final PriorityLock lock = new PriorityLock();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and lock held
+    lock.lock();
+
+    // when another thread tries to acquire the lock within 50 ms
+    final boolean locked = CompletableFuture.supplyAsync(() -> {
+      try {
+        return lock.tryLock(LockPriority.HIGH, 50L, TimeUnit.MILLISECONDS);
+      } catch (final InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }, executorService).join();
+    // and lock is released
+    lock.unlock();
+
+    // then lock has not been acquired
+    assertThat(locked).isFalse();
+    // and no thread is waiting for the lock
+    assertThat(lock.queueLength()).isZero();
+    // and lock is free
+    assertThat(lock.tryLock(10L, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  @Test
+  void shouldExecuteChainsExclusively() {
+    // given priority lock
+    final PriorityLock lock = new PriorityLock(Duration.ofMillis(1L));
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+    // and counter
+    final long[] counter = new long[1];
+
+    // when counter incremented 4 000 times concurrently with mixed priorities
+    final CompletableFuture<?>[] increments = IntStream.range(0, 4_000)
+        .mapToObj(i -> CompletableFuture.runAsync(() -> LockExecution.<Void>withLock(lock)
+            .priority(LockPriority.values()[i % 3])
+            .execute(() -> counter[0]++)
+            .execute(), executorService))
+        .toArray(CompletableFuture[]::new);
+    CompletableFuture.allOf(increments).join();
+
+    // then no increment has been lost
+    assertThat(counter[0]).isEqualTo(4_000L);
+    // and lock is free
+    assertThat(lock.isLocked()).isFalse();
+    assertThat(lock.queueLength()).isZero();
+  }
+
+  private static CompletableFuture<?> execute(final PriorityLock lock,
+      final LockPriority priority, final List<LockPriority> granted,
+      final ExecutorService executorService) {
+    return execute(lock, priority, granted, executorService, UnaryOperator.identity());
+  }
+
+  private static CompletableFuture<?> execute(final PriorityLock lock,
+      final LockPriority priority, final List<LockPriority> granted,
+      final ExecutorService executorService,
+      final Function<LockExecution<Void>, LockExecution<Void>> limit) {
+    return CompletableFuture.runAsync(() -> limit.apply(LockExecution.<Void>withLock(lock)
+        .priority(priority)
+        .execute(() -> granted.add(priority)))
+        .execute()
+        .get(), executorService);
+  }
+
+  private static void awaitQueueLength(final PriorityLock lock, final int length) {
+    while (lock.queueLength() < length) {
+      sleep(1L);
+    }
+  }
+}
@@ -18,12 +18,16 @@ package com.tp.tools.concurrent.lock;
 
 import io.vavr.control.Try;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -168,6 +172,119 @@ class ReadWriteLockTest {
     Assertions.assertThat(latch.getCount()).isGreaterThan(0L);
   }
 
+  @Test
+  void shouldHoldAllWriteLocksWhenWritingAll() {
+    // given read write locks
+    final ReentrantReadWriteLock first = new ReentrantReadWriteLock();
+    final ReentrantReadWriteLock second = new ReentrantReadWriteLock();
+    final List<ReadWriteLock> locks = Arrays.asList(new ReadWriteLock(second),
+        new ReadWriteLock(first));
+
+    // when executed holding all the write locks
+    final Try<Boolean> result = ReadWriteLock.writeAll(locks,
+        () -> first.isWriteLockedByCurrentThread() && second.isWriteLockedByCurrentThread())
+        .execute();
+
+    // then both write locks have been held
+    Assertions.assertThat(result.get()).isTrue();
+    // and released afterwards
+    Assertions.assertThat(first.isWriteLocked()).isFalse();
+    Assertions.assertThat(second.isWriteLocked()).isFalse();
+  }
+
+  @Test
+  void shouldReadAllStoresUnderTheirReadLocks() {
+    // given read write locks of stores
+    final List<ReentrantReadWriteLock> reentrantLocks = Arrays.asList(
+        new ReentrantReadWriteLock(), new ReentrantReadWriteLock(), new ReentrantReadWriteLock());
+    final List<ReadWriteLock> locks = Arrays.asList(new ReadWriteLock(reentrantLocks.get(0)),
+        new ReadWriteLock(reentrantLocks.get(1)), new ReadWriteLock(reentrantLocks.get(2)));
+    // and stores
+    final List<List<String>> stores = Arrays.asList(Arrays.asList("A1", "A2"),
+        Arrays.asList("B1"), Arrays.asList("C1", "C2", "C3"));
+
+    // when read all the stores
+    final Try<List<Integer>> result = ReadWriteLock.readAll(locks,
+        store -> reentrantLocks.get(store).getReadHoldCount() == 1 ? stores.get(store).size()
+            : -1);
+
+    // then each store has been read under its read lock
+    Assertions.assertThat(result.get()).containsExactly(2, 1, 3);
+  }
+
+  @Test
+  void shouldNotAcquireWriteLockWhenReadCheckFiltered() {
+    // given reentrant read write lock
+    final ReentrantReadWriteLock reentrantLock = new ReentrantReadWriteLock();
+    // and read write lock
+    final ReadWriteLock lock = new ReadWriteLock(reentrantLock);
+    // and counter of write executions
+    final AtomicInteger writeCount = new AtomicInteger();
+
+    // when checked holding the read lock, whether an absent element is present
+    final Try<Integer> result = lock.readThenWrite(
+        () -> Optional.of(reentrantLock.getReadHoldCount()).filter(count -> count == 2))
+        .filter(Optional::isPresent)
+        .upgrade()
+        .map(ignore -> writeCount.incrementAndGet())
+        .execute();
+
+    // then execution resulted in null
+    Assertions.assertThat(result.isSuccess()).isTrue();
+    Assertions.assertThat(result.get()).isNull();
+    // and write stages have not been executed
+    Assertions.assertThat(writeCount.get()).isZero();
+  }
+
+  @Test
+  void shouldRecheckHoldingWriteLockWhenReadCheckPassed() {
+    // given reentrant read write lock
+    final ReentrantReadWriteLock reentrantLock = new ReentrantReadWriteLock();
+    // and read write lock
+    final ReadWriteLock lock = new ReadWriteLock(reentrantLock);
+    // and list of locks held by check executions
+    final List<String> checks = new ArrayList<>();
+
+    // when checked, whether write is needed, and then written
+    final Try<Boolean> result = lock.readThenWrite(() -> checks.add(
+        reentrantLock.isWriteLockedByCurrentThread() ? "write" : "read"))
+        .filter(added -> added)
+        .upgrade()
+        .map(ignore -> reentrantLock.isWriteLockedByCurrentThread())
+        .execute();
+
+    // then write stages have been executed holding the write lock
+    Assertions.assertThat(result.get()).isTrue();
+    // and check has been executed holding the read lock and once again holding the write lock
+    Assertions.assertThat(checks).containsExactly("read", "write");
+    // and both locks have been released
+    Assertions.assertThat(reentrantLock.isWriteLocked()).isFalse();
+    Assertions.assertThat(reentrantLock.getReadLockCount()).isZero();
+  }
+
+  @Test
+  void shouldNotWriteWhenRecheckFiltered() {
+    // given read write lock
+    final ReadWriteLock lock = ReadWriteLock.newInstance();
+    // and counter of check executions
+    final AtomicInteger checkCount = new AtomicInteger();
+    // and counter of write executions
+    final AtomicInteger writeCount = new AtomicInteger();
+
+    // when check passes holding the read lock, but does not pass holding the write lock
+    final Try<Integer> result = lock.readThenWrite(checkCount::incrementAndGet)
+        .filter(count -> count == 1)
+        .upgrade()
+        .map(ignore -> writeCount.incrementAndGet())
+        .execute();
+
+    // then execution resulted in null
+    Assertions.assertThat(result.get()).isNull();
+    // and write stages have not been executed
+    Assertions.assertThat(writeCount.get()).isZero();
+    Assertions.assertThat(checkCount.get()).isEqualTo(2);
+  }
+
   private ExecutorService givenExecutorService() {
     final ThreadFactory threadFactory = new LockExecutionThreadFactory(
         LockExecutionTest.class.getSimpleName(), 1, true);
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ReaderBiasedReadWriteLockTest {
+
+  @Test
+  void shouldReadConcurrently() {
+    // given read write lock
+    final ReaderBiasedReadWriteLock readerBiasedLock = new ReaderBiasedReadWriteLock(4);
+    final ReadWriteLock lock = new ReadWriteLock(readerBiasedLock);
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+
+    // when read, while another thread reads
+    final Try<Long> result = lock.read(() -> CompletableFuture.supplyAsync(
+        () -> lock.read(readerBiasedLock::readLockCount).execute().get(), executorService).join())
+        .execute();
+
+    // then both readers held the read lock
+    assertThat(result.get()).isEqualTo(2L);
+    // and released it afterwards
+    assertThat(readerBiasedLock.readLockCount()).isZero();
+  }
+
+  @Test
+  void shouldWaitForReadersBeforeWriting() throws InterruptedException {
+    // given read write lock
+    final ReadWriteLock lock = ReadWriteLock.newReaderBiased();
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and latch released, when reading started
+    final CountDownLatch reading = new CountDownLatch(1);
+
+    // when read list size 250 ms after reading started
+    final CompletableFuture<Try<Integer>> readFuture = CompletableFuture.supplyAsync(
+        () -> lock.read(() -> {
+          reading.countDown();
+          sleep(250L);
+          return list.size();
+        }).execute(), executorService);
+    // and list written while being read
+    reading.await();
+    final Try<Boolean> writeResult = lock.write(() -> list.add("A3")).execute();
+
+    // then reader has not seen the write
+    assertThat(readFuture.join().get()).isEqualTo(2);
+    // and write succeeded after the read
+    assertThat(writeResult.get()).isTrue();
+    assertThat(list).hasSize(3);
+  }
+
+  @Test
+  void shouldWaitForWriterBeforeReading() {
+    // given read write lock
+    final ReadWriteLock lock = ReadWriteLock.newReaderBiased();
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+
+    // when list written for 250 ms
+    final CompletableFuture<Try<Void>> writeFuture = CompletableFuture.supplyAsync(
+        () -> lock.write(() -> list.add("A3")).run(() -> sleep(250L)).execute(), executorService);
+    // and read 50 ms later
+    sleep(50L);
+    final Try<Integer> result = lock.read(list::size).execute();
+
+    // then write succeeded
+    assertThat(writeFuture.join().isSuccess()).isTrue();
+    // and read returns size after write
+    assertThat(result.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldNotAcquireWriteLockWithinTimeoutWhenReadLocked() throws InterruptedException {
+    // given read write lock
+    final ReaderBiasedReadWriteLock lock = new ReaderBiasedReadWriteLock();
+    // and read lock held
+    lock.readLock().lock();
+
+    // when tried to acquire write lock within 50 ms
+    final boolean writeLocked = lock.writeLock().tryLock(50L, TimeUnit.MILLISECONDS);
+    lock.readLock().unlock();
+
+    // then write lock has not been acquired
+    assertThat(writeLocked).isFalse();
+    // and readers are not blocked afterwards
+    assertThat(lock.isWriteLocked()).isFalse();
+    assertThat(lock.readLock().tryLock()).isTrue();
+  }
+}
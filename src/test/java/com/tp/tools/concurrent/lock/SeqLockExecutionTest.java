@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class SeqLockExecutionTest {
+
+  @Test
+  void shouldReadWithoutLockWhenNotWritten() {
+    // given seq lock
+    final ReadWriteLock lock = ReadWriteLock.newSeqLock();
+    // and its write lock
+    final SequenceLock writeLock = (SequenceLock) lock.writeLock();
+    // and counter of read executions
+    final AtomicInteger readCount = new AtomicInteger();
+
+    // when read, checking whether write lock is held
+    final Try<Boolean> writeLocked = lock.read(() -> {
+      readCount.incrementAndGet();
+      return writeLock.isHeldByCurrentThread();
+    }).execute();
+
+    // then write lock was not held
+    assertThat(writeLocked.get()).isFalse();
+    // and read has been executed once
+    assertThat(readCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldReadWithoutLockWhenReadWithTimeoutOrDeadline() {
+    // given seq lock
+    final ReadWriteLock lock = ReadWriteLock.newSeqLock();
+    // and its write lock
+    final SequenceLock writeLock = (SequenceLock) lock.writeLock();
+
+    // when read with lock timeout and with deadline, checking whether write lock is held
+    final Try<Boolean> withTimeout = lock.read(writeLock::isHeldByCurrentThread)
+        .withLockTimeout()
+        .millis(100L)
+        .execute();
+    final Try<Boolean> withDeadline = lock.read(writeLock::isHeldByCurrentThread)
+        .withDeadline(Duration.ofMillis(100L))
+        .execute();
+
+    // then write lock was not held
+    assertThat(withTimeout.get()).isFalse();
+    assertThat(withDeadline.get()).isFalse();
+  }
+
+  @Test
+  void shouldRetryReadWhenWrittenDuringRead() {
+    // given seq lock
+    final ReadWriteLock lock = ReadWriteLock.newSeqLock();
+    // and state
+    final Pair pair = new Pair();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and counter of read executions
+    final AtomicInteger readCount = new AtomicInteger();
+    // and task writing the state
+    final LockExecution<Void> writeTask = lock.write(() -> pair.set(1L));
+
+    // when read, while state is being written during the first read
+    final Try<Long> result = lock.read(() -> {
+      if (readCount.incrementAndGet() == 1) {
+        CompletableFuture.supplyAsync(writeTask::execute, executorService).join();
+      }
+      return pair.first;
+    }).execute();
+
+    // then read has been retried
+    assertThat(readCount.get()).isEqualTo(2);
+    // and result of the retry is returned
+    assertThat(result.get()).isEqualTo(1L);
+  }
+
+  @Test
+  void shouldNeverReadInconsistentState() {
+    // given seq lock
+    final ReadWriteLock lock = ReadWriteLock.newSeqLock();
+    // and state, which is consistent, when both its values are equal
+    final Pair pair = new Pair();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and writer continuously writing the state
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    final CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+      long value = 0L;
+      while (writing.get()) {
+        final long next = ++value;
+        lock.write(() -> pair.set(next)).execute();
+      }
+    }, executorService);
+
+    // when read 100 000 times
+    int inconsistentReads = 0;
+    for (int i = 0; i < 100_000; i++) {
+      if (!lock.read(() -> pair.first == pair.second).execute().get()) {
+        inconsistentReads++;
+      }
+    }
+    writing.set(false);
+    writer.join();
+
+    // then all reads were consistent
+    assertThat(inconsistentReads).isZero();
+  }
+
+  @Test
+  void shouldReadWhenNestedInWrite() {
+    // given seq lock
+    final ReadWriteLock lock = ReadWriteLock.newSeqLock();
+    // and state
+    final Pair pair = new Pair();
+
+    // when read by the writer
+    final Try<Long> result = lock.write(() -> pair.set(2L))
+        .supply(() -> lock.read(() -> pair.second).execute().get())
+        .execute();
+
+    // then read has seen the written state
+    assertThat(result.get()).isEqualTo(2L);
+  }
+
+  private static final class Pair {
+
+    private long first;
+    private long second;
+
+    private void set(final long value) {
+      first = value;
+      second = value;
+    }
+  }
+}
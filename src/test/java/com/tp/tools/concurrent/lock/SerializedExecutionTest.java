@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.await;
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vavr.control.Try;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SerializedExecutionTest {
+
+  @Test
+  void shouldExecuteAllChainsOneAtATimeWhenDrainedByCallers() {
+    // given serialized execution drained by the callers
+    final SerializedExecution serialized = SerializedExecution.newInstance(null, 16);
+    // and not thread safe counter
+    final long[] counter = {0L};
+    // and multiple threads
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(8);
+
+    // when each thread increments the counter multiple times
+    final List<CompletableFuture<Long>> results = IntStream.range(0, 8)
+        .mapToObj(thread -> CompletableFuture.supplyAsync(() -> {
+          long succeeded = 0L;
+          for (int i = 0; i < 10_000; i++) {
+            if (serialized.execute(() -> ++counter[0]).execute().isSuccess()) {
+              succeeded++;
+            }
+          }
+          return succeeded;
+        }, executorService))
+        .collect(Collectors.toList());
+
+    // then all the increments succeeded
+    assertThat(results.stream().mapToLong(CompletableFuture::join).sum()).isEqualTo(80_000L);
+    // and none of them has been lost
+    assertThat(serialized.execute(() -> counter[0]).execute().get()).isEqualTo(80_000L);
+  }
+
+  @Test
+  void shouldExecuteChainsByOwnerThread() {
+    // given serialized execution drained by the owner thread
+    final ExecutorService owner = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("owner", Thread.NORM_PRIORITY, false));
+    final SerializedExecution serialized = SerializedExecution.newInstance(owner);
+    // and multiple threads
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+
+    // when chains are executed concurrently
+    final List<CompletableFuture<Try<String>>> results = IntStream.range(0, 100)
+        .mapToObj(i -> CompletableFuture.supplyAsync(() -> serialized
+            .execute(() -> Thread.currentThread().getName())
+            .map(name -> name + "-" + i)
+            .execute(), executorService))
+        .collect(Collectors.toList());
+
+    // then all chains have been executed by the owner thread
+    for (int i = 0; i < results.size(); i++) {
+      assertThat(results.get(i).join().get()).startsWith("owner-").endsWith("-" + i);
+    }
+  }
+
+  @Test
+  void shouldSubmitWithoutBlockingTheCaller() throws InterruptedException {
+    // given serialized execution drained by the owner thread
+    final SerializedExecution serialized = SerializedExecution.newInstance(
+        Executors.newSingleThreadExecutor());
+    // and chain blocking the owner thread
+    final CountDownLatch latch = new CountDownLatch(1);
+    final CompletableFuture<Boolean> blocking = serialized
+        .execute(() -> await(latch))
+        .submit();
+
+    // when chains are submitted
+    final CompletableFuture<Integer> first = serialized.execute(() -> 1).submit();
+    final CompletableFuture<Integer> second = serialized.execute(() -> 2)
+        .map(value -> value * 10)
+        .submit();
+
+    // then caller has not been blocked
+    assertThat(first).isNotDone();
+    assertThat(second).isNotDone();
+    // and chains are executed once the owner thread is free
+    latch.countDown();
+    assertThat(blocking).succeedsWithin(1L, TimeUnit.SECONDS);
+    assertThat(first.join()).isEqualTo(1);
+    assertThat(second.join()).isEqualTo(20);
+  }
+
+  @Test
+  void shouldRejectSubmittedChainWhenMailboxIsFull() {
+    // given serialized execution with small mailbox
+    final SerializedExecution serialized = SerializedExecution.newInstance(
+        Executors.newSingleThreadExecutor(), 2);
+    // and chain blocking the owner thread
+    final CountDownLatch latch = new CountDownLatch(1);
+    serialized.execute(() -> await(latch)).submit();
+    sleep(50L);
+    // and full mailbox
+    serialized.execute(() -> 1).submit();
+    serialized.execute(() -> 2).submit();
+
+    // when another chain submitted
+    final CompletableFuture<Integer> rejected = serialized.execute(() -> 3).submit();
+
+    // then it has been rejected
+    assertThatThrownBy(() -> rejected.get(1L, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(RejectedExecutionException.class);
+    latch.countDown();
+  }
+
+  @Test
+  void shouldExecuteNestedChainsImmediatelyAndNotSupportTimeouts() {
+    // given serialized execution
+    final SerializedExecution serialized = SerializedExecution.newInstance();
+
+    // when chain executing another chain is executed
+    final Try<Integer> nested = serialized.execute(() -> 1)
+        .flatMap(value -> serialized.execute(() -> value + 1))
+        .map(value -> serialized.execute(() -> value * 10).execute().get())
+        .execute();
+    // and chain with timeout is executed
+    final Try<Integer> timeout = serialized.execute(() -> 1)
+        .withLockTimeout()
+        .seconds(1L)
+        .execute();
+
+    // then nested chains have been executed
+    assertThat(nested.get()).isEqualTo(20);
+    // and timeout is not supported
+    assertThat(timeout.getCause()).isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void shouldNotExposeAnyLock() {
+    // given serialized execution
+    final SerializedExecution serialized = SerializedExecution.newInstance();
+
+    // when chain is created
+    final LockExecution<Integer> execution = serialized.execute(() -> 1).map(value -> value + 1);
+
+    // then chain is not guarded by any lock
+    assertThat(execution).isInstanceOf(LockExecution.LockExecutionWithLock.class);
+    assertThat(((LockExecution.LockExecutionWithLock<Integer>) execution).lock()).isNull();
+    // and chain is still executed
+    assertThat(execution.execute().get()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldNotWaitForMailboxInNonBlockingThread() {
+    // given serialized executions drained by the callers and by the owner thread
+    final SerializedExecution byCallers = SerializedExecution.newInstance();
+    final SerializedExecution byOwner = SerializedExecution.newInstance(
+        Executors.newSingleThreadExecutor());
+    // and non-blocking executor with fail policy
+    final ExecutorService nonBlocking = Executors.newSingleThreadExecutor(
+        new LockExecutionThreadFactory("non-blocking", Thread.NORM_PRIORITY,
+            NonBlockingThreadPolicy.fail()));
+    // and chain draining the mailbox
+    final CountDownLatch latch = new CountDownLatch(1);
+    final CompletableFuture<Try<Boolean>> drainer = CompletableFuture.supplyAsync(
+        () -> byCallers.execute(() -> await(latch)).execute(),
+        TestUtils.fixedThreadPoolExecutor(1));
+    sleep(50L);
+
+    // when executed by non-blocking thread while the mailbox is drained by the other thread
+    final Try<Integer> busy = CompletableFuture.supplyAsync(
+        () -> byCallers.execute(() -> 1).execute(), nonBlocking).join();
+    // and executed by non-blocking thread once the mailbox is free
+    latch.countDown();
+    drainer.join();
+    final Try<Integer> free = CompletableFuture.supplyAsync(
+        () -> byCallers.execute(() -> 2).execute(), nonBlocking).join();
+    // and executed by non-blocking thread using mailbox drained by the owner thread
+    final Try<Integer> owned = CompletableFuture.supplyAsync(
+        () -> byOwner.execute(() -> 3).execute(), nonBlocking).join();
+
+    // then executions failed without waiting for the mailbox
+    assertThat(busy.getCause()).isInstanceOf(NonBlockingThreadException.class);
+    assertThat(owned.getCause()).isInstanceOf(NonBlockingThreadException.class);
+    // and execution with free mailbox has been executed by non-blocking thread
+    assertThat(free.get()).isEqualTo(2);
+  }
+}
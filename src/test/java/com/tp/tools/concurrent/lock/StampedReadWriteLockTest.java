@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.vavr.control.Try;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import org.junit.jupiter.api.Test;
+
+class StampedReadWriteLockTest {
+
+  @Test
+  void shouldReadWithoutLockWhenNotWritten() {
+    // given stamped lock
+    final StampedLock stampedLock = new StampedLock();
+    // and read write lock
+    final ReadWriteLock lock = new StampedReadWriteLock(stampedLock);
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+
+    // when read list size, checking whether read lock is held
+    final Try<Boolean> readLocked = lock.read(list::size)
+        .filter(size -> size == 2)
+        .map(ignore -> stampedLock.isReadLocked())
+        .execute();
+
+    // then read lock was not held
+    assertThat(readLocked.get()).isFalse();
+  }
+
+  @Test
+  void shouldReadWithoutLockWhenReadWithTimeoutOrDeadline() {
+    // given stamped lock
+    final StampedLock stampedLock = new StampedLock();
+    // and read write lock
+    final ReadWriteLock lock = new StampedReadWriteLock(stampedLock);
+
+    // when read with lock timeout and with deadline, checking whether read lock is held
+    final Try<Boolean> withTimeout = lock.read(stampedLock::isReadLocked)
+        .withLockTimeout()
+        .millis(100L)
+        .execute();
+    final Try<Boolean> withDeadline = lock.read(stampedLock::isReadLocked)
+        .withDeadline(Duration.ofMillis(100L))
+        .execute();
+
+    // then read lock was not held
+    assertThat(withTimeout.get()).isFalse();
+    assertThat(withDeadline.get()).isFalse();
+  }
+
+  @Test
+  void shouldRetryHoldingReadLockWhenWrittenDuringOptimisticRead() {
+    // given stamped lock
+    final StampedLock stampedLock = new StampedLock();
+    // and read write lock
+    final ReadWriteLock lock = new StampedReadWriteLock(stampedLock);
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and counter of read executions
+    final AtomicInteger readCount = new AtomicInteger();
+    // and task writing to list
+    final LockExecution<Boolean> writeTask = lock.write(() -> list.add("A3"));
+
+    // when read list size, while list is being written during the first (optimistic) read
+    final Try<Integer> result = lock.read(() -> {
+      if (readCount.incrementAndGet() == 1) {
+        CompletableFuture.supplyAsync(writeTask::execute, executorService).join();
+      }
+      return stampedLock.isReadLocked();
+    })
+        .filter(readLocked -> readLocked)
+        .map(ignore -> list.size())
+        .execute();
+
+    // then read was executed twice
+    assertThat(readCount.get()).isEqualTo(2);
+    // and result comes from the read holding read lock
+    assertThat(result.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldDiscardOptimisticReadFailureWhenWrittenDuringRead() {
+    // given read write lock
+    final ReadWriteLock lock = ReadWriteLock.newOptimistic();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and counter of read executions
+    final AtomicInteger readCount = new AtomicInteger();
+    // and task acquiring write lock
+    final LockExecution<Void> writeTask = lock.write(() -> {
+    });
+
+    // when first (optimistic) read fails, while lock is being written
+    final Try<Integer> result = lock.read(() -> {
+      if (readCount.incrementAndGet() == 1) {
+        CompletableFuture.supplyAsync(writeTask::execute, executorService).join();
+        throw new IllegalStateException("Inconsistent state");
+      }
+      return readCount.get();
+    }).execute();
+
+    // then failure is discarded and read is executed once again
+    assertThat(result.get()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldWaitForWriteLockRelease() {
+    // given read write lock
+    final ReadWriteLock lock = ReadWriteLock.newOptimistic();
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and task adding list element and sleeping 250 ms holding write lock
+    final LockExecution<Void> writeTask = lock.write(() -> list.add("A3"))
+        .run(() -> sleep(250L));
+
+    // when run write task
+    final CompletableFuture<Try<Void>> writeFuture = CompletableFuture
+        .supplyAsync(writeTask::execute, executorService);
+    // and 50 ms later read list size
+    sleep(50L);
+    final Try<Integer> result = lock.read(list::size).execute();
+
+    // then write task succeeded
+    assertThat(writeFuture.join().isSuccess()).isTrue();
+    // and read returns size after write
+    assertThat(result.get()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldConvertOptimisticReadToWriteLockWhenCheckPassed() {
+    // given stamped lock
+    final StampedLock stampedLock = new StampedLock();
+    // and read write lock
+    final ReadWriteLock lock = new StampedReadWriteLock(stampedLock);
+    // and counter of check executions
+    final AtomicInteger checkCount = new AtomicInteger();
+
+    // when checked optimistically and then written
+    final Try<Boolean> result = lock.readThenWrite(() -> {
+      checkCount.incrementAndGet();
+      return stampedLock.isReadLocked() || stampedLock.isWriteLocked();
+    })
+        .filter(locked -> !locked)
+        .upgrade()
+        .map(ignore -> stampedLock.isWriteLocked())
+        .execute();
+
+    // then write stages have been executed holding the write lock
+    assertThat(result.get()).isTrue();
+    // and check has been executed only once, without any lock
+    assertThat(checkCount.get()).isEqualTo(1);
+    // and write lock has been released
+    assertThat(stampedLock.isWriteLocked()).isFalse();
+  }
+
+  @Test
+  void shouldRecheckHoldingWriteLockWhenWrittenDuringCheck() {
+    // given stamped lock
+    final StampedLock stampedLock = new StampedLock();
+    // and read write lock
+    final ReadWriteLock lock = new StampedReadWriteLock(stampedLock);
+    // and list with 2 items
+    final List<String> list = new ArrayList<>();
+    list.add("A1");
+    list.add("A2");
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and counter of check executions
+    final AtomicInteger checkCount = new AtomicInteger();
+    // and task writing to list
+    final LockExecution<Boolean> writeTask = lock.write(() -> list.add("A3"));
+
+    // when list is being written during the first (optimistic) check
+    final Try<Integer> result = lock.readThenWrite(() -> {
+      if (checkCount.incrementAndGet() == 1) {
+        CompletableFuture.supplyAsync(writeTask::execute, executorService).join();
+      }
+      return list.size();
+    })
+        .filter(size -> size < 4)
+        .upgrade()
+        .map(size -> {
+          list.add("A" + (size + 1));
+          return list.size();
+        })
+        .execute();
+
+    // then check has been executed once again holding the write lock
+    assertThat(checkCount.get()).isEqualTo(2);
+    // and write has been based on the state checked holding the write lock
+    assertThat(result.get()).isEqualTo(4);
+    assertThat(list).containsExactly("A1", "A2", "A3", "A4");
+  }
+}
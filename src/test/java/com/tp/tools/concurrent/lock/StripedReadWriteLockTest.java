@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Tomasz Paździurek <t.pazdziurek@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.tp.tools.concurrent.lock;
+
+import static com.tp.tools.concurrent.lock.TestUtils.await;
+import static com.tp.tools.concurrent.lock.TestUtils.sleep;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.vavr.control.Try;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class StripedReadWriteLockTest {
+
+  @Test
+  void shouldRejectNumberOfStripesNotBeingPowerOfTwo() {
+    assertThatThrownBy(() -> StripedReadWriteLock.newInstance(6))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> StripedReadWriteLock.newInstance(0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(StripedReadWriteLock.newInstance().stripes()).isPositive();
+  }
+
+  @Test
+  void shouldNotBlockWritesToDifferentStripes() {
+    // given striped lock
+    final StripedReadWriteLock<Integer> lock = StripedReadWriteLock.newInstance(16);
+    // and keys mapped to different stripes
+    final int firstKey = 1;
+    final int secondKey = 2;
+    assertThat(lock.stripeIndex(firstKey)).isNotEqualTo(lock.stripeIndex(secondKey));
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(2);
+    // and countdown latch
+    final CountDownLatch latch = new CountDownLatch(2);
+    // and write tasks waiting for each other holding write lock
+    final LockExecution<Boolean> firstTask = lock.write(firstKey, latch::countDown)
+        .supply(() -> await(latch));
+    final LockExecution<Boolean> secondTask = lock.write(secondKey, latch::countDown)
+        .supply(() -> await(latch));
+
+    // when run both tasks
+    final CompletableFuture<Try<Boolean>> firstFuture = CompletableFuture
+        .supplyAsync(firstTask::execute, executorService);
+    final CompletableFuture<Try<Boolean>> secondFuture = CompletableFuture
+        .supplyAsync(secondTask::execute, executorService);
+
+    // then both tasks held write locks at the same time
+    assertThat(firstFuture.join().get()).isTrue();
+    assertThat(secondFuture.join().get()).isTrue();
+  }
+
+  @Test
+  void shouldBlockWritesToTheSameKey() {
+    // given striped lock
+    final StripedReadWriteLock<String> lock = StripedReadWriteLock.newInstance(16);
+    // and list
+    final List<String> list = new ArrayList<>();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and write task adding element and sleeping 250 ms holding write lock
+    final LockExecution<Void> writeTask = lock.write("key", () -> list.add("A1"))
+        .run(() -> sleep(250L));
+
+    // when run write task
+    final CompletableFuture<Try<Void>> writeFuture = CompletableFuture
+        .supplyAsync(writeTask::execute, executorService);
+    // and 50 ms later read list size with the same key
+    sleep(50L);
+    final Try<Integer> size = lock.read("key", list::size).execute();
+
+    // then write succeeded
+    assertThat(writeFuture.join().isSuccess()).isTrue();
+    // and read waited for the write
+    assertThat(size.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldNotDeadlockWhenWritingAllKeysInDifferentOrder() {
+    // given striped lock
+    final StripedReadWriteLock<Integer> lock = StripedReadWriteLock.newInstance(8);
+    // and keys in ascending and descending order
+    final List<Integer> ascending = IntStream.range(0, 16).boxed().collect(Collectors.toList());
+    final List<Integer> descending = IntStream.range(0, 16).map(i -> 15 - i).boxed()
+        .collect(Collectors.toList());
+    // and counter
+    final int[] counter = new int[1];
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(4);
+
+    // when run many bulk writes with keys in different order concurrently
+    final CompletableFuture<?>[] futures = IntStream.range(0, 1_000)
+        .mapToObj(i -> i % 2 == 0 ? ascending : descending)
+        .map(keys -> lock.writeAll(keys, () -> counter[0]++))
+        .map(task -> CompletableFuture.supplyAsync(task::execute, executorService))
+        .toArray(CompletableFuture[]::new);
+    final CompletableFuture<Void> all = CompletableFuture.allOf(futures);
+
+    // then all writes completed
+    assertThat(all).succeedsWithin(10L, TimeUnit.SECONDS);
+    // and all writes were exclusive
+    assertThat(counter[0]).isEqualTo(1_000);
+  }
+
+  @Test
+  void shouldBlockSingleKeyWritesWhenWritingAllKeys() {
+    // given striped lock
+    final StripedReadWriteLock<Integer> lock = StripedReadWriteLock.newInstance(4);
+    // and list
+    final List<String> list = new ArrayList<>();
+    // and executor service
+    final ExecutorService executorService = TestUtils.fixedThreadPoolExecutor(1);
+    // and bulk write task sleeping 250 ms holding write locks
+    final LockExecution<Void> writeTask = lock.writeAll(Arrays.asList(1, 2, 3),
+        () -> sleep(250L))
+        .run(() -> list.add("A1"));
+
+    // when run bulk write task
+    final CompletableFuture<Try<Void>> writeFuture = CompletableFuture
+        .supplyAsync(writeTask::execute, executorService);
+    // and 50 ms later write to one of the keys
+    sleep(50L);
+    final Try<Boolean> result = lock.write(2, () -> list.add("A2")).execute();
+
+    // then both writes succeeded
+    assertThat(writeFuture.join().isSuccess()).isTrue();
+    assertThat(result.get()).isTrue();
+    // and single key write waited for the bulk write
+    assertThat(list).containsExactly("A1", "A2");
+  }
+}
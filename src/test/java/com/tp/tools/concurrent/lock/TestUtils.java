@@ -16,9 +16,11 @@
 
 package com.tp.tools.concurrent.lock;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 public final class TestUtils {
 
@@ -34,6 +36,14 @@ public final class TestUtils {
     }
   }
 
+  public static boolean await(final CountDownLatch latch) {
+    try {
+      return latch.await(5L, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public static ExecutorService fixedThreadPoolExecutor(final int threads) {
     final ThreadFactory threadFactory = new LockExecutionThreadFactory(
         LockExecutionTest.class.getSimpleName(), 1, true);
@@ -20,9 +20,11 @@ import static com.tp.tools.concurrent.lock.TestUtils.sleep;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.vavr.control.Try;
+import java.util.NoSuchElementException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.junit.jupiter.api.Test;
 
@@ -123,4 +125,48 @@ class TimeoutLockExecutionTest {
     // and countdown latch is 1
     assertThat(latch.getCount()).isEqualTo(1L);
   }
-}
\ No newline at end of file
+
+  @Test
+  void shouldReportTimeoutWithStacklessFailure() {
+    // given lock held by the other thread
+    final ReentrantLock lock = new ReentrantLock();
+    final Thread holder = new Thread(lock::lock);
+    holder.start();
+    joinUninterruptibly(holder);
+    // and task with lock timeout
+    final TimeoutLockExecution<Integer> task = LockExecution.<Integer>withLock(lock)
+        .execute(() -> 1)
+        .withLockTimeout()
+        .nanos(0L);
+
+    // when executed twice
+    final Try<Integer> first = task.execute();
+    final Try<Integer> second = task.compile().execute();
+
+    // then both executions timed out
+    assertThat(LockTimeoutException.isLockTimeout(first)).isTrue();
+    assertThat(LockTimeoutException.isLockTimeout(second)).isTrue();
+    assertThat(first.getCause()).isInstanceOf(LockTimeoutException.class)
+        .isInstanceOf(NoSuchElementException.class);
+    // and failure has no stack trace
+    assertThat(first.getCause().getStackTrace()).isEmpty();
+    // and failures are not shared, so suppressed exceptions do not leak to other executions
+    first.getCause().addSuppressed(new IllegalStateException());
+    assertThat(second.getCause()).isNotSameAs(first.getCause());
+    assertThat(second.getCause().getSuppressed()).isEmpty();
+    // and lock has not been released by the timed out executions
+    assertThat(lock.isLocked()).isTrue();
+    // and other failures are not timeouts
+    assertThat(LockTimeoutException.isLockTimeout(Try.failure(new NoSuchElementException())))
+        .isFalse();
+    assertThat(LockTimeoutException.isLockTimeout(Try.success(1))).isFalse();
+  }
+
+  private static void joinUninterruptibly(final Thread thread) {
+    try {
+      thread.join();
+    } catch (final InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}